@@ -1,6 +1,7 @@
 package persistence.base;
 
-import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Абстрактный класс для работы с персистентными коллекциями.
@@ -83,6 +84,139 @@ public abstract class BasePersistentCollection<K, OT, BT> {
      */
     protected abstract PersistentContent<BT> reassembleNodes();
 
+    /**
+     * Изменения между двумя версиями в виде ленивого потока событий вставки, замены и удаления.
+     * Время пропорционально количеству изменений между шагами, а не размеру коллекции.
+     * Если {@code fromStep > toStep}, возвращаются обратные изменения от новой версии к старой.
+     *
+     * @param fromStep Шаг исходной версии.
+     * @param toStep   Шаг конечной версии.
+     * @return Поток изменений, применение которых к исходной версии даёт конечную.
+     */
+    public Stream<Change<K, OT>> diff(int fromStep, int toStep) {
+        checkModificationStep(fromStep);
+        checkModificationStep(toStep);
+
+        if (fromStep <= toStep) {
+            return changeLog().between(fromStep, toStep).flatMap(Change::expand);
+        }
+
+        // Очистку нельзя отменить без содержимого, поэтому она разворачивается во вставки версии до неё
+        return changeLog().reverse(fromStep, toStep)
+                .flatMap(c -> c.getType() == ChangeType.Clear ? insertionsAt(c.getStep() - 1, c.getStep()) : c.expand());
+    }
+
+    /**
+     * Издатель изменений содержимого коллекции. Создаётся при первом обращении. Массовые операции
+     * публикуют одно {@link BulkChange}, отдельные изменения которого возвращает {@link Change#expand()}. Ветвь, созданная
+     * изменением старой версии, нумерует шаги заново от точки ответвления, поэтому в неё издатель
+     * не переходит: лента ветви доступна через {@code changes()} её версий.
+     *
+     * @return Издатель, выдающий пачки изменений по мере их публикации.
+     */
+    @SuppressWarnings("unchecked")
+    public ChangePublisher<K, OT> changes() {
+        ChangePublisher<K, OT> publisher = nodes.getListener(ChangePublisher.class);
+        if (publisher == null) {
+            publisher = new ChangePublisher<>();
+            nodes.addListener(publisher);
+        }
+        return publisher;
+    }
+
+    /**
+     * Подписка на изменения содержимого коллекции. Подписчик вызывается синхронно в потоке писателя.
+     */
+    public void addChangeListener(ChangeListener<K, OT> listener) {
+        nodes.addListener(listener);
+    }
+
+    /**
+     * Имена ветвей истории этой коллекции в порядке создания. Пусто, если ветви не создавались.
+     */
+    public Set<String> branches() {
+        var registry = nodes.getBranches();
+        return registry == null ? Set.of() : registry.names();
+    }
+
+    /**
+     * Ответвление этой версии в новое содержимое под заданным именем. При первом ответвлении
+     * исходное содержимое регистрируется как ветвь {@link BranchRegistry#MAIN}.
+     *
+     * @return Содержимое новой ветви, последний шаг которого равен шагу этой версии.
+     */
+    protected PersistentContent<BT> forkBranch(String name) {
+        var registry = nodes.getBranches();
+        if (registry == null) {
+            registry = new BranchRegistry();
+            registry.register(BranchRegistry.MAIN, nodes);
+            nodes.setBranches(registry);
+        } else if (registry.names().contains(name)) {
+            throw new IllegalArgumentException("Branch already exists: " + name);
+        }
+
+        var content = reassembleNodes();
+        registry.register(name, content);
+        return content;
+    }
+
+    /**
+     * Содержимое ветви с заданным именем.
+     *
+     * @throws IllegalArgumentException если ветви нет.
+     */
+    @SuppressWarnings("unchecked")
+    protected PersistentContent<BT> branchContent(String name) {
+        var registry = nodes.getBranches();
+        if (registry == null) {
+            throw new IllegalArgumentException("No such branch: " + name);
+        }
+        return (PersistentContent<BT>) registry.get(name);
+    }
+
+    /**
+     * Шаг общего предка этой и другой версии. Шаги истории до него совпадают в обоих содержимых,
+     * поэтому изменения каждой стороны после предка берутся из её журнала.
+     *
+     * @throws IllegalArgumentException если у версий нет общей истории.
+     */
+    protected int commonAncestor(BasePersistentCollection<K, OT, BT> other) {
+        int step = nodes.commonStep(other.nodes);
+        if (step < 0) {
+            throw new IllegalArgumentException("Collections do not share history");
+        }
+        return Math.min(step, Math.min(modificationCount, other.modificationCount));
+    }
+
+    /**
+     * Содержимое версии в виде событий вставки.
+     *
+     * @param modificationStep Шаг версии.
+     * @param changeStep       Шаг, которым помечаются события.
+     */
+    protected abstract Stream<Change<K, OT>> insertionsAt(int modificationStep, int changeStep);
+
+    /**
+     * Журнал изменений содержимого.
+     */
+    @SuppressWarnings("unchecked")
+    protected ChangeLog<K, OT> changeLog() {
+        return (ChangeLog<K, OT>) nodes.getChangeLog();
+    }
+
+    /**
+     * Проверка, что шаг модификации существует в содержимом.
+     */
+    protected void checkModificationStep(int modificationStep) {
+        if (modificationStep < 0 || modificationStep > nodes.getMaxModification().getValue()) {
+            throw new IllegalArgumentException("No such modification step: " + modificationStep);
+        }
+    }
+
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
     public int getCount() {
         return count;
     }
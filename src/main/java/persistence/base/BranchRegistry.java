@@ -0,0 +1,50 @@
+package persistence.base;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Именованные ветви одной истории. Ветвь — это содержимое, ответвлённое от общего предка,
+ * её голова — последний шаг этого содержимого. Реестр общий для всех ветвей истории
+ * и передаётся ответвлённому содержимому вместе с журналом изменений.
+ */
+public class BranchRegistry {
+    // Имя исходной ветви, создаваемой вместе с реестром
+    public static final String MAIN = "main";
+
+    // Содержимое ветвей в порядке создания
+    private final Map<String, PersistentContent<?>> branches = new LinkedHashMap<>();
+
+    /**
+     * Регистрация содержимого под новым именем.
+     *
+     * @throws IllegalArgumentException если ветвь с таким именем уже есть.
+     */
+    public synchronized void register(String name, PersistentContent<?> content) {
+        if (branches.putIfAbsent(name, content) != null) {
+            throw new IllegalArgumentException("Branch already exists: " + name);
+        }
+    }
+
+    /**
+     * Содержимое ветви.
+     *
+     * @throws IllegalArgumentException если ветви с таким именем нет.
+     */
+    public synchronized PersistentContent<?> get(String name) {
+        var content = branches.get(name);
+        if (content == null) {
+            throw new IllegalArgumentException("No such branch: " + name);
+        }
+        return content;
+    }
+
+    /**
+     * Имена ветвей в порядке создания.
+     */
+    public synchronized Set<String> names() {
+        return new LinkedHashSet<>(branches.keySet());
+    }
+}
@@ -0,0 +1,51 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Изменение массовой операции, публикуемое одним событием на шаг.
+ * Отдельные вставки, замены и удаления шага строятся лениво при обходе {@link #expand()},
+ * поэтому запись операции в журнал не зависит от количества затронутых элементов.
+ * Вид изменения — {@link ChangeType#Update}, ключ и значения равны null.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class BulkChange<K, V> extends Change<K, V> {
+    // Построение отдельных изменений шага
+    private final Supplier<Stream<Change<K, V>>> changes;
+
+    public BulkChange(int step, Supplier<Stream<Change<K, V>>> changes) {
+        super(step, ChangeType.Update, null, null, null);
+        this.changes = changes;
+    }
+
+    /**
+     * Отдельные изменения шага в порядке применения.
+     */
+    @Override
+    public Stream<Change<K, V>> expand() {
+        return changes.get();
+    }
+
+    /**
+     * Обратное изменение: обратные отдельные изменения в обратном порядке.
+     */
+    @Override
+    public Change<K, V> inverse() {
+        return new BulkChange<>(getStep(), () -> {
+            var inverse = expand().map(Change::inverse).collect(Collectors.toCollection(ArrayList::new));
+            Collections.reverse(inverse);
+            return inverse.stream();
+        });
+    }
+
+    @Override
+    public String toString() {
+        return getStep() + ":Bulk" + expand().map(Change::toString).collect(Collectors.joining(", ", "[", "]"));
+    }
+}
@@ -0,0 +1,74 @@
+package persistence.base;
+
+import java.util.stream.Stream;
+
+/**
+ * Запись об одном изменении коллекции, опубликованном на шаге модификации.
+ *
+ * @param <K> Тип ключа (индекса) изменённого элемента.
+ * @param <V> Тип значения.
+ */
+public class Change<K, V> {
+    // Шаг модификации, на котором произошло изменение
+    private final int step;
+    // Вид изменения
+    private final ChangeType type;
+    // Ключ или индекс элемента, для очистки — null
+    private final K key;
+    // Значение до и после изменения
+    private final V oldValue;
+    private final V newValue;
+
+    public Change(int step, ChangeType type, K key, V oldValue, V newValue) {
+        this.step = step;
+        this.type = type;
+        this.key = key;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public V getOldValue() {
+        return oldValue;
+    }
+
+    public V getNewValue() {
+        return newValue;
+    }
+
+    /**
+     * Отдельные изменения, из которых состоит это изменение. Массовые операции публикуют
+     * одно {@link BulkChange} на шаг, остальные изменения состоят из самих себя.
+     */
+    public Stream<Change<K, V>> expand() {
+        return Stream.of(this);
+    }
+
+    /**
+     * Обратное изменение, отменяющее данное. Для очистки возвращается само изменение.
+     */
+    public Change<K, V> inverse() {
+        return switch (type) {
+            case Insert -> new Change<>(step, ChangeType.Remove, key, newValue, oldValue);
+            case Remove -> new Change<>(step, ChangeType.Insert, key, newValue, oldValue);
+            case Update -> new Change<>(step, ChangeType.Update, key, newValue, oldValue);
+            case Clear -> this;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return step + ":" + type + "(" + key + ", " + oldValue + " -> " + newValue + ")";
+    }
+}
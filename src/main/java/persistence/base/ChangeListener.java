@@ -0,0 +1,36 @@
+package persistence.base;
+
+import java.util.List;
+
+/**
+ * Получатель изменений, публикуемых коллекцией при каждом новом шаге модификации.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public interface ChangeListener<K, V> {
+    void onChange(Change<K, V> change);
+
+    /**
+     * Получение всех изменений одного шага. По умолчанию изменения передаются по одному в порядке применения.
+     */
+    default void onStep(List<Change<K, V>> changes) {
+        changes.forEach(this::onChange);
+    }
+
+    /**
+     * Переходит ли подписчик в ветвь, созданную изменением старой версии.
+     * Подписчики, хранящие состояние конкретной версии, в ветвь не переходят.
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Подписчик, который получает изменения ветви, созданной из шага {@code step}.
+     * Вызывается только для общих подписчиков; по умолчанию ветвь получает того же подписчика.
+     */
+    default ChangeListener<K, V> forBranch(int step) {
+        return this;
+    }
+}
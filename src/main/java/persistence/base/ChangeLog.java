@@ -0,0 +1,94 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Пошаговый журнал изменений содержимого.
+ * Изменения хранятся в порядке шагов, поэтому выборка между двумя шагами
+ * стоит O(log n + k), где k — количество изменений в диапазоне.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class ChangeLog<K, V> implements ChangeListener<K, V> {
+    // Изменения в порядке возрастания шагов
+    private final ArrayList<Change<K, V>> changes = new ArrayList<>();
+
+    @Override
+    public void onChange(Change<K, V> change) {
+        changes.add(change);
+    }
+
+    /**
+     * Изменения, произошедшие после шага {@code fromStep} и не позже шага {@code toStep}, в порядке применения.
+     *
+     * @param fromStep Исходный шаг (не включается).
+     * @param toStep   Конечный шаг (включается).
+     * @return Ленивый поток изменений.
+     */
+    public Stream<Change<K, V>> between(int fromStep, int toStep) {
+        if (fromStep >= toStep) {
+            return Stream.empty();
+        }
+
+        return changes.subList(upperBound(fromStep), upperBound(toStep)).stream();
+    }
+
+    /**
+     * Обратные изменения, возвращающие содержимое с шага {@code fromStep} к шагу {@code toStep}.
+     * Изменения идут от последнего к первому; очистки передаются как есть, так как для их отмены
+     * нужно содержимое версии.
+     *
+     * @param fromStep Исходный шаг (включается), больший конечного.
+     * @param toStep   Конечный шаг (не включается).
+     * @return Ленивый поток обратных изменений.
+     */
+    public Stream<Change<K, V>> reverse(int fromStep, int toStep) {
+        if (fromStep <= toStep) {
+            return Stream.empty();
+        }
+
+        int low = upperBound(toStep);
+        int high = upperBound(fromStep);
+        return IntStream.range(0, high - low)
+                .mapToObj(i -> changes.get(high - 1 - i))
+                .map(Change::inverse);
+    }
+
+    /**
+     * Изменения, опубликованные на заданном шаге.
+     */
+    public Stream<Change<K, V>> at(int step) {
+        return between(step - 1, step);
+    }
+
+    /**
+     * Копия журнала, содержащая только изменения до заданного шага включительно.
+     */
+    public ChangeLog<K, V> truncate(int step) {
+        var copy = new ChangeLog<K, V>();
+        copy.changes.addAll(changes.subList(0, upperBound(step)));
+        return copy;
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    // Индекс первого изменения с шагом больше заданного
+    private int upperBound(int step) {
+        int low = 0;
+        int high = changes.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (changes.get(middle).getStep() <= step) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,194 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Издатель опубликованных изменений содержимого в виде {@link Flow.Publisher}.
+ * Писатель только кладёт изменение в очереди подписчиков и никогда не блокируется;
+ * доставка выполняется на исполнителе с учётом запрошенного подписчиком спроса,
+ * причём один вызов {@code onNext} передаёт пачку из нескольких изменений.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class ChangePublisher<K, V> implements Flow.Publisher<List<Change<K, V>>>, ChangeListener<K, V> {
+    // Исполнитель, на котором выполняется доставка
+    private final Executor executor;
+    // Максимальный размер пачки в одном onNext
+    private final int maxBatchSize;
+    // Максимальное количество недоставленных изменений у одного подписчика
+    private final int bufferCapacity;
+    // Активные подписки
+    private final List<ChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Издатель закрыт, новые изменения не принимаются
+    private volatile boolean closed;
+
+    public ChangePublisher() {
+        this(ForkJoinPool.commonPool(), 256, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param executor       Исполнитель для доставки.
+     * @param maxBatchSize   Максимальный размер пачки.
+     * @param bufferCapacity Максимальное количество недоставленных изменений у подписчика;
+     *                       при переполнении подписка завершается ошибкой.
+     */
+    public ChangePublisher(Executor executor, int maxBatchSize, int bufferCapacity) {
+        if (maxBatchSize <= 0 || bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Batch size and buffer capacity must be positive");
+        }
+
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Change<K, V>>> subscriber) {
+        var subscription = new ChangeSubscription(subscriber);
+        if (!closed) {
+            subscriptions.add(subscription);
+        }
+        subscriber.onSubscribe(subscription);
+
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    @Override
+    public void onChange(Change<K, V> change) {
+        if (closed) {
+            return;
+        }
+
+        for (var subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    /**
+     * Закрывает издатель: подписчики получат оставшиеся изменения и {@code onComplete}.
+     */
+    public void close() {
+        closed = true;
+        for (var subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private final class ChangeSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<Change<K, V>>> subscriber;
+        // Недоставленные изменения
+        private final Queue<Change<K, V>> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        // Запрошенное, но ещё не выполненное количество вызовов onNext
+        private final AtomicLong demand = new AtomicLong();
+        // Счётчик запросов на доставку: доставка выполняется только одним потоком
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile Throwable error;
+        private boolean terminated;
+
+        private ChangeSubscription(Flow.Subscriber<? super List<Change<K, V>>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(Change<K, V> change) {
+            if (cancelled || error != null) {
+                return;
+            }
+
+            if (buffered.incrementAndGet() > bufferCapacity) {
+                error = new IllegalStateException("Subscriber buffer overflow");
+                subscriptions.remove(this);
+            } else {
+                buffer.add(change);
+            }
+            schedule();
+        }
+
+        private void complete() {
+            completed = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested demand must be positive: " + n);
+                subscriptions.remove(this);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pending.set(0);
+                    cancel();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        // Доставка накопленных изменений в пределах спроса
+        private void drain() {
+            if (terminated || cancelled) {
+                return;
+            }
+
+            if (error != null) {
+                terminated = true;
+                subscriber.onError(error);
+                return;
+            }
+
+            while (demand.get() > 0 && !buffer.isEmpty() && !cancelled) {
+                var batch = new ArrayList<Change<K, V>>(Math.min(maxBatchSize, buffered.get()));
+                Change<K, V> change;
+                while (batch.size() < maxBatchSize && (change = buffer.poll()) != null) {
+                    batch.add(change);
+                }
+                buffered.addAndGet(-batch.size());
+                demand.decrementAndGet();
+                subscriber.onNext(Collections.unmodifiableList(batch));
+            }
+
+            if (completed && buffer.isEmpty() && !cancelled) {
+                terminated = true;
+                subscriptions.remove(this);
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package persistence.base;
+
+public enum ChangeType {
+    Insert,
+    Update,
+    Remove,
+    Clear
+}
@@ -0,0 +1,57 @@
+package persistence.base;
+
+import java.util.Objects;
+
+/**
+ * Полиномиальный хеш последовательности по модулю 2^64 вместе со степенью основания,
+ * равной основанию в степени длины. Хеши соседних диапазонов объединяются ассоциативно,
+ * поэтому дерево агрегатов хранит хеш каждого поддерева и пересчитывает при изменении
+ * только путь от листа до корня, как дерево Меркла.
+ * Хеш элемента строится из 32-битного {@link Object#hashCode()}: перемешивание разносит
+ * близкие значения, но элементы с равными hashCode (например, "Aa" и "BB") дают равные хеши.
+ * Поэтому совпадение хешей только подсказывает равенство содержимого и подтверждается сравнением элементов.
+ */
+public final class ContentHash {
+    // Нечётное основание многочлена
+    private static final long BASE = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Объединение хешей соседних диапазонов; нейтральный элемент — хеш пустой последовательности.
+     */
+    public static final Monoid<ContentHash> MONOID = Monoid.of(new ContentHash(0, 1),
+            (left, right) -> new ContentHash(left.hash * right.power + right.hash, left.power * right.power));
+
+    private final long hash;
+    private final long power;
+
+    private ContentHash(long hash, long power) {
+        this.hash = hash;
+        this.power = power;
+    }
+
+    /**
+     * Хеш последовательности из одного элемента.
+     */
+    public static ContentHash of(Object value) {
+        return new ContentHash(mix(Objects.hashCode(value)), BASE);
+    }
+
+    /**
+     * Хеш пары ключ-значение для аддитивного хеша словаря. Как и в деревьях ключей,
+     * ключ представлен своим хешем.
+     */
+    public static long entry(Object key, Object value) {
+        return mix(mix(Objects.hashCode(key)) + Objects.hashCode(value));
+    }
+
+    // Финальное перемешивание SplitMix64
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    public long getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,123 @@
+package persistence.base;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Последовательность, хеш любого диапазона которой доступен без обхода элементов.
+ * Хеши одинаковых последовательностей совпадают для всех реализаций, поэтому сравнивать
+ * можно и разные коллекции, и удалённую реплику, отвечающую на запросы хешей диапазонов:
+ * поиск кандидата расхождения делает O(log n) таких запросов.
+ * Хеш элемента построен из {@link Object#hashCode()}, поэтому различные хеши гарантируют различие,
+ * а совпадающие только подсказывают равенство: ответы сравнений подтверждаются поэлементно.
+ */
+public interface IRangeHashed {
+    int getCount();
+
+    /**
+     * Хеш элементов в позициях [from, to).
+     */
+    long contentHash(int from, int to);
+
+    /**
+     * Элементы последовательности по порядку без копирования.
+     */
+    List<?> asList();
+
+    /**
+     * Хеш всего содержимого.
+     */
+    default long contentHash() {
+        return contentHash(0, getCount());
+    }
+
+    /**
+     * Поэлементное сравнение диапазона [from, from + length) с диапазоном другой последовательности
+     * от позиции otherFrom.
+     */
+    default boolean rangeEquals(int from, IRangeHashed other, int otherFrom, int length) {
+        return asList().subList(from, from + length).equals(other.asList().subList(otherFrom, otherFrom + length));
+    }
+
+    /**
+     * Сравнение содержимого. Различие размеров или хешей отвечает за O(log n) без обхода элементов,
+     * а совпадение хешей подтверждается поэлементно за O(n).
+     */
+    default boolean contentEquals(IRangeHashed other) {
+        return getCount() == other.getCount() && contentHash() == other.contentHash()
+                && rangeEquals(0, other, 0, getCount());
+    }
+
+    /**
+     * Индекс первого расхождения или -1, если содержимое совпадает. Если одна последовательность
+     * является началом другой, расхождение находится в позиции длины более короткой.
+     * Двоичный поиск по хешам префиксов делает O(log n) запросов к каждой стороне, после чего
+     * найденный совпадающий префикс подтверждается поэлементно; при совпадении хешей различных
+     * префиксов расхождение ищется обходом.
+     */
+    default int mismatch(IRangeHashed other) {
+        if (contentEquals(other)) {
+            return -1;
+        }
+
+        // Наибольшая длина совпадающего префикса
+        int low = 0;
+        int high = Math.min(getCount(), other.getCount());
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (contentHash(0, middle) == other.contentHash(0, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (rangeEquals(0, other, 0, low)) {
+            return low;
+        }
+
+        var ours = asList().iterator();
+        var theirs = other.asList().iterator();
+        int index = 0;
+        while (Objects.equals(ours.next(), theirs.next())) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Длина совпадающего окончания, не пересекающегося с совпадающим префиксом.
+     * Вместе с {@link #mismatch(IRangeHashed)} задаёт расходящиеся диапазоны обеих сторон:
+     * [mismatch, getCount() - commonSuffix) здесь и [mismatch, other.getCount() - commonSuffix) в другой.
+     * Найденное по хешам окончание, как и префикс, подтверждается поэлементно.
+     */
+    default int commonSuffix(IRangeHashed other) {
+        int prefix = mismatch(other);
+        if (prefix < 0) {
+            return getCount();
+        }
+
+        int count = getCount();
+        int otherCount = other.getCount();
+        int low = 0;
+        int high = Math.min(count, otherCount) - prefix;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (contentHash(count - middle, count) == other.contentHash(otherCount - middle, otherCount)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (rangeEquals(count - low, other, otherCount - low, low)) {
+            return low;
+        }
+
+        var ours = asList().listIterator(count);
+        var theirs = other.asList().listIterator(otherCount);
+        int length = 0;
+        while (length < high && Objects.equals(ours.previous(), theirs.previous())) {
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,39 @@
+package persistence.base;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Коллекция, к версиям которой можно применять опубликованные изменения.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ * @param <C> Тип коллекции.
+ */
+public interface IReplayable<K, V, C> extends IVersioned<C> {
+    /**
+     * Применение изменения к версии.
+     *
+     * @return Новая версия на следующем шаге.
+     */
+    C apply(Change<K, V> change);
+
+    /**
+     * Подготовка записи нескольких изменений одним шагом. Изменения проверяются сразу относительно
+     * этой версии, и при ошибке исключение выбрасывается до какой-либо записи. Запись всех изменений
+     * одним обновлением содержимого и их публикация выполняются вызовом {@code get()} результата.
+     * Шаги переданных изменений не учитываются, а старые значения берутся из версии.
+     *
+     * @return Запись шага, возвращающая новую версию или эту же, если изменения ничего не меняют.
+     */
+    Supplier<C> prepare(List<Change<K, V>> changes);
+
+    /**
+     * Применение нескольких изменений одним шагом: либо записываются все, либо ни одно.
+     *
+     * @return Новая версия на следующем шаге.
+     */
+    default C applyStep(List<Change<K, V>> changes) {
+        return prepare(changes).get();
+    }
+}
@@ -0,0 +1,15 @@
+package persistence.base;
+
+/**
+ * Коллекция, любая версия которой доступна по шагу модификации.
+ *
+ * @param <C> Тип коллекции.
+ */
+public interface IVersioned<C> {
+    /**
+     * Версия той же коллекции на заданном шаге.
+     */
+    C version(int modificationStep);
+
+    int getModificationCount();
+}
@@ -0,0 +1,49 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Материализованное зеркало последней версии коллекции с доступом по индексу.
+ * Обновляется инкрементально по публикуемым изменениям.
+ *
+ * @param <T> Тип значений.
+ */
+public class ListMirror<T> implements ChangeListener<Integer, T> {
+    // Значения последней версии
+    private final ArrayList<T> values;
+    // Шаг модификации, которому соответствует зеркало
+    private int step;
+
+    public ListMirror(List<T> values, int step) {
+        this.values = new ArrayList<>(values);
+        this.step = step;
+    }
+
+    @Override
+    public void onChange(Change<Integer, T> change) {
+        switch (change.getType()) {
+            case Insert -> values.add(change.getKey(), change.getNewValue());
+            case Update -> values.set(change.getKey(), change.getNewValue());
+            case Remove -> values.remove((int) change.getKey());
+            case Clear -> values.clear();
+        }
+        step = change.getStep();
+    }
+
+    public T get(int index) {
+        return values.get(index);
+    }
+
+    public boolean contains(T value) {
+        return values.contains(value);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public int getStep() {
+        return step;
+    }
+}
@@ -0,0 +1,66 @@
+package persistence.base;
+
+import java.util.*;
+
+/**
+ * Материализованное зеркало последней версии отображения.
+ * Обновляется инкрементально по публикуемым изменениям.
+ *
+ * @param <K> Тип ключа.
+ * @param <V> Тип значения.
+ */
+public class MapMirror<K, V> implements ChangeListener<K, V> {
+    // Живые ключи и значения последней версии
+    private final HashMap<K, V> values;
+    // Шаг модификации, которому соответствует зеркало
+    private int step;
+
+    public MapMirror(Map<K, V> values, int step) {
+        this.values = new HashMap<>(values);
+        this.step = step;
+    }
+
+    @Override
+    public void onChange(Change<K, V> change) {
+        switch (change.getType()) {
+            case Insert, Update -> values.put(change.getKey(), change.getNewValue());
+            case Remove -> values.remove(change.getKey());
+            case Clear -> values.clear();
+        }
+        step = change.getStep();
+    }
+
+    public V get(K key) {
+        return values.get(key);
+    }
+
+    public boolean containsKey(K key) {
+        return values.containsKey(key);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Копия множества ключей зеркала.
+     */
+    public Set<K> keys() {
+        return new HashSet<>(values.keySet());
+    }
+
+    /**
+     * Копия записей зеркала, не зависящая от последующих изменений.
+     */
+    public List<Map.Entry<K, V>> entries() {
+        var result = new ArrayList<Map.Entry<K, V>>(values.size());
+        for (var entry : values.entrySet()) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+        }
+        return result;
+    }
+
+    public int getStep() {
+        return step;
+    }
+}
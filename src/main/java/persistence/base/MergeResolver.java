@@ -0,0 +1,20 @@
+package persistence.base;
+
+/**
+ * Разрешение конфликта трёхстороннего слияния: ключ изменён в обеих ветвях по-разному.
+ * Отсутствующее значение передаётся как null, а возвращённый null удаляет ключ.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+@FunctionalInterface
+public interface MergeResolver<K, V> {
+    /**
+     * @param key    Ключ конфликта.
+     * @param base   Значение в общем предке.
+     * @param ours   Значение в этой ветви.
+     * @param theirs Значение во вливаемой ветви.
+     * @return Значение результата слияния.
+     */
+    V resolve(K key, V base, V ours, V theirs);
+}
@@ -0,0 +1,34 @@
+package persistence.base;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Ассоциативная операция с нейтральным элементом, по которой считаются агрегаты диапазонов.
+ *
+ * @param <T> Тип значений.
+ */
+public interface Monoid<T> {
+    /**
+     * Нейтральный элемент: агрегат пустого диапазона.
+     */
+    T identity();
+
+    /**
+     * Ассоциативное объединение агрегатов соседних диапазонов.
+     */
+    T combine(T left, T right);
+
+    static <T> Monoid<T> of(T identity, BinaryOperator<T> combine) {
+        return new Monoid<>() {
+            @Override
+            public T identity() {
+                return identity;
+            }
+
+            @Override
+            public T combine(T left, T right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package persistence.base;
+
+/**
+ * Неизменяемое битовое множество на основе 32-ичного префиксного дерева.
+ * Листья хранят по 32 слова (2048 бит); изменение копирует только путь от корня до листа,
+ * поэтому множества соседних версий разделяют почти всю память.
+ * Количество установленных битов хранится в каждой версии и доступно за O(1).
+ */
+public final class PersistentBitSet {
+    // Разрядность ветвления внутренних узлов и количество слов в листе
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    // Количество бит, покрываемых одним листом: 32 слова по 64 бита
+    private static final int LEAF_BITS = BITS + 6;
+
+    private static final PersistentBitSet EMPTY = new PersistentBitSet(null, 0, 0);
+
+    // Корень: long[] при глубине 0, иначе Object[]
+    private final Object root;
+    // Количество уровней внутренних узлов над листьями
+    private final int depth;
+    private final int cardinality;
+
+    private PersistentBitSet(Object root, int depth, int cardinality) {
+        this.root = root;
+        this.depth = depth;
+        this.cardinality = cardinality;
+    }
+
+    public static PersistentBitSet empty() {
+        return EMPTY;
+    }
+
+    public boolean get(int index) {
+        if (index < 0 || index >= capacity(depth)) {
+            return false;
+        }
+
+        var node = root;
+        for (var level = depth; level > 0 && node != null; level--) {
+            node = ((Object[]) node)[(index >>> shift(level)) & (WIDTH - 1)];
+        }
+
+        if (node == null) {
+            return false;
+        }
+
+        long word = ((long[]) node)[(index >>> 6) & (WIDTH - 1)];
+        return (word & (1L << index)) != 0;
+    }
+
+    /**
+     * Множество с установленным битом.
+     *
+     * @return Новое множество или это же, если бит уже установлен.
+     */
+    public PersistentBitSet set(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        if (get(index)) {
+            return this;
+        }
+
+        // Дерево растёт вверх, пока индекс не поместится
+        var newRoot = root;
+        var newDepth = depth;
+        while (index >= capacity(newDepth)) {
+            if (newRoot != null) {
+                var children = new Object[WIDTH];
+                children[0] = newRoot;
+                newRoot = children;
+            }
+            newDepth++;
+        }
+
+        return new PersistentBitSet(with(newRoot, newDepth, index, true), newDepth, cardinality + 1);
+    }
+
+    /**
+     * Множество со сброшенным битом.
+     *
+     * @return Новое множество или это же, если бит не установлен.
+     */
+    public PersistentBitSet clear(int index) {
+        if (!get(index)) {
+            return this;
+        }
+
+        return new PersistentBitSet(with(root, depth, index, false), depth, cardinality - 1);
+    }
+
+    /**
+     * Количество установленных битов.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Индекс первого установленного бита, не меньшего заданного. Пустые поддеревья пропускаются целиком.
+     *
+     * @return Индекс или -1, если таких битов нет.
+     */
+    public int nextSetBit(int from) {
+        from = Math.max(from, 0);
+        if (from >= capacity(depth)) {
+            return -1;
+        }
+
+        return nextSetBit(root, depth, from, 0);
+    }
+
+    // Копия пути до листа с изменённым битом
+    private static Object with(Object node, int level, int index, boolean value) {
+        if (level == 0) {
+            var words = node == null ? new long[WIDTH] : ((long[]) node).clone();
+            int word = (index >>> 6) & (WIDTH - 1);
+            words[word] = value ? words[word] | 1L << index : words[word] & ~(1L << index);
+            return words;
+        }
+
+        var children = node == null ? new Object[WIDTH] : ((Object[]) node).clone();
+        int child = (index >>> shift(level)) & (WIDTH - 1);
+        children[child] = with(children[child], level - 1, index, value);
+        return children;
+    }
+
+    private static int nextSetBit(Object node, int level, int from, int base) {
+        if (node == null) {
+            return -1;
+        }
+
+        if (level == 0) {
+            var words = (long[]) node;
+            int word = (from - base) >>> 6;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word == WIDTH) {
+                    return -1;
+                }
+                bits = words[word];
+            }
+            return base + (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        var children = (Object[]) node;
+        int shift = shift(level);
+        for (int child = (from - base) >>> shift; child < WIDTH; child++) {
+            int childBase = base + (child << shift);
+            int result = nextSetBit(children[child], level - 1, Math.max(from, childBase), childBase);
+            if (result >= 0) {
+                return result;
+            }
+        }
+
+        return -1;
+    }
+
+    // Сдвиг индекса потомка на заданном уровне внутренних узлов
+    private static int shift(int level) {
+        return LEAF_BITS + BITS * (level - 1);
+    }
+
+    private static long capacity(int depth) {
+        return 1L << (LEAF_BITS + BITS * depth);
+    }
+}
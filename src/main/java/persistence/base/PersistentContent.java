@@ -1,5 +1,8 @@
 package persistence.base;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -12,6 +15,23 @@ public class PersistentContent<T> {
     private T content;
     // Счетчик модификаций
     private ModificationCount maxModification;
+    // Подписчики на изменения содержимого
+    private final List<ChangeListener<?, ?>> listeners = new ArrayList<>();
+    // Журнал всех опубликованных изменений
+    private ChangeLog<?, ?> changeLog = new ChangeLog<>();
+    // Кэш материализованных версий, если он подключён
+    private VersionCache versionCache;
+    // Эпохи очисток в порядке возрастания шагов: шаг очистки и смещение начала новой эпохи
+    private final List<int[]> epochs = new ArrayList<>();
+    // Общие часы версий, если содержимое к ним подключено
+    private VersionClock clock;
+    // Отметки часов в порядке возрастания: шаг и время, с которого он виден
+    private final List<long[]> ticks = new ArrayList<>();
+    // Реестр именованных ветвей истории, если ветви создавались
+    private BranchRegistry branches;
+    // Содержимое, от которого ответвлено это, и шаг ответвления
+    private PersistentContent<?> parent;
+    private int forkStep = -1;
 
     /**
      * Конструктор для инициализации содержимого.
@@ -34,6 +54,233 @@ public class PersistentContent<T> {
         getMaxModification().setValue(getMaxModification().getValue() + 1); // Увеличиваем значение счетчика модификаций
     }
 
+    /**
+     * Создание содержимого новой ветви, ответвлённой от заданного шага.
+     * Ветвь получает журнал изменений до этого шага, кэш версий, реестр ветвей и общих подписчиков
+     * и запоминает исходное содержимое с шагом ответвления для поиска общего предка.
+     *
+     * @param content Структура новой ветви.
+     * @param step    Шаг, от которого создаётся ветвь.
+     * @return Содержимое ветви.
+     */
+    public PersistentContent<T> fork(T content, int step) {
+        var result = new PersistentContent<>(content, new ModificationCount(step));
+        result.setChangeLog(changeLog.truncate(step));
+        result.setVersionCache(versionCache);
+        result.branches = branches;
+        result.parent = this;
+        result.forkStep = step;
+        for (var epoch : epochs) {
+            if (epoch[0] <= step) {
+                result.epochs.add(epoch);
+            }
+        }
+        for (var listener : listeners) {
+            if (listener.isShared()) {
+                result.addListener(listener.forBranch(step));
+            }
+        }
+        if (clock != null) {
+            // Ветвь наследует отметки общих шагов, а новые шаги получает от тех же часов
+            for (var tick : ticks) {
+                if (tick[0] <= step) {
+                    result.ticks.add(tick);
+                }
+            }
+            result.clock = clock;
+            clock.register(result, -1);
+        }
+        return result;
+    }
+
+    /**
+     * Публикация изменения всем подписчикам. Вызывается после {@link #update(Consumer)}.
+     *
+     * @param change Опубликованное изменение.
+     */
+    public <K, V> void publish(Change<K, V> change) {
+        publishAll(List.of(change));
+    }
+
+    /**
+     * Публикация всех изменений одного шага. Подписчики получают шаг целиком одним вызовом
+     * {@link ChangeListener#onStep(List)}. Вызывается после {@link #update(Consumer)}.
+     *
+     * @param changes Изменения шага в порядке применения.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> void publishAll(List<Change<K, V>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        changes.forEach(((ChangeLog<K, V>) changeLog)::onChange);
+        if (clock != null) {
+            clock.record(this, changes.get(0).getStep());
+        }
+        for (var listener : listeners) {
+            ((ChangeListener<K, V>) listener).onStep(changes);
+        }
+    }
+
+    /**
+     * Отметка очистки: записи истории до этого шага не видны версиям, начиная с него.
+     * Очистка не трогает узлы и выполняется за O(1).
+     *
+     * @param step Шаг очистки.
+     * @param base Смещение, с которого начинается содержимое новой эпохи.
+     */
+    public void markEpoch(int step, int base) {
+        epochs.add(new int[]{step, base});
+    }
+
+    /**
+     * Смещение начала эпохи, действующей на заданном шаге, или 0, если очисток не было.
+     */
+    public int epochBase(int step) {
+        var epoch = epochAt(step);
+        return epoch == null ? 0 : epoch[1];
+    }
+
+    // Последняя эпоха с шагом не больше заданного (двоичный поиск)
+    private int[] epochAt(int step) {
+        int low = 0;
+        int high = epochs.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochs.get(middle)[0] <= step) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low == 0 ? null : epochs.get(low - 1);
+    }
+
+    /**
+     * Подключение к общим часам версий. Текущий последний шаг отмечается текущим временем часов,
+     * а каждый следующий шаг получает очередное время при публикации изменений.
+     *
+     * @throws IllegalStateException если содержимое уже подключено к другим часам.
+     */
+    public void attachClock(VersionClock clock) {
+        if (this.clock == clock) {
+            return;
+        }
+        if (this.clock != null) {
+            throw new IllegalStateException("Content is already attached to another clock");
+        }
+
+        this.clock = clock;
+        clock.register(this, getMaxModification().getValue());
+    }
+
+    // Отметка шага временем часов; повторные публикации того же шага время не меняют
+    void recordTick(int step, long time) {
+        if (ticks.isEmpty() || ticks.get(ticks.size() - 1)[0] != step) {
+            ticks.add(new long[]{step, time});
+        }
+    }
+
+    // Проверка, отмечен ли уже шаг
+    boolean hasTick(int step) {
+        return !ticks.isEmpty() && ticks.get(ticks.size() - 1)[0] == step;
+    }
+
+    /**
+     * Последний шаг, видимый в заданное время часов, или -1, если содержимое ещё не было подключено.
+     */
+    public int stepAt(long time) {
+        int low = 0;
+        int high = ticks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ticks.get(middle)[1] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low == 0 ? -1 : (int) ticks.get(low - 1)[0];
+    }
+
+    /**
+     * Последний шаг, общий для этого и другого содержимого, или -1, если у них нет общей истории.
+     * Время пропорционально глубине цепочек ответвлений.
+     */
+    public int commonStep(PersistentContent<?> other) {
+        // Для каждого предка этого содержимого — последний шаг, общий с ним
+        var limits = new IdentityHashMap<PersistentContent<?>, Integer>();
+        int limit = Integer.MAX_VALUE;
+        for (PersistentContent<?> content = this; content != null; content = content.parent) {
+            limits.put(content, limit);
+            limit = Math.min(limit, content.forkStep);
+        }
+
+        limit = Integer.MAX_VALUE;
+        for (PersistentContent<?> content = other; content != null; content = content.parent) {
+            var own = limits.get(content);
+            if (own != null) {
+                return Math.min(Math.min(own, limit), content.getMaxModification().getValue());
+            }
+            limit = Math.min(limit, content.forkStep);
+        }
+
+        return -1;
+    }
+
+    public BranchRegistry getBranches() {
+        return branches;
+    }
+
+    public void setBranches(BranchRegistry branches) {
+        this.branches = branches;
+    }
+
+    public VersionClock getClock() {
+        return clock;
+    }
+
+    public void addListener(ChangeListener<?, ?> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChangeListener<?, ?> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Поиск подписчика заданного типа.
+     *
+     * @param type Класс подписчика.
+     * @return Первый подписчик этого типа или null.
+     */
+    public <L extends ChangeListener<?, ?>> L getListener(Class<L> type) {
+        for (var listener : listeners) {
+            if (type.isInstance(listener)) {
+                return type.cast(listener);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Все подписчики заданного типа.
+     */
+    public <L extends ChangeListener<?, ?>> List<L> getListeners(Class<L> type) {
+        var result = new ArrayList<L>();
+        for (var listener : listeners) {
+            if (type.isInstance(listener)) {
+                result.add(type.cast(listener));
+            }
+        }
+
+        return result;
+    }
+
     public T getContent() {
         return content;
     }
@@ -42,6 +289,22 @@ public class PersistentContent<T> {
         this.content = content;
     }
 
+    public ChangeLog<?, ?> getChangeLog() {
+        return changeLog;
+    }
+
+    public void setChangeLog(ChangeLog<?, ?> changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    public VersionCache getVersionCache() {
+        return versionCache;
+    }
+
+    public void setVersionCache(VersionCache versionCache) {
+        this.versionCache = versionCache;
+    }
+
     public ModificationCount getMaxModification() {
         return maxModification;
     }
@@ -1,6 +1,7 @@
 package persistence.base;
 
 import persistence.base.tree.BinaryTree;
+import persistence.base.tree.ITree;
 
 /**
  * Класс для представления узла, поддерживающего персистентность изменений.
@@ -9,7 +10,7 @@ import persistence.base.tree.BinaryTree;
  */
 public class PersistentNode<TV> {
     // Дерево для хранения изменений с привязкой к шагу модификации
-    private BinaryTree<Integer, TV> modifications = new BinaryTree<>();
+    private ITree<Integer, TV> modifications;
 
     /**
      * Конструктор для создания узла с начальными данными.
@@ -18,6 +19,19 @@ public class PersistentNode<TV> {
      * @param initialValue Начальное значение узла.
      */
     public PersistentNode(int creationStep, TV initialValue) {
+        this(new BinaryTree<>(), creationStep, initialValue);
+    }
+
+    /**
+     * Конструктор для создания узла с заданным деревом изменений,
+     * например {@link persistence.base.tree.ArrayBinaryTree}.
+     *
+     * @param modifications Пустое дерево изменений.
+     * @param creationStep  Шаг создания узла.
+     * @param initialValue  Начальное значение узла.
+     */
+    public PersistentNode(ITree<Integer, TV> modifications, int creationStep, TV initialValue) {
+        this.modifications = modifications;
         update(creationStep, initialValue); // Добавляем начальное значение на шаге создания
     }
 
@@ -43,11 +57,11 @@ public class PersistentNode<TV> {
         return this; // Возвращаем текущий узел для цепочного вызова
     }
 
-    public BinaryTree<Integer, TV> getModifications() {
+    public ITree<Integer, TV> getModifications() {
         return modifications;
     }
 
-    public void setModifications(BinaryTree<Integer, TV> modifications) {
+    public void setModifications(ITree<Integer, TV> modifications) {
         this.modifications = modifications;
     }
 }
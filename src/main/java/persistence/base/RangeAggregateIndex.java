@@ -0,0 +1,60 @@
+package persistence.base;
+
+import persistence.base.tree.AggregateTree;
+
+/**
+ * Версионный индекс агрегатов диапазонов для коллекций с целочисленными индексами.
+ * Для каждого шага хранится корень неизменяемого дерева агрегатов; опубликованное изменение
+ * порождает новый корень за O(log n), разделяя остальные узлы с предыдущей версией.
+ *
+ * @param <T> Тип значений.
+ */
+public class RangeAggregateIndex<T> implements ChangeListener<Integer, T> {
+    // Корни деревьев по шагам модификации
+    private final StepVersions<AggregateTree<T>> versions;
+
+    /**
+     * Индекс, построенный по журналу изменений содержимого.
+     *
+     * @param monoid    Операция агрегирования.
+     * @param changeLog Журнал изменений.
+     * @param lastStep  Последний шаг содержимого.
+     */
+    public RangeAggregateIndex(Monoid<T> monoid, ChangeLog<Integer, T> changeLog, int lastStep) {
+        this.versions = new StepVersions<>(new AggregateTree<>(monoid));
+        changeLog.between(0, lastStep).forEach(this::onChange);
+        versions.extendTo(lastStep);
+    }
+
+    private RangeAggregateIndex(StepVersions<AggregateTree<T>> versions) {
+        this.versions = versions;
+    }
+
+    @Override
+    public void onChange(Change<Integer, T> change) {
+        versions.apply(change.getStep(), tree -> switch (change.getType()) {
+            case Insert -> tree.insert(change.getKey(), change.getNewValue());
+            case Update -> tree.set(change.getKey(), change.getNewValue());
+            case Remove -> tree.remove(change.getKey());
+            case Clear -> tree.clear();
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага.
+     */
+    public RangeAggregateIndex<T> fork(int step) {
+        return new RangeAggregateIndex<>(versions.fork(step));
+    }
+
+    /**
+     * Агрегат значений в позициях [from, to) версии на заданном шаге.
+     */
+    public T aggregate(int step, int from, int to) {
+        return versions.get(step).aggregate(from, to);
+    }
+
+    public Monoid<T> getMonoid() {
+        return versions.get(0).getMonoid();
+    }
+}
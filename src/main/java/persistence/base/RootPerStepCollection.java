@@ -0,0 +1,96 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Коллекция, каждая версия которой — корень неизменяемой структуры, записанный в список по номеру шага.
+ * Новый шаг добавляет в список один корень, поэтому версия, отмена и повтор только выбирают корень,
+ * а запись в старую версию ответвляет список до её шага.
+ *
+ * @param <K>  Тип ключа.
+ * @param <OT> Тип значений в коллекции.
+ * @param <R>  Тип корня одного шага.
+ * @param <C>  Тип самой коллекции.
+ */
+public abstract class RootPerStepCollection<K, OT, R, C extends RootPerStepCollection<K, OT, R, C>>
+        extends BasePersistentCollection<K, OT, List<R>> implements IUndoRedo<C>, IVersioned<C> {
+
+    /**
+     * Пустая коллекция с корнем нулевого шага.
+     */
+    protected RootPerStepCollection(R initial) {
+        var roots = new ArrayList<R>();
+        roots.add(initial);
+        nodes = new PersistentContent<>(roots, new ModificationCount(modificationCount));
+    }
+
+    protected RootPerStepCollection(PersistentContent<List<R>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    /**
+     * Версия коллекции с заданными корнями, количеством элементов и шагом.
+     */
+    protected abstract C create(PersistentContent<List<R>> nodes, int count, int modificationCount);
+
+    /**
+     * Количество элементов версии с заданным корнем.
+     */
+    protected abstract int countOf(R root);
+
+    // Корень текущей версии
+    protected R root() {
+        return rootAt(modificationCount);
+    }
+
+    protected R rootAt(int modificationStep) {
+        return nodes.getContent().get(modificationStep);
+    }
+
+    @Override
+    protected PersistentContent<List<R>> reassembleNodes() {
+        return nodes.fork(new ArrayList<>(nodes.getContent().subList(0, modificationCount + 1)), modificationCount);
+    }
+
+    @Override
+    protected int recalculateCount(int modificationStep) {
+        return countOf(rootAt(modificationStep));
+    }
+
+    // Запись нового корня с публикацией изменения
+    protected C commit(R root, Change<K, OT> change) {
+        return commit(root, List.of(change));
+    }
+
+    // Запись нового корня одной версией с публикацией всех изменений шага
+    protected C commit(R root, List<Change<K, OT>> changes) {
+        var content = nodes.getMaxModification().getValue() > modificationCount ? reassembleNodes() : nodes;
+        content.update(roots -> roots.add(root));
+        content.publishAll(changes);
+
+        return create(content, countOf(root), modificationCount + 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public C version(int modificationStep) {
+        checkModificationStep(modificationStep);
+        return modificationStep == modificationCount ? (C) this
+                : create(nodes, recalculateCount(modificationStep), modificationStep);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public C undo() {
+        return modificationCount == startModificationCount ? (C) this
+                : create(nodes, recalculateCount(modificationCount - 1), modificationCount - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public C redo() {
+        return modificationCount == nodes.getMaxModification().getValue() ? (C) this
+                : create(nodes, recalculateCount(modificationCount + 1), modificationCount + 1);
+    }
+}
@@ -0,0 +1,57 @@
+package persistence.base;
+
+import persistence.base.tree.AggregateTree;
+
+/**
+ * Версионный индекс хешей диапазонов для коллекций с целочисленными индексами.
+ * Для каждого шага хранится корень неизменяемого дерева хешей, поэтому хеш всей версии
+ * или любого её диапазона получается за O(log n), а изменение пересчитывает O(log n) узлов.
+ */
+public class SequenceHashIndex implements ChangeListener<Integer, Object> {
+    // Корни деревьев по шагам модификации
+    private final StepVersions<AggregateTree<ContentHash>> versions;
+
+    /**
+     * Индекс, построенный по журналу изменений содержимого.
+     *
+     * @param changeLog Журнал изменений.
+     * @param lastStep  Последний шаг содержимого.
+     */
+    public SequenceHashIndex(ChangeLog<Integer, ?> changeLog, int lastStep) {
+        this.versions = new StepVersions<>(new AggregateTree<>(ContentHash.MONOID));
+        changeLog.between(0, lastStep).forEach(c -> apply(c.getStep(), c.getType(), c.getKey(), c.getNewValue()));
+        versions.extendTo(lastStep);
+    }
+
+    private SequenceHashIndex(StepVersions<AggregateTree<ContentHash>> versions) {
+        this.versions = versions;
+    }
+
+    @Override
+    public void onChange(Change<Integer, Object> change) {
+        apply(change.getStep(), change.getType(), change.getKey(), change.getNewValue());
+    }
+
+    private void apply(int step, ChangeType type, Integer index, Object value) {
+        versions.apply(step, tree -> switch (type) {
+            case Insert -> tree.insert(index, ContentHash.of(value));
+            case Update -> tree.set(index, ContentHash.of(value));
+            case Remove -> tree.remove(index);
+            case Clear -> tree.clear();
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага.
+     */
+    public SequenceHashIndex fork(int step) {
+        return new SequenceHashIndex(versions.fork(step));
+    }
+
+    /**
+     * Хеш элементов в позициях [from, to) версии на заданном шаге.
+     */
+    public long hash(int step, int from, int to) {
+        return versions.get(step).aggregate(from, to).getHash();
+    }
+}
@@ -0,0 +1,55 @@
+package persistence.base;
+
+/**
+ * Версионный индекс длины последовательности. Длину версии массива нельзя вывести из количества
+ * узлов, которые только добавляются, а длина версии списка требует обхода связей,
+ * поэтому индекс хранит готовую длину каждого шага и отвечает за O(1).
+ */
+public class SequenceLengthIndex implements ChangeListener<Integer, Object> {
+    // Длины по шагам модификации
+    private final StepVersions<Integer> lengths;
+
+    /**
+     * Индекс, построенный по журналу изменений содержимого.
+     *
+     * @param changeLog Журнал изменений.
+     * @param lastStep  Последний шаг содержимого.
+     */
+    public SequenceLengthIndex(ChangeLog<Integer, ?> changeLog, int lastStep) {
+        this.lengths = new StepVersions<>(0);
+        changeLog.between(0, lastStep).forEach(c -> apply(c.getStep(), c.getType()));
+        lengths.extendTo(lastStep);
+    }
+
+    private SequenceLengthIndex(StepVersions<Integer> lengths) {
+        this.lengths = lengths;
+    }
+
+    @Override
+    public void onChange(Change<Integer, Object> change) {
+        apply(change.getStep(), change.getType());
+    }
+
+    private void apply(int step, ChangeType type) {
+        lengths.apply(step, length -> switch (type) {
+            case Insert -> length + 1;
+            case Remove -> length - 1;
+            case Update -> length;
+            case Clear -> 0;
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага.
+     */
+    public SequenceLengthIndex fork(int step) {
+        return new SequenceLengthIndex(lengths.fork(step));
+    }
+
+    /**
+     * Длина версии на заданном шаге.
+     */
+    public int length(int step) {
+        return lengths.get(step);
+    }
+}
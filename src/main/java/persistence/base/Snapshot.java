@@ -0,0 +1,44 @@
+package persistence.base;
+
+import java.util.Map;
+
+/**
+ * Согласованный срез коллекций, подключённых к {@link VersionClock}, на один момент времени.
+ * Срез хранит только шаги коллекций, поэтому не копирует содержимое и не требует блокировок при чтении.
+ */
+public final class Snapshot {
+    // Момент времени часов
+    private final long time;
+    // Шаг каждого содержимого в этот момент
+    private final Map<PersistentContent<?>, Integer> steps;
+
+    Snapshot(long time, Map<PersistentContent<?>, Integer> steps) {
+        this.time = time;
+        this.steps = steps;
+    }
+
+    /**
+     * Версия коллекции в момент среза за O(1). Подходит любая версия той же ветви коллекции.
+     *
+     * @throws IllegalArgumentException если ветвь коллекции не была подключена к часам в этот момент.
+     */
+    public <C extends BasePersistentCollection<?, ?, ?> & IVersioned<C>> C view(C collection) {
+        var step = steps.get(collection.nodes);
+        if (step == null) {
+            throw new IllegalArgumentException("Collection is not attached to the clock at time " + time);
+        }
+
+        return collection.version(step);
+    }
+
+    /**
+     * Проверка, входит ли ветвь коллекции в срез.
+     */
+    public boolean contains(BasePersistentCollection<?, ?, ?> collection) {
+        return steps.containsKey(collection.nodes);
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,62 @@
+package persistence.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Состояния версионного индекса по шагам модификации. Состояние шага неизменяемо,
+ * поэтому шаги без собственных изменений и ветви разделяют его с предыдущими шагами.
+ * Шаги до изменения без собственных записей наследуют последнее состояние, а несколько
+ * изменений одного шага применяются к уже записанному состоянию этого шага.
+ *
+ * @param <S> Тип состояния одного шага.
+ */
+public final class StepVersions<S> {
+    private final List<S> states;
+
+    /**
+     * Состояния с начальным состоянием нулевого шага.
+     */
+    public StepVersions(S initial) {
+        this.states = new ArrayList<>();
+        states.add(initial);
+    }
+
+    private StepVersions(List<S> states) {
+        this.states = states;
+    }
+
+    /**
+     * Применение изменения шага к состоянию этого шага или, если его ещё нет, к последнему состоянию.
+     */
+    public void apply(int step, UnaryOperator<S> change) {
+        extendTo(step - 1);
+
+        if (step < states.size()) {
+            states.set(step, change.apply(states.get(step)));
+        } else {
+            states.add(change.apply(states.get(step - 1)));
+        }
+    }
+
+    /**
+     * Заполнение шагов без изменений до заданного включительно последним состоянием.
+     */
+    public void extendTo(int step) {
+        while (states.size() <= step) {
+            states.add(states.get(states.size() - 1));
+        }
+    }
+
+    public S get(int step) {
+        return states.get(step);
+    }
+
+    /**
+     * Состояния ветви, ответвлённой от заданного шага: сами состояния разделяются.
+     */
+    public StepVersions<S> fork(int step) {
+        return new StepVersions<>(new ArrayList<>(states.subList(0, step + 1)));
+    }
+}
@@ -0,0 +1,115 @@
+package persistence.base;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный LRU-кэш материализованных версий коллекций.
+ * Ключом служит пара (содержимое коллекции, шаг модификации): содержимое сравнивается по ссылке,
+ * а однажды опубликованный шаг больше не меняется, поэтому снимки не требуют инвалидации.
+ * Снимки хранятся через мягкие ссылки и могут быть освобождены при нехватке памяти.
+ */
+public class VersionCache {
+    // Максимальное количество хранимых снимков
+    private final int capacity;
+    // Снимки в порядке последнего обращения
+    private final LinkedHashMap<Key, SoftReference<Object>> snapshots;
+    // Счётчики попаданий и промахов
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Максимальное количество хранимых снимков.
+     */
+    public VersionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Object>> eldest) {
+                return size() > VersionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Получение снимка версии с материализацией при промахе.
+     *
+     * @param owner  Содержимое коллекции.
+     * @param step   Шаг модификации.
+     * @param loader Материализация версии.
+     * @return Снимок версии.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V get(Object owner, int step, Supplier<V> loader) {
+        var key = new Key(owner, step);
+        var reference = snapshots.get(key);
+        var snapshot = reference == null ? null : reference.get();
+        if (snapshot != null) {
+            hits++;
+            return (V) snapshot;
+        }
+
+        misses++;
+        V loaded = loader.get();
+        snapshots.put(key, new SoftReference<>(loaded));
+        return loaded;
+    }
+
+    /**
+     * Получение снимка версии без материализации и без учёта в счётчиках.
+     *
+     * @return Снимок или null, если версия не закэширована.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V peek(Object owner, int step) {
+        var reference = snapshots.get(new Key(owner, step));
+        return reference == null ? null : (V) reference.get();
+    }
+
+    public synchronized void clear() {
+        snapshots.clear();
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Ключ кэша: содержимое сравнивается по ссылке
+    private static final class Key {
+        private final Object owner;
+        private final int step;
+
+        private Key(Object owner, int step) {
+            this.owner = owner;
+            this.step = step;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && other.owner == owner && other.step == step;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + step;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package persistence.base;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Общие часы версий для нескольких коллекций. Каждый новый шаг подключённой коллекции
+ * получает очередное значение единой монотонной последовательности, поэтому шаги разных коллекций
+ * сравнимы по времени, а {@link Snapshot} фиксирует согласованный срез всех коллекций.
+ * Локальные шаги коллекций не меняются: часы хранят соответствие шагов и времени.
+ * Отметка шага и создание среза синхронизированы, поэтому срез не видит шаг частично.
+ */
+public class VersionClock {
+    // Текущее время часов
+    private long time;
+    // Подключённые содержимые; ветви, на которые не осталось ссылок, не удерживаются
+    private final Map<PersistentContent<?>, Boolean> contents = new WeakHashMap<>();
+
+    /**
+     * Подключение коллекции к часам.
+     *
+     * @return Эти же часы.
+     */
+    public VersionClock attach(BasePersistentCollection<?, ?, ?> collection) {
+        collection.nodes.attachClock(this);
+        return this;
+    }
+
+    /**
+     * Текущее время часов.
+     */
+    public synchronized long now() {
+        return time;
+    }
+
+    /**
+     * Срез всех подключённых коллекций на текущий момент.
+     */
+    public synchronized Snapshot snapshot() {
+        return snapshotAt(time);
+    }
+
+    /**
+     * Срез всех подключённых коллекций на заданный момент. Шаг каждой коллекции определяется
+     * при создании среза, поэтому получение версии из среза стоит O(1).
+     */
+    public synchronized Snapshot snapshotAt(long time) {
+        if (time < 0 || time > this.time) {
+            throw new IllegalArgumentException("No such time: " + time);
+        }
+
+        var steps = new IdentityHashMap<PersistentContent<?>, Integer>();
+        for (var content : contents.keySet()) {
+            int step = content.stepAt(time);
+            if (step >= 0) {
+                steps.put(content, step);
+            }
+        }
+        return new Snapshot(time, steps);
+    }
+
+    // Регистрация содержимого с отметкой заданного шага текущим временем
+    synchronized void register(PersistentContent<?> content, int step) {
+        contents.put(content, Boolean.TRUE);
+        if (step >= 0) {
+            content.recordTick(step, time);
+        }
+    }
+
+    // Отметка нового шага очередным временем
+    synchronized void record(PersistentContent<?> content, int step) {
+        if (!content.hasTick(step)) {
+            content.recordTick(step, ++time);
+        }
+    }
+}
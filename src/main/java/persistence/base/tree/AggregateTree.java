@@ -0,0 +1,180 @@
+package persistence.base.tree;
+
+import persistence.base.Monoid;
+
+/**
+ * Неизменяемое декартово дерево по неявному ключу (позиции) с агрегатами поддеревьев.
+ * Вставка, удаление и замена по позиции копируют O(log n) узлов, а агрегат любого диапазона
+ * собирается из O(log n) готовых агрегатов поддеревьев. Разделение и слияние выполняет {@link ImplicitTreap}.
+ *
+ * @param <T> Тип значений.
+ */
+public final class AggregateTree<T> {
+    private final NodeTreap<T> treap;
+    private final Node<T> root;
+
+    public AggregateTree(Monoid<T> monoid) {
+        this(new NodeTreap<>(monoid), null);
+    }
+
+    private AggregateTree(NodeTreap<T> treap, Node<T> root) {
+        this.treap = treap;
+        this.root = root;
+    }
+
+    public int size() {
+        return Node.weightOf(root);
+    }
+
+    public T get(int index) {
+        checkIndex(index, size());
+
+        var node = root;
+        while (true) {
+            int leftSize = Node.weightOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Вставка значения перед заданной позицией.
+     *
+     * @return Новое дерево.
+     */
+    public AggregateTree<T> insert(int index, T value) {
+        checkIndex(index, size() + 1);
+
+        var parts = treap.split(root, index);
+        var node = treap.node(value, ImplicitTreap.priority(), null, null);
+        return new AggregateTree<>(treap, treap.merge(treap.merge(parts.left, node), parts.right));
+    }
+
+    /**
+     * Удаление значения в заданной позиции.
+     *
+     * @return Новое дерево.
+     */
+    public AggregateTree<T> remove(int index) {
+        checkIndex(index, size());
+
+        var parts = treap.split(root, index);
+        var rest = treap.split(parts.right, 1);
+        return new AggregateTree<>(treap, treap.merge(parts.left, rest.right));
+    }
+
+    /**
+     * Замена значения в заданной позиции.
+     *
+     * @return Новое дерево.
+     */
+    public AggregateTree<T> set(int index, T value) {
+        checkIndex(index, size());
+        return new AggregateTree<>(treap, set(root, index, value));
+    }
+
+    /**
+     * Пустое дерево с той же операцией.
+     */
+    public AggregateTree<T> clear() {
+        return root == null ? this : new AggregateTree<>(treap, null);
+    }
+
+    /**
+     * Агрегат значений в позициях [from, to).
+     */
+    public T aggregate(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + size());
+        }
+
+        return aggregate(root, from, to);
+    }
+
+    public Monoid<T> getMonoid() {
+        return treap.monoid;
+    }
+
+    private T aggregate(Node<T> node, int from, int to) {
+        var monoid = treap.monoid;
+        if (node == null || from >= to) {
+            return monoid.identity();
+        }
+        if (from == 0 && to == node.weight) {
+            return node.aggregate; // Поддерево целиком внутри диапазона
+        }
+
+        int leftSize = Node.weightOf(node.left);
+        var result = monoid.identity();
+        if (from < leftSize) {
+            result = aggregate(node.left, from, Math.min(to, leftSize));
+        }
+        if (from <= leftSize && leftSize < to) {
+            result = monoid.combine(result, node.value);
+        }
+        if (to > leftSize + 1) {
+            result = monoid.combine(result, aggregate(node.right, Math.max(0, from - leftSize - 1), to - leftSize - 1));
+        }
+        return result;
+    }
+
+    private Node<T> set(Node<T> node, int index, T value) {
+        int leftSize = Node.weightOf(node.left);
+        if (index < leftSize) {
+            return treap.with(node, set(node.left, index, value), node.right);
+        }
+        if (index > leftSize) {
+            return treap.with(node, node.left, set(node.right, index - leftSize - 1, value));
+        }
+        return treap.node(value, node.priority, node.left, node.right);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    // Неизменяемый узел со значением и агрегатом поддерева; вес узла — одна позиция
+    private static final class Node<T> extends ImplicitTreap.TreapNode<Node<T>> {
+        final T value;
+        final T aggregate;
+
+        Node(T value, T aggregate, int priority, Node<T> left, Node<T> right) {
+            super(1, priority, left, right);
+            this.value = value;
+            this.aggregate = aggregate;
+        }
+    }
+
+    // Операции дерева: копия узла пересчитывает агрегат поддерева
+    private static final class NodeTreap<T> extends ImplicitTreap<Node<T>> {
+        final Monoid<T> monoid;
+
+        NodeTreap(Monoid<T> monoid) {
+            this.monoid = monoid;
+        }
+
+        @Override
+        protected Node<T> with(Node<T> node, Node<T> left, Node<T> right) {
+            return node(node.value, node.priority, left, right);
+        }
+
+        Node<T> node(T value, int priority, Node<T> left, Node<T> right) {
+            var aggregate = value;
+            if (left != null) {
+                aggregate = monoid.combine(left.aggregate, aggregate);
+            }
+            if (right != null) {
+                aggregate = monoid.combine(aggregate, right.aggregate);
+            }
+            return new Node<>(value, aggregate, priority, left, right);
+        }
+    }
+}
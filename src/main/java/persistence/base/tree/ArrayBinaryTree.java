@@ -0,0 +1,349 @@
+package persistence.base.tree;
+
+import java.util.*;
+
+/**
+ * Красно-чёрное дерево, упорядоченное по хешу ключа, как и {@link BinaryTree},
+ * но хранящее узлы в параллельных массивах. Узел адресуется целочисленным идентификатором,
+ * поэтому на каждый ключ не создаётся отдельный объект, а выделение памяти сводится
+ * к редкому расширению массивов. Размеры поддеревьев хранятся в отдельном массиве,
+ * поэтому порядковые запросы {@link #rank}, {@link #select} и {@link #countInRange} стоят O(log n).
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ */
+public class ArrayBinaryTree<TK, TV> implements ITree<TK, TV> {
+    // Отсутствие узла
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    // Количество узлов в поддереве, включая сам узел
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private boolean[] red = new boolean[INITIAL_CAPACITY];
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int root = NIL;
+    private int size;
+
+    // Поиск узла с заданным хешем
+    private int find(int hash) {
+        int node = root;
+        while (node != NIL && hashes[node] != hash) {
+            node = hash < hashes[node] ? left[node] : right[node];
+        }
+
+        return node;
+    }
+
+    @Override
+    public void insert(TK key, TV item) {
+        int hash = key.hashCode();
+        int node = find(hash);
+        if (node != NIL) { // Ключ уже есть, обновляем значение
+            values[node] = item;
+            return;
+        }
+
+        node = allocate(hash, key, item);
+
+        // Поиск родителя нового узла; поддеревья на пути получают новый узел
+        int y = NIL;
+        int x = root;
+        while (x != NIL) {
+            y = x;
+            sizes[x]++;
+            x = hash < hashes[x] ? left[x] : right[x];
+        }
+
+        parent[node] = y;
+        if (y == NIL) {
+            root = node;
+        } else if (hash < hashes[y]) {
+            left[y] = node;
+        } else {
+            right[y] = node;
+        }
+
+        insertFixUp(node);
+    }
+
+    private int allocate(int hash, TK key, TV item) {
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            red = Arrays.copyOf(red, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        int node = size++;
+        left[node] = NIL;
+        right[node] = NIL;
+        parent[node] = NIL;
+        hashes[node] = hash;
+        sizes[node] = 1;
+        red[node] = true;
+        keys[node] = key;
+        values[node] = item;
+        return node;
+    }
+
+    // Левый поворот вокруг узла x
+    private void leftRotate(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        if (left[y] != NIL) {
+            parent[left[y]] = x;
+        }
+
+        replaceChild(x, y);
+        left[y] = x;
+        parent[x] = y;
+        sizes[y] = sizes[x];
+        resize(x);
+    }
+
+    // Правый поворот вокруг узла y
+    private void rightRotate(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        if (right[x] != NIL) {
+            parent[right[x]] = y;
+        }
+
+        replaceChild(y, x);
+        right[x] = y;
+        parent[y] = x;
+        sizes[x] = sizes[y];
+        resize(y);
+    }
+
+    // Пересчёт размера поддерева по потомкам
+    private void resize(int node) {
+        sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+    }
+
+    private int sizeOf(int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    // Узел replacement занимает место node у его родителя
+    private void replaceChild(int node, int replacement) {
+        int p = parent[node];
+        parent[replacement] = p;
+        if (p == NIL) {
+            root = replacement;
+        } else if (node == left[p]) {
+            left[p] = replacement;
+        } else {
+            right[p] = replacement;
+        }
+    }
+
+    // Исправление дерева после вставки узла
+    private void insertFixUp(int item) {
+        while (item != root && red[parent[item]]) {
+            int p = parent[item];
+            int g = parent[p];
+            if (p == left[g]) {
+                int uncle = right[g];
+                if (uncle != NIL && red[uncle]) { // Случай 1: дядя красный
+                    red[p] = false;
+                    red[uncle] = false;
+                    red[g] = true;
+                    item = g;
+                } else {
+                    if (item == right[p]) { // Случай 2: узел справа
+                        item = p;
+                        leftRotate(item);
+                    }
+
+                    // Случай 3: перекраска и поворот
+                    red[parent[item]] = false;
+                    red[parent[parent[item]]] = true;
+                    rightRotate(parent[parent[item]]);
+                }
+            } else {
+                int uncle = left[g];
+                if (uncle != NIL && red[uncle]) {
+                    red[p] = false;
+                    red[uncle] = false;
+                    red[g] = true;
+                    item = g;
+                } else {
+                    if (item == left[p]) {
+                        item = p;
+                        rightRotate(item);
+                    }
+
+                    red[parent[item]] = false;
+                    red[parent[parent[item]]] = true;
+                    leftRotate(parent[parent[item]]);
+                }
+            }
+        }
+
+        red[root] = false; // Корень всегда черный
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TV get(TK key) {
+        int node = find(key.hashCode());
+        return node == NIL ? null : (TV) values[node];
+    }
+
+    @Override
+    public boolean contains(TK key) {
+        return find(key.hashCode()) != NIL;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TV findNearestLess(TK key) {
+        int hash = key.hashCode();
+        int node = root;
+        int optimal = NIL;
+        while (node != NIL) {
+            if (hashes[node] <= hash) {
+                optimal = node; // Более близкий кандидат может быть только правее
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+
+        return optimal == NIL ? null : (TV) values[optimal];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Map.Entry<TK, TV>> toList() {
+        var result = new ArrayList<Map.Entry<TK, TV>>(size);
+        // Обход в порядке хешей с явным стеком идентификаторов
+        var stack = new int[64];
+        var depth = 0;
+        int node = root;
+        while (node != NIL || depth > 0) {
+            while (node != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left[node];
+            }
+
+            node = stack[--depth];
+            result.add(new AbstractMap.SimpleEntry<>((TK) keys[node], (TV) values[node]));
+            node = right[node];
+        }
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Количество ключей, меньших заданного (в порядке хешей)
+    public int rank(TK key) {
+        return countLess(key.hashCode(), false);
+    }
+
+    // Пара с заданным порядковым номером (с нуля) в порядке хешей
+    @SuppressWarnings("unchecked")
+    public Map.Entry<TK, TV> select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        int node = root;
+        while (true) {
+            int leftSize = sizeOf(left[node]);
+            if (index < leftSize) {
+                node = left[node];
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = right[node];
+            } else {
+                return new AbstractMap.SimpleEntry<>((TK) keys[node], (TV) values[node]);
+            }
+        }
+    }
+
+    // Количество ключей в диапазоне [lo, hi] (в порядке хешей)
+    public int countInRange(TK lo, TK hi) {
+        int loHash = lo.hashCode();
+        int hiHash = hi.hashCode();
+        if (loHash > hiHash) {
+            return 0;
+        }
+
+        return countLess(hiHash, true) - countLess(loHash, false);
+    }
+
+    // Подсчёт ключей с хешем меньше заданного (или не больше, если inclusive) за один спуск
+    private int countLess(int hash, boolean inclusive) {
+        int count = 0;
+        int node = root;
+        while (node != NIL) {
+            if (hashes[node] < hash || inclusive && hashes[node] == hash) {
+                count += sizeOf(left[node]) + 1; // Узел и всё его левое поддерево меньше
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public ArrayBinaryTree<TK, TV> createEmpty() {
+        return new ArrayBinaryTree<>();
+    }
+
+    @Override
+    public Iterator<Map.Entry<TK, TV>> iterator() {
+        return toList().iterator();
+    }
+
+    /**
+     * Черная высота дерева; одинакова для всех путей от корня до листьев.
+     *
+     * @throws IllegalStateException если свойства красно-чёрного дерева нарушены.
+     */
+    public int blackHeight() {
+        if (root != NIL && red[root]) {
+            throw new IllegalStateException("Root must be black");
+        }
+
+        return blackHeight(root);
+    }
+
+    private int blackHeight(int node) {
+        if (node == NIL) {
+            return 1;
+        }
+
+        if (red[node] && (left[node] != NIL && red[left[node]] || right[node] != NIL && red[right[node]])) {
+            throw new IllegalStateException("Red node has a red child");
+        }
+
+        int leftHeight = blackHeight(left[node]);
+        if (leftHeight != blackHeight(right[node])) {
+            throw new IllegalStateException("Black heights differ");
+        }
+
+        return leftHeight + (red[node] ? 0 : 1);
+    }
+}
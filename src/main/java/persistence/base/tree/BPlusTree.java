@@ -0,0 +1,280 @@
+package persistence.base.tree;
+
+import java.util.*;
+
+/**
+ * B+-дерево, упорядоченное по хешу ключа, как и {@link BinaryTree}.
+ * Хеши каждого узла хранятся в массиве примитивов, поэтому поиск внутри узла затрагивает
+ * несколько соседних строк кэша вместо отдельного объекта на каждый ключ.
+ * Листья связаны в список для быстрого последовательного обхода.
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ */
+public class BPlusTree<TK, TV> implements ITree<TK, TV> {
+    public static final int DEFAULT_ORDER = 32;
+
+    // Максимальное количество ключей в узле
+    private final int order;
+    private Page root;
+    // Самый левый лист, начало списка листьев
+    private Leaf first;
+    private int size;
+    // Разделитель, поднимаемый при расщеплении узла
+    private int splitHash;
+
+    public BPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * @param order Максимальное количество ключей в узле.
+     */
+    public BPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("Order must be at least 3");
+        }
+
+        this.order = order;
+        this.first = new Leaf(order);
+        this.root = first;
+    }
+
+    @Override
+    public void insert(TK key, TV item) {
+        var sibling = insert(root, key.hashCode(), key, item);
+        if (sibling != null) {
+            // Корень расщепился, дерево растёт вверх
+            var newRoot = new Inner(order);
+            newRoot.hashes[0] = splitHash;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.count = 1;
+            root = newRoot;
+        }
+    }
+
+    // Вставка в поддерево; возвращает новый правый узел, если узел расщепился
+    private Page insert(Page page, int hash, TK key, TV item) {
+        if (page instanceof Leaf leaf) {
+            return insertIntoLeaf(leaf, hash, key, item);
+        }
+
+        var inner = (Inner) page;
+        int index = childIndex(inner, hash);
+        var sibling = insert(inner.children[index], hash, key, item);
+        if (sibling == null) {
+            return null;
+        }
+
+        // Вставляем разделитель и ссылку на новый узел справа от index
+        System.arraycopy(inner.hashes, index, inner.hashes, index + 1, inner.count - index);
+        System.arraycopy(inner.children, index + 1, inner.children, index + 2, inner.count - index);
+        inner.hashes[index] = splitHash;
+        inner.children[index + 1] = sibling;
+        inner.count++;
+
+        return inner.count > order ? splitInner(inner) : null;
+    }
+
+    private Page insertIntoLeaf(Leaf leaf, int hash, TK key, TV item) {
+        int index = Arrays.binarySearch(leaf.hashes, 0, leaf.count, hash);
+        if (index >= 0) {
+            leaf.values[index] = item; // Ключ уже есть, обновляем значение
+            return null;
+        }
+
+        index = -index - 1;
+        System.arraycopy(leaf.hashes, index, leaf.hashes, index + 1, leaf.count - index);
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, leaf.count - index);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, leaf.count - index);
+        leaf.hashes[index] = hash;
+        leaf.keys[index] = key;
+        leaf.values[index] = item;
+        leaf.count++;
+        size++;
+
+        return leaf.count > order ? splitLeaf(leaf) : null;
+    }
+
+    // Правая половина листа переносится в новый лист, разделитель - его первый хеш
+    private Leaf splitLeaf(Leaf leaf) {
+        var right = new Leaf(order);
+        int half = leaf.count / 2;
+        int moved = leaf.count - half;
+        System.arraycopy(leaf.hashes, half, right.hashes, 0, moved);
+        System.arraycopy(leaf.keys, half, right.keys, 0, moved);
+        System.arraycopy(leaf.values, half, right.values, 0, moved);
+        Arrays.fill(leaf.keys, half, leaf.count, null);
+        Arrays.fill(leaf.values, half, leaf.count, null);
+        right.count = moved;
+        leaf.count = half;
+
+        right.next = leaf.next;
+        leaf.next = right;
+        splitHash = right.hashes[0];
+        return right;
+    }
+
+    // Средний разделитель поднимается в родителя, правая половина переносится в новый узел
+    private Inner splitInner(Inner inner) {
+        var right = new Inner(order);
+        int half = inner.count / 2;
+        int moved = inner.count - half - 1;
+        splitHash = inner.hashes[half];
+        System.arraycopy(inner.hashes, half + 1, right.hashes, 0, moved);
+        System.arraycopy(inner.children, half + 1, right.children, 0, moved + 1);
+        Arrays.fill(inner.children, half + 1, inner.count + 1, null);
+        right.count = moved;
+        inner.count = half;
+        return right;
+    }
+
+    // Номер потомка, содержащего хеш: количество разделителей, не больших хеша
+    private int childIndex(Inner inner, int hash) {
+        int index = Arrays.binarySearch(inner.hashes, 0, inner.count, hash);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private Leaf findLeaf(int hash) {
+        var page = root;
+        while (page instanceof Inner inner) {
+            page = inner.children[childIndex(inner, hash)];
+        }
+
+        return (Leaf) page;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TV get(TK key) {
+        int hash = key.hashCode();
+        var leaf = findLeaf(hash);
+        int index = Arrays.binarySearch(leaf.hashes, 0, leaf.count, hash);
+        return index >= 0 ? (TV) leaf.values[index] : null;
+    }
+
+    @Override
+    public boolean contains(TK key) {
+        int hash = key.hashCode();
+        var leaf = findLeaf(hash);
+        return Arrays.binarySearch(leaf.hashes, 0, leaf.count, hash) >= 0;
+    }
+
+    /**
+     * Ключи не удаляются, поэтому первый хеш любого листа, кроме самого левого, совпадает
+     * с разделителем на пути к нему и не больше искомого: ответ всегда находится в найденном листе.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public TV findNearestLess(TK key) {
+        int hash = key.hashCode();
+        var leaf = findLeaf(hash);
+        int index = Arrays.binarySearch(leaf.hashes, 0, leaf.count, hash);
+        if (index < 0) {
+            index = -index - 2; // Последний меньший хеш
+        }
+
+        return index >= 0 ? (TV) leaf.values[index] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Map.Entry<TK, TV>> toList() {
+        var result = new ArrayList<Map.Entry<TK, TV>>(size);
+        for (var leaf = first; leaf != null; leaf = leaf.next) {
+            for (var i = 0; i < leaf.count; i++) {
+                result.add(new AbstractMap.SimpleEntry<>((TK) leaf.keys[i], (TV) leaf.values[i]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public BPlusTree<TK, TV> createEmpty() {
+        return new BPlusTree<>(order);
+    }
+
+    /**
+     * Последовательный обход по списку листьев без промежуточной копии.
+     */
+    @Override
+    public Iterator<Map.Entry<TK, TV>> iterator() {
+        return new Iterator<>() {
+            private Leaf leaf = first;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && index == leaf.count) {
+                    leaf = leaf.next;
+                    index = 0;
+                }
+                return leaf != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map.Entry<TK, TV> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                var entry = new AbstractMap.SimpleEntry<>((TK) leaf.keys[index], (TV) leaf.values[index]);
+                index++;
+                return entry;
+            }
+        };
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Высота дерева: количество уровней от корня до листьев.
+     */
+    public int height() {
+        var height = 1;
+        for (var page = root; page instanceof Inner inner; page = inner.children[0]) {
+            height++;
+        }
+        return height;
+    }
+
+    // Узел дерева; массивы на один элемент больше порядка для временного переполнения перед расщеплением
+    private abstract static class Page {
+        final int[] hashes;
+        int count;
+
+        Page(int order) {
+            hashes = new int[order + 1];
+        }
+    }
+
+    private static final class Leaf extends Page {
+        final Object[] keys;
+        final Object[] values;
+        Leaf next;
+
+        Leaf(int order) {
+            super(order);
+            keys = new Object[order + 1];
+            values = new Object[order + 1];
+        }
+    }
+
+    private static final class Inner extends Page {
+        final Page[] children;
+
+        Inner(int order) {
+            super(order);
+            children = new Page[order + 2];
+        }
+    }
+}
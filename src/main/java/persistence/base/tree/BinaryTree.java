@@ -2,7 +2,7 @@ package persistence.base.tree;
 
 import java.util.*;
 
-public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
+public class BinaryTree<TK, TV> implements ITree<TK, TV> {
     private Node<TK, TV> root; // Корневой узел дерева
 
     // Метод для поиска узла с заданным ключом
@@ -35,6 +35,7 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
     }
 
     // Метод для вставки нового узла
+    @Override
     public void insert(TK key, TV item) {
         Node<TK, TV> node = find(key); // Проверяем, существует ли узел с таким ключом
 
@@ -54,6 +55,7 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
         Node<TK, TV> X = getRoot(); // Указатель на текущий узел
         while (X != null) { // Поиск позиции для нового узла
             Y = X;
+            X.setSize(X.getSize() + 1); // Новый узел попадёт в поддерево X
             if (newItem.getHash() < X.getHash()) {
                 X = X.getLeft(); // Переход в левое поддерево
             } else {
@@ -78,6 +80,7 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
     }
 
     // Метод для поиска ближайшего меньшего элемента
+    @Override
     public TV findNearestLess(TK key) {
         int hashedKey = key.hashCode();
         Node<TK, TV> node = this.getRoot(); // Начинаем с корня
@@ -117,6 +120,10 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
 
         Y.setLeft(X); // Устанавливаем X как левого потомка Y
         X.setParent(Y);
+
+        // Y занимает место X, поэтому получает его размер, а X пересчитывается
+        Y.setSize(X.getSize());
+        X.updateSize();
     }
 
     // Правый поворот вокруг узла Y (аналогично левому)
@@ -140,6 +147,9 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
 
         X.setRight(Y);
         Y.setParent(X);
+
+        X.setSize(Y.getSize());
+        Y.updateSize();
     }
 
     // Исправление дерева после вставки узла
@@ -187,17 +197,78 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
     }
 
     // Метод для получения значения по ключу
+    @Override
     public TV get(TK key) {
         Node<TK, TV> node = find(key);
         return node == null ? null : node.getData();
     }
 
     // Проверка, содержит ли дерево указанный ключ
+    @Override
     public boolean contains(TK key) {
         return find(key) != null;
     }
 
+    // Количество ключей в дереве
+    @Override
+    public int size() {
+        return Node.sizeOf(getRoot());
+    }
+
+    // Количество ключей, меньших заданного (в порядке хешей)
+    public int rank(TK key) {
+        return countLess(key.hashCode(), false);
+    }
+
+    // Узел с заданным порядковым номером (с нуля) в порядке хешей
+    public Node<TK, TV> select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<TK, TV> node = getRoot();
+        while (true) {
+            int leftSize = Node.sizeOf(node.getLeft());
+            if (index < leftSize) {
+                node = node.getLeft();
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.getRight();
+            } else {
+                return node;
+            }
+        }
+    }
+
+    // Количество ключей в диапазоне [lo, hi] (в порядке хешей)
+    public int countInRange(TK lo, TK hi) {
+        int loHash = lo.hashCode();
+        int hiHash = hi.hashCode();
+        if (loHash > hiHash) {
+            return 0;
+        }
+
+        return countLess(hiHash, true) - countLess(loHash, false);
+    }
+
+    // Подсчёт ключей с хешем меньше заданного (или не больше, если inclusive) за один спуск
+    private int countLess(int hash, boolean inclusive) {
+        int count = 0;
+        Node<TK, TV> node = getRoot();
+        while (node != null) {
+            if (node.getHash() < hash || inclusive && node.getHash() == hash) {
+                count += Node.sizeOf(node.getLeft()) + 1; // Узел и всё его левое поддерево меньше
+                node = node.getRight();
+            } else {
+                node = node.getLeft();
+            }
+        }
+
+        return count;
+    }
+
     // Преобразование дерева в список
+    @Override
     public List<Map.Entry<TK, TV>> toList() {
         ArrayList<Map.Entry<TK, TV>> res = new ArrayList<>();
         addToList(res, getRoot()); // Рекурсивное добавление узлов в список
@@ -215,9 +286,56 @@ public class BinaryTree<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
         addToList(list, node.getRight()); // Добавляем правое поддерево
     }
 
-    // Итератор для обхода дерева
+    // Ленивый итератор для обхода дерева в порядке хешей по ссылкам на родителей
+    @Override
     public Iterator<Map.Entry<TK, TV>> iterator() {
-        return toList().iterator();
+        return new Iterator<>() {
+            private Node<TK, TV> next = leftmost(getRoot());
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<TK, TV> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+
+                var node = next;
+                if (node.getRight() != null) {
+                    next = leftmost(node.getRight()); // Следующий - самый левый в правом поддереве
+                } else {
+                    // Поднимаемся, пока приходим из правого поддерева
+                    var child = node;
+                    next = node.getParent();
+                    while (next != null && child == next.getRight()) {
+                        child = next;
+                        next = next.getParent();
+                    }
+                }
+
+                return new AbstractMap.SimpleEntry<>(node.getKey(), node.getData());
+            }
+        };
+    }
+
+    // Самый левый узел поддерева
+    private Node<TK, TV> leftmost(Node<TK, TV> node) {
+        if (node == null) {
+            return null;
+        }
+
+        while (node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    @Override
+    public BinaryTree<TK, TV> createEmpty() {
+        return new BinaryTree<>();
     }
 
     public Node<TK, TV> getRoot() {
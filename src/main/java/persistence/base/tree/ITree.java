@@ -0,0 +1,41 @@
+package persistence.base.tree;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Упорядоченный по хешу ключа индекс, используемый как хранилище узлов коллекций.
+ * Ключи с одинаковым хешем считаются одним ключом.
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ */
+public interface ITree<TK, TV> extends Iterable<Map.Entry<TK, TV>> {
+    /**
+     * Вставка значения; если ключ уже есть, его значение заменяется.
+     */
+    void insert(TK key, TV item);
+
+    TV get(TK key);
+
+    boolean contains(TK key);
+
+    /**
+     * Значение ключа с ближайшим не большим хешем.
+     *
+     * @return Значение или null, если такого ключа нет.
+     */
+    TV findNearestLess(TK key);
+
+    /**
+     * Пары ключ-значение в порядке хешей.
+     */
+    List<Map.Entry<TK, TV>> toList();
+
+    int size();
+
+    /**
+     * Пустой индекс того же вида и с теми же параметрами.
+     */
+    ITree<TK, TV> createEmpty();
+}
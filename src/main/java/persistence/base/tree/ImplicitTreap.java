@@ -0,0 +1,114 @@
+package persistence.base.tree;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Разделение и слияние неизменяемых декартовых деревьев по неявному ключу. Узел занимает одну
+ * или несколько подряд идущих позиций, а его вес — количество позиций в поддереве.
+ * Обе операции копируют O(log n) узлов и разделяют остальные с исходными деревьями.
+ * Дерево задаёт только копирование узла с новыми потомками, а для узлов из нескольких
+ * позиций — деление узла на границе разреза.
+ *
+ * @param <N> Тип узла.
+ */
+public abstract class ImplicitTreap<N extends ImplicitTreap.TreapNode<N>> {
+
+    /**
+     * Случайный приоритет нового узла.
+     */
+    public static int priority() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+
+    /**
+     * Копия узла с теми же данными и приоритетом и заданными потомками.
+     */
+    protected abstract N with(N node, N left, N right);
+
+    /**
+     * Деление узла из нескольких позиций на первые offset позиций с левым потомком узла
+     * и остальные с правым. Обе половины сохраняют приоритет узла, поэтому свойство кучи не нарушается.
+     */
+    protected Split<N> cut(N node, int offset) {
+        throw new UnsupportedOperationException("Node of one position cannot be cut");
+    }
+
+    /**
+     * Разделение на первые count позиций и остальные.
+     */
+    public final Split<N> split(N node, int count) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+
+        int leftWeight = TreapNode.weightOf(node.left);
+        if (count <= leftWeight) {
+            var parts = split(node.left, count);
+            return new Split<>(parts.left, with(node, parts.right, node.right));
+        }
+
+        int offset = count - leftWeight;
+        int own = node.weight - leftWeight - TreapNode.weightOf(node.right);
+        if (offset >= own) {
+            var parts = split(node.right, offset - own);
+            return new Split<>(with(node, node.left, parts.left), parts.right);
+        }
+
+        return cut(node, offset);
+    }
+
+    /**
+     * Слияние деревьев, все позиции левого из которых идут перед позициями правого.
+     */
+    public final N merge(N left, N right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        return left.priority > right.priority
+                ? with(left, left.left, merge(left.right, right))
+                : with(right, merge(left, right.left), right.right);
+    }
+
+    /**
+     * Результат разделения: дерево первых позиций и дерево остальных.
+     *
+     * @param <N> Тип узла.
+     */
+    public static final class Split<N> {
+        public final N left;
+        public final N right;
+
+        public Split(N left, N right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Неизменяемый узел с приоритетом, потомками и весом поддерева.
+     *
+     * @param <N> Тип узла.
+     */
+    public abstract static class TreapNode<N extends TreapNode<N>> {
+        public final int priority;
+        public final N left;
+        public final N right;
+        // Количество позиций в поддереве
+        public final int weight;
+
+        protected TreapNode(int ownWeight, int priority, N left, N right) {
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.weight = ownWeight + weightOf(left) + weightOf(right);
+        }
+
+        public static int weightOf(TreapNode<?> node) {
+            return node == null ? 0 : node.weight;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package persistence.base.tree;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неизменяемая левосторонняя куча. Правый путь любого узла имеет длину O(log n),
+ * а слияние идёт только по правым путям, поэтому вставка, извлечение минимума и слияние куч
+ * копируют O(log n) узлов. Остальные узлы разделяются между версиями.
+ * Элементы с равным приоритетом упорядочены по порядку вставки, поэтому извлечение и обход
+ * выдают элементы в одном и том же детерминированном порядке.
+ *
+ * @param <T> Тип элементов.
+ */
+public final class LeftistHeap<T> implements Iterable<T> {
+    // Порядковые номера вставок, общие для всех куч, чтобы слитые кучи сохраняли порядок равных элементов
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    public LeftistHeap(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    private LeftistHeap(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Куча с добавленным элементом.
+     */
+    public LeftistHeap<T> insert(T value) {
+        return new LeftistHeap<>(comparator, merge(root, new Node<>(value, SEQUENCE.getAndIncrement(), null, null)));
+    }
+
+    /**
+     * Наименьший элемент за O(1).
+     *
+     * @throws NoSuchElementException если куча пуста.
+     */
+    public T peek() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        return root.value;
+    }
+
+    /**
+     * Куча без наименьшего элемента.
+     *
+     * @throws NoSuchElementException если куча пуста.
+     */
+    public LeftistHeap<T> poll() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        return new LeftistHeap<>(comparator, merge(root.left, root.right));
+    }
+
+    /**
+     * Куча без элемента с заданным номером в порядке обхода за O(k log n). Предшествующие элементы
+     * извлекаются и возвращаются в кучу со своими порядковыми номерами, поэтому порядок
+     * остальных элементов не меняется.
+     *
+     * @throws IndexOutOfBoundsException если номер вне кучи.
+     */
+    public LeftistHeap<T> removeAt(int index) {
+        Objects.checkIndex(index, size());
+
+        var preceding = new ArrayList<Node<T>>(index);
+        var current = root;
+        for (var i = 0; i < index; i++) {
+            preceding.add(new Node<>(current.value, current.sequence, null, null));
+            current = merge(current.left, current.right);
+        }
+
+        current = merge(current.left, current.right);
+        for (var node : preceding) {
+            current = merge(current, node);
+        }
+        return new LeftistHeap<>(comparator, current);
+    }
+
+    /**
+     * Слияние с другой кучей того же порядка.
+     */
+    public LeftistHeap<T> meld(LeftistHeap<T> other) {
+        if (other.root == null) {
+            return this;
+        }
+        if (root == null) {
+            return new LeftistHeap<>(comparator, other.root);
+        }
+        return new LeftistHeap<>(comparator, merge(root, other.root));
+    }
+
+    /**
+     * Пустая куча с тем же компаратором.
+     */
+    public LeftistHeap<T> clear() {
+        return root == null ? this : new LeftistHeap<>(comparator);
+    }
+
+    public int size() {
+        return Node.sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Ленивый обход в порядке приоритета. Выдача k элементов стоит O(k log k):
+     * очередь обхода содержит только узлы, родители которых уже выданы.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        var frontier = new PriorityQueue<Node<T>>(this::compare);
+        if (root != null) {
+            frontier.add(root);
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !frontier.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                var node = frontier.poll();
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                if (node.left != null) {
+                    frontier.add(node.left);
+                }
+                if (node.right != null) {
+                    frontier.add(node.right);
+                }
+                return node.value;
+            }
+        };
+    }
+
+    // Слияние по правым путям с копированием пройденных узлов
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (compare(b, a) < 0) {
+            var swap = a;
+            a = b;
+            b = swap;
+        }
+
+        var right = merge(a.right, b);
+        // Более длинный правый путь переносится налево
+        return Node.rankOf(a.left) >= right.rank
+                ? new Node<>(a.value, a.sequence, a.left, right)
+                : new Node<>(a.value, a.sequence, right, a.left);
+    }
+
+    // Порядок по приоритету, а при равенстве — по порядку вставки
+    private int compare(Node<T> a, Node<T> b) {
+        int result = comparator.compare(a.value, b.value);
+        return result != 0 ? result : Long.compare(a.sequence, b.sequence);
+    }
+
+    // Неизменяемый узел с порядковым номером вставки, длиной правого пути и размером поддерева
+    private static final class Node<T> {
+        final T value;
+        final long sequence;
+        final Node<T> left;
+        final Node<T> right;
+        final int rank;
+        final int size;
+
+        Node(T value, long sequence, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.sequence = sequence;
+            this.left = left;
+            this.right = right;
+            this.rank = rankOf(right) + 1;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        static int rankOf(Node<?> node) {
+            return node == null ? 0 : node.rank;
+        }
+
+        static int sizeOf(Node<?> node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+}
@@ -8,6 +8,7 @@ public class Node<TK, TV> {
     private Node<TK, TV> right;
     private int hash;
     private Color colour;
+    private int size = 1; // Количество узлов в поддереве, включая этот узел
 
 
     public Node(TK key, TV data) {
@@ -71,4 +72,21 @@ public class Node<TK, TV> {
     public void setColour(Color colour) {
         this.colour = colour;
     }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    // Пересчёт размера поддерева по размерам потомков
+    void updateSize() {
+        size = 1 + sizeOf(left) + sizeOf(right);
+    }
+
+    static int sizeOf(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
 }
@@ -0,0 +1,311 @@
+package persistence.base.tree;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Неизменяемое декартово дерево, упорядоченное компаратором.
+ * Каждое изменение копирует только путь от корня до изменённого узла (O(log n) узлов),
+ * остальные узлы разделяются между версиями, поэтому старые корни остаются пригодными для чтения.
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ */
+public final class PersistentTreap<TK, TV> implements Iterable<Map.Entry<TK, TV>> {
+    private final Comparator<? super TK> comparator;
+    private final Node<TK, TV> root;
+
+    public PersistentTreap(Comparator<? super TK> comparator) {
+        this(comparator, null);
+    }
+
+    private PersistentTreap(Comparator<? super TK> comparator, Node<TK, TV> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Вставка или замена значения.
+     *
+     * @return Новое дерево.
+     */
+    public PersistentTreap<TK, TV> put(TK key, TV value) {
+        return new PersistentTreap<>(comparator, put(root, key, value));
+    }
+
+    /**
+     * Удаление ключа.
+     *
+     * @return Новое дерево или это же дерево, если ключа нет.
+     */
+    public PersistentTreap<TK, TV> remove(TK key) {
+        var newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentTreap<>(comparator, newRoot);
+    }
+
+    /**
+     * Пустое дерево с тем же компаратором.
+     */
+    public PersistentTreap<TK, TV> clear() {
+        return root == null ? this : new PersistentTreap<>(comparator);
+    }
+
+    public TV get(TK key) {
+        var node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean containsKey(TK key) {
+        return find(key) != null;
+    }
+
+    public int size() {
+        return Node.sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    // Наибольший ключ, не больший (или меньший, если не inclusive) заданного
+    public TK floorKey(TK key, boolean inclusive) {
+        Node<TK, TV> node = root;
+        Node<TK, TV> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(node.key, key);
+            if (cmp < 0 || inclusive && cmp == 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return result == null ? null : result.key;
+    }
+
+    // Наименьший ключ, не меньший (или больший, если не inclusive) заданного
+    public TK ceilingKey(TK key, boolean inclusive) {
+        Node<TK, TV> node = root;
+        Node<TK, TV> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(node.key, key);
+            if (cmp > 0 || inclusive && cmp == 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return result == null ? null : result.key;
+    }
+
+    public TK firstKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+
+        var node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.key;
+    }
+
+    public TK lastKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+
+        var node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.key;
+    }
+
+    /**
+     * Количество ключей, меньших заданного.
+     */
+    public int rank(TK key) {
+        var count = 0;
+        var node = root;
+        while (node != null) {
+            if (comparator.compare(node.key, key) < 0) {
+                count += Node.sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ленивый обход ключей диапазона в порядке компаратора. Границы, равные null, не ограничивают диапазон.
+     *
+     * @param from          Нижняя граница.
+     * @param fromInclusive Включать ли нижнюю границу.
+     * @param to            Верхняя граница.
+     * @param toInclusive   Включать ли верхнюю границу.
+     * @return Итератор пар ключ-значение.
+     */
+    public Iterator<Map.Entry<TK, TV>> iterator(TK from, boolean fromInclusive, TK to, boolean toInclusive) {
+        return new RangeIterator(from, fromInclusive, to, toInclusive);
+    }
+
+    @Override
+    public Iterator<Map.Entry<TK, TV>> iterator() {
+        return iterator(null, true, null, true);
+    }
+
+    public Comparator<? super TK> comparator() {
+        return comparator;
+    }
+
+    private Node<TK, TV> find(TK key) {
+        var node = root;
+        while (node != null) {
+            int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<TK, TV> put(Node<TK, TV> node, TK key, TV value) {
+        if (node == null) {
+            return new Node<>(key, value, ThreadLocalRandom.current().nextInt(), null, null);
+        }
+
+        int cmp = comparator.compare(key, node.key);
+        if (cmp == 0) {
+            return new Node<>(node.key, value, node.priority, node.left, node.right);
+        }
+
+        if (cmp < 0) {
+            var left = put(node.left, key, value);
+            // Поворот вправо, если новый левый потомок приоритетнее
+            return left.priority > node.priority
+                    ? new Node<>(left.key, left.value, left.priority, left.left,
+                    new Node<>(node.key, node.value, node.priority, left.right, node.right))
+                    : new Node<>(node.key, node.value, node.priority, left, node.right);
+        }
+
+        var right = put(node.right, key, value);
+        return right.priority > node.priority
+                ? new Node<>(right.key, right.value, right.priority,
+                new Node<>(node.key, node.value, node.priority, node.left, right.left), right.right)
+                : new Node<>(node.key, node.value, node.priority, node.left, right);
+    }
+
+    private Node<TK, TV> remove(Node<TK, TV> node, TK key) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = comparator.compare(key, node.key);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+
+        if (cmp < 0) {
+            var left = remove(node.left, key);
+            return left == node.left ? node : new Node<>(node.key, node.value, node.priority, left, node.right);
+        }
+
+        var right = remove(node.right, key);
+        return right == node.right ? node : new Node<>(node.key, node.value, node.priority, node.left, right);
+    }
+
+    // Слияние деревьев, все ключи левого меньше ключей правого
+    private Node<TK, TV> merge(Node<TK, TV> left, Node<TK, TV> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        return left.priority > right.priority
+                ? new Node<>(left.key, left.value, left.priority, left.left, merge(left.right, right))
+                : new Node<>(right.key, right.value, right.priority, merge(left, right.left), right.right);
+    }
+
+    // Неизменяемый узел с размером поддерева
+    private static final class Node<TK, TV> {
+        final TK key;
+        final TV value;
+        final int priority;
+        final Node<TK, TV> left;
+        final Node<TK, TV> right;
+        final int size;
+
+        Node(TK key, TV value, int priority, Node<TK, TV> left, Node<TK, TV> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        static int sizeOf(Node<?, ?> node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+
+    // Обход диапазона со стеком: на стеке лежат узлы, ещё не выданные, в порядке возрастания сверху вниз
+    private final class RangeIterator implements Iterator<Map.Entry<TK, TV>> {
+        private final ArrayDeque<Node<TK, TV>> stack = new ArrayDeque<>();
+        private final TK to;
+        private final boolean toInclusive;
+
+        private RangeIterator(TK from, boolean fromInclusive, TK to, boolean toInclusive) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+
+            // Спуск к нижней границе: на стек попадают только узлы, не меньшие её
+            var node = root;
+            while (node != null) {
+                int cmp = from == null ? 1 : comparator.compare(node.key, from);
+                if (cmp > 0 || fromInclusive && cmp == 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (stack.isEmpty()) {
+                return false;
+            }
+            if (to == null) {
+                return true;
+            }
+
+            int cmp = comparator.compare(stack.peek().key, to);
+            return cmp < 0 || toInclusive && cmp == 0;
+        }
+
+        @Override
+        public Map.Entry<TK, TV> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var node = stack.pop();
+            for (var child = node.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+
+            return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+        }
+    }
+}
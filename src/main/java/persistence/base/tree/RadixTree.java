@@ -0,0 +1,315 @@
+package persistence.base.tree;
+
+import java.util.*;
+
+/**
+ * Неизменяемое сжатое префиксное дерево со строковыми ключами. Рёбра помечены фрагментами ключей,
+ * потомки узла упорядочены по первому символу метки. Изменение копирует только путь от корня
+ * до изменённого узла, остальные узлы разделяются между версиями.
+ * Поиск стоит O(|key|), обход ключей с префиксом — O(|prefix| + k).
+ *
+ * @param <V> Тип значений.
+ */
+public final class RadixTree<V> implements Iterable<Map.Entry<String, V>> {
+    private static final RadixTree<?> EMPTY = new RadixTree<>(new Node<>("", false, null, Node.none()));
+
+    private final Node<V> root;
+
+    private RadixTree(Node<V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> RadixTree<V> empty() {
+        return (RadixTree<V>) EMPTY;
+    }
+
+    public V get(String key) {
+        var node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean containsKey(String key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Вставка или замена значения.
+     *
+     * @return Новое дерево.
+     */
+    public RadixTree<V> put(String key, V value) {
+        return new RadixTree<>(put(root, key, 0, value));
+    }
+
+    /**
+     * Удаление ключа.
+     *
+     * @return Новое дерево или это же дерево, если ключа нет.
+     */
+    public RadixTree<V> remove(String key) {
+        var newRoot = remove(root, key, 0, true);
+        return newRoot == root ? this : new RadixTree<>(newRoot);
+    }
+
+    public int size() {
+        return root.size;
+    }
+
+    public boolean isEmpty() {
+        return root.size == 0;
+    }
+
+    /**
+     * Количество ключей с заданным префиксом за O(|prefix|).
+     */
+    public int countWithPrefix(String prefix) {
+        var start = locate(prefix);
+        return start == null ? 0 : start.node.size;
+    }
+
+    /**
+     * Ленивый обход ключей с заданным префиксом в лексикографическом порядке.
+     */
+    public Iterator<Map.Entry<String, V>> prefixScan(String prefix) {
+        var start = locate(prefix);
+        return start == null ? Collections.emptyIterator() : new PrefixIterator<>(start);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return prefixScan("");
+    }
+
+    private Node<V> find(String key) {
+        var node = root;
+        var offset = 0;
+        while (offset < key.length()) {
+            var child = node.child(key.charAt(offset));
+            if (child == null || !key.startsWith(child.label, offset)) {
+                return null;
+            }
+            offset += child.label.length();
+            node = child;
+        }
+        return node.terminal ? node : null;
+    }
+
+    // Узел, в поддереве которого лежат все ключи с префиксом, и полный путь до него
+    private Cursor<V> locate(String prefix) {
+        var node = root;
+        var offset = 0;
+        while (offset < prefix.length()) {
+            var child = node.child(prefix.charAt(offset));
+            if (child == null) {
+                return null;
+            }
+
+            int rest = prefix.length() - offset;
+            if (rest <= child.label.length()) {
+                // Префикс заканчивается внутри метки ребра
+                return child.label.startsWith(prefix.substring(offset)) ? new Cursor<>(child, prefix.substring(0, offset) + child.label) : null;
+            }
+            if (!prefix.startsWith(child.label, offset)) {
+                return null;
+            }
+            offset += child.label.length();
+            node = child;
+        }
+        return new Cursor<>(node, prefix);
+    }
+
+    private static <V> Node<V> put(Node<V> node, String key, int offset, V value) {
+        if (offset == key.length()) {
+            return new Node<>(node.label, true, value, node.children);
+        }
+
+        int index = node.indexOf(key.charAt(offset));
+        if (index < 0) {
+            var leaf = new Node<V>(key.substring(offset), true, value, Node.none());
+            return node.withChild(-index - 1, leaf, true);
+        }
+
+        var child = node.children[index];
+        int common = commonPrefix(child.label, key, offset);
+        if (common == child.label.length()) {
+            return node.withChild(index, put(child, key, offset + common, value), false);
+        }
+
+        // Метка потомка расходится с ключом: ребро делится промежуточным узлом
+        var tail = new Node<>(child.label.substring(common), child.terminal, child.value, child.children);
+        var middle = new Node<V>(child.label.substring(0, common), false, null, Node.of(tail));
+        return node.withChild(index, put(middle, key, offset + common, value), false);
+    }
+
+    private static <V> Node<V> remove(Node<V> node, String key, int offset, boolean isRoot) {
+        Node<V> result;
+        if (offset == key.length()) {
+            if (!node.terminal) {
+                return node;
+            }
+            result = new Node<>(node.label, false, null, node.children);
+        } else {
+            int index = node.indexOf(key.charAt(offset));
+            if (index < 0 || !key.startsWith(node.children[index].label, offset)) {
+                return node;
+            }
+
+            var child = node.children[index];
+            var newChild = remove(child, key, offset + child.label.length(), false);
+            if (newChild == child) {
+                return node;
+            }
+            result = newChild == null ? node.withoutChild(index) : node.withChild(index, newChild, false);
+        }
+
+        if (isRoot || result.terminal) {
+            return result;
+        }
+        // Узел без значения с одним потомком сливается с ним, без потомков — удаляется
+        if (result.children.length == 0) {
+            return null;
+        }
+        if (result.children.length == 1) {
+            var only = result.children[0];
+            return new Node<>(result.label + only.label, only.terminal, only.value, only.children);
+        }
+        return result;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        var common = 0;
+        while (common < length && label.charAt(common) == key.charAt(offset + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    // Неизменяемый узел: метка входящего ребра, значение и потомки, упорядоченные по первому символу метки
+    private static final class Node<V> {
+        private static final Node<?>[] NONE = new Node<?>[0];
+
+        final String label;
+        final boolean terminal;
+        final V value;
+        final Node<V>[] children;
+        // Количество ключей в поддереве
+        final int size;
+
+        Node(String label, boolean terminal, V value, Node<V>[] children) {
+            this.label = label;
+            this.terminal = terminal;
+            this.value = value;
+            this.children = children;
+
+            var size = terminal ? 1 : 0;
+            for (var child : children) {
+                size += child.size;
+            }
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> Node<V>[] none() {
+            return (Node<V>[]) NONE;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> Node<V>[] of(Node<V> child) {
+            var children = (Node<V>[]) new Node<?>[1];
+            children[0] = child;
+            return children;
+        }
+
+        Node<V> child(char first) {
+            int index = indexOf(first);
+            return index < 0 ? null : children[index];
+        }
+
+        // Позиция потомка или -(точка вставки) - 1
+        int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label.charAt(0);
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        Node<V> withChild(int index, Node<V> child, boolean insert) {
+            var newChildren = Arrays.copyOf(children, children.length + (insert ? 1 : 0));
+            if (insert) {
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            }
+            newChildren[index] = child;
+            return new Node<>(label, terminal, value, newChildren);
+        }
+
+        Node<V> withoutChild(int index) {
+            var newChildren = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            return new Node<>(label, terminal, value, newChildren);
+        }
+    }
+
+    // Узел вместе с полным ключом, ведущим к нему
+    private static final class Cursor<V> {
+        final Node<V> node;
+        final String path;
+
+        Cursor(Node<V> node, String path) {
+            this.node = node;
+            this.path = path;
+        }
+    }
+
+    // Обход в глубину: узел выдаётся раньше потомков, потомки идут по возрастанию первого символа
+    private static final class PrefixIterator<V> implements Iterator<Map.Entry<String, V>> {
+        private final ArrayDeque<Cursor<V>> stack = new ArrayDeque<>();
+        private Cursor<V> next;
+
+        PrefixIterator(Cursor<V> start) {
+            stack.push(start);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !stack.isEmpty()) {
+                var cursor = stack.pop();
+                var children = cursor.node.children;
+                for (var i = children.length - 1; i >= 0; i--) {
+                    stack.push(new Cursor<>(children[i], cursor.path + children[i].label));
+                }
+                if (cursor.node.terminal) {
+                    next = cursor;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            var result = new AbstractMap.SimpleImmutableEntry<>(next.path, next.node.value);
+            advance();
+            return result;
+        }
+    }
+}
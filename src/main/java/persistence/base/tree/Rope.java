@@ -0,0 +1,233 @@
+package persistence.base.tree;
+
+/**
+ * Неизменяемая строка в виде декартова дерева по неявному ключу, узлы которого хранят куски текста.
+ * Куски никогда не изменяются после создания, поэтому разделяются между версиями:
+ * правка копирует O(log n) узлов и не более двух кусков, а не весь текст.
+ * Разделение и слияние выполняет {@link ImplicitTreap}; вес узла — длина его куска.
+ */
+public final class Rope implements CharSequence {
+    // Наибольшая длина куска
+    static final int CHUNK = 512;
+
+    private static final Rope EMPTY = new Rope(null);
+    private static final ChunkTreap TREAP = new ChunkTreap();
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public static Rope empty() {
+        return EMPTY;
+    }
+
+    public static Rope of(CharSequence text) {
+        return text.length() == 0 ? EMPTY : new Rope(build(text));
+    }
+
+    @Override
+    public int length() {
+        return Node.weightOf(root);
+    }
+
+    @Override
+    public char charAt(int index) {
+        checkIndex(index, length());
+
+        var node = root;
+        while (true) {
+            int leftLength = Node.weightOf(node.left);
+            if (index < leftLength) {
+                node = node.left;
+            } else if (index < leftLength + node.chunk.length) {
+                return node.chunk[index - leftLength];
+            } else {
+                index -= leftLength + node.chunk.length;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Вставка текста перед заданной позицией. Короткая вставка дописывается в кусок,
+     * содержащий позицию, чтобы посимвольный ввод не дробил текст на мелкие куски.
+     *
+     * @return Новая строка.
+     */
+    public Rope insert(int index, CharSequence text) {
+        checkIndex(index, length() + 1);
+        if (text.length() == 0) {
+            return this;
+        }
+
+        if (root != null) {
+            var inserted = insertIntoChunk(root, index, text);
+            if (inserted != null) {
+                return new Rope(inserted);
+            }
+        }
+
+        var parts = TREAP.split(root, index);
+        return new Rope(TREAP.merge(TREAP.merge(parts.left, build(text)), parts.right));
+    }
+
+    /**
+     * Удаление символов в позициях [from, to).
+     *
+     * @return Новая строка.
+     */
+    public Rope delete(int from, int to) {
+        checkRange(from, to);
+        if (from == to) {
+            return this;
+        }
+
+        var parts = TREAP.split(root, from);
+        var rest = TREAP.split(parts.right, to - from);
+        return new Rope(TREAP.merge(parts.left, rest.right));
+    }
+
+    /**
+     * Строка из символов [from, to), разделяющая куски с этой строкой.
+     */
+    @Override
+    public Rope subSequence(int from, int to) {
+        checkRange(from, to);
+        if (from == 0 && to == length()) {
+            return this;
+        }
+
+        var parts = TREAP.split(root, from);
+        return new Rope(TREAP.split(parts.right, to - from).left);
+    }
+
+    /**
+     * Текст символов [from, to) за O(log n + k).
+     */
+    public String substring(int from, int to) {
+        checkRange(from, to);
+
+        var builder = new StringBuilder(to - from);
+        append(root, from, to, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Соединение с другой строкой.
+     */
+    public Rope concat(Rope other) {
+        if (other.root == null) {
+            return this;
+        }
+        return root == null ? other : new Rope(TREAP.merge(root, other.root));
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    // Кусок с позицией вставки заменяется расширенной копией, если она не превышает наибольшую длину
+    private static Node insertIntoChunk(Node node, int index, CharSequence text) {
+        int leftLength = Node.weightOf(node.left);
+        if (index < leftLength) {
+            var left = node.left == null ? null : insertIntoChunk(node.left, index, text);
+            return left == null ? null : new Node(node.chunk, node.priority, left, node.right);
+        }
+
+        int offset = index - leftLength;
+        if (offset > node.chunk.length) {
+            var right = node.right == null ? null : insertIntoChunk(node.right, offset - node.chunk.length, text);
+            return right == null ? null : new Node(node.chunk, node.priority, node.left, right);
+        }
+
+        if (node.chunk.length + text.length() > CHUNK) {
+            return null;
+        }
+
+        var chunk = new char[node.chunk.length + text.length()];
+        System.arraycopy(node.chunk, 0, chunk, 0, offset);
+        for (var i = 0; i < text.length(); i++) {
+            chunk[offset + i] = text.charAt(i);
+        }
+        System.arraycopy(node.chunk, offset, chunk, offset + text.length(), node.chunk.length - offset);
+        return new Node(chunk, node.priority, node.left, node.right);
+    }
+
+    private static void append(Node node, int from, int to, StringBuilder builder) {
+        if (node == null || from >= to) {
+            return;
+        }
+
+        int leftLength = Node.weightOf(node.left);
+        if (from < leftLength) {
+            append(node.left, from, Math.min(to, leftLength), builder);
+        }
+
+        int chunkFrom = Math.max(from - leftLength, 0);
+        int chunkTo = Math.min(to - leftLength, node.chunk.length);
+        if (chunkFrom < chunkTo) {
+            builder.append(node.chunk, chunkFrom, chunkTo - chunkFrom);
+        }
+
+        int rightStart = leftLength + node.chunk.length;
+        if (to > rightStart) {
+            append(node.right, Math.max(0, from - rightStart), to - rightStart, builder);
+        }
+    }
+
+    // Дерево из кусков текста
+    private static Node build(CharSequence text) {
+        Node result = null;
+        for (var start = 0; start < text.length(); start += CHUNK) {
+            int end = Math.min(text.length(), start + CHUNK);
+            var chunk = new char[end - start];
+            for (var i = start; i < end; i++) {
+                chunk[i - start] = text.charAt(i);
+            }
+            result = TREAP.merge(result, new Node(chunk, ImplicitTreap.priority(), null, null));
+        }
+        return result;
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length());
+        }
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    // Неизменяемый узел с куском текста; вес поддерева — его длина
+    private static final class Node extends ImplicitTreap.TreapNode<Node> {
+        final char[] chunk;
+
+        Node(char[] chunk, int priority, Node left, Node right) {
+            super(chunk.length, priority, left, right);
+            this.chunk = chunk;
+        }
+    }
+
+    // Операции дерева кусков: кусок на границе разреза делится на две копии
+    private static final class ChunkTreap extends ImplicitTreap<Node> {
+        @Override
+        protected Node with(Node node, Node left, Node right) {
+            return new Node(node.chunk, node.priority, left, right);
+        }
+
+        @Override
+        protected Split<Node> cut(Node node, int offset) {
+            var head = new char[offset];
+            var tail = new char[node.chunk.length - offset];
+            System.arraycopy(node.chunk, 0, head, 0, offset);
+            System.arraycopy(node.chunk, offset, tail, 0, tail.length);
+            return new Split<>(new Node(head, node.priority, node.left, null), new Node(tail, node.priority, null, node.right));
+        }
+    }
+}
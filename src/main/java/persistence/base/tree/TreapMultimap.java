@@ -0,0 +1,164 @@
+package persistence.base.tree;
+
+import java.util.*;
+
+/**
+ * Неизменяемый упорядоченный мультисловарь: декартово дерево ключей, значения каждого ключа
+ * хранятся во вложенном декартовом дереве. Добавление и удаление пары копируют O(log n) узлов,
+ * выборка значений ключа или диапазона ключей стоит O(log n + k).
+ * Порядку значений не обязательно различать все значения: значения, равные по компаратору,
+ * но различные по {@code equals}, хранятся списком в одном узле вложенного дерева.
+ *
+ * @param <K> Тип ключа.
+ * @param <V> Тип значений.
+ */
+public final class TreapMultimap<K, V> {
+    private final PersistentTreap<K, Values<V>> keys;
+    private final Comparator<? super V> valueComparator;
+    // Общее количество пар
+    private final int size;
+
+    public TreapMultimap(Comparator<? super K> keyComparator, Comparator<? super V> valueComparator) {
+        this(new PersistentTreap<>(keyComparator), valueComparator, 0);
+    }
+
+    private TreapMultimap(PersistentTreap<K, Values<V>> keys, Comparator<? super V> valueComparator, int size) {
+        this.keys = keys;
+        this.valueComparator = valueComparator;
+        this.size = size;
+    }
+
+    /**
+     * Добавление пары.
+     *
+     * @return Новый мультисловарь или этот же, если пара уже есть.
+     */
+    public TreapMultimap<K, V> put(K key, V value) {
+        var values = keys.get(key);
+        var tree = values == null ? new PersistentTreap<V, List<V>>(valueComparator) : values.tree;
+        var bucket = tree.get(value);
+        if (bucket != null && bucket.contains(value)) {
+            return this;
+        }
+
+        var grown = new ArrayList<V>(bucket == null ? List.of() : bucket);
+        grown.add(value);
+        var count = values == null ? 1 : values.count + 1;
+        return new TreapMultimap<>(keys.put(key, new Values<>(tree.put(value, List.copyOf(grown)), count)),
+                valueComparator, size + 1);
+    }
+
+    /**
+     * Удаление пары. Ключ без значений удаляется целиком.
+     *
+     * @return Новый мультисловарь или этот же, если пары нет.
+     */
+    public TreapMultimap<K, V> remove(K key, V value) {
+        var values = keys.get(key);
+        var bucket = values == null ? null : values.tree.get(value);
+        if (bucket == null || !bucket.contains(value)) {
+            return this;
+        }
+
+        if (values.count == 1) {
+            return new TreapMultimap<>(keys.remove(key), valueComparator, size - 1);
+        }
+        var rest = new ArrayList<>(bucket);
+        rest.remove(value);
+        var tree = rest.isEmpty() ? values.tree.remove(value) : values.tree.put(value, List.copyOf(rest));
+        return new TreapMultimap<>(keys.put(key, new Values<>(tree, values.count - 1)), valueComparator, size - 1);
+    }
+
+    /**
+     * Пустой мультисловарь с теми же порядками.
+     */
+    public TreapMultimap<K, V> clear() {
+        return size == 0 ? this : new TreapMultimap<>(keys.clear(), valueComparator, 0);
+    }
+
+    /**
+     * Ленивый обход значений ключа.
+     */
+    public Iterator<V> get(K key) {
+        var values = keys.get(key);
+        return values == null ? Collections.emptyIterator() : new ValueIterator<>(values.tree.iterator());
+    }
+
+    /**
+     * Количество значений ключа.
+     */
+    public int count(K key) {
+        var values = keys.get(key);
+        return values == null ? 0 : values.count;
+    }
+
+    /**
+     * Ленивый обход пар с ключами из диапазона в порядке ключей. Границы, равные null, не ограничивают диапазон.
+     */
+    public Iterator<Map.Entry<K, V>> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        var outer = keys.iterator(from, fromInclusive, to, toInclusive);
+        return new Iterator<>() {
+            private K key;
+            private Iterator<V> inner = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!inner.hasNext() && outer.hasNext()) {
+                    var entry = outer.next();
+                    key = entry.getKey();
+                    inner = new ValueIterator<>(entry.getValue().tree.iterator());
+                }
+                return inner.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(key, inner.next());
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Значения одного ключа: дерево списков равных по порядку значений и их общее количество
+    private static final class Values<V> {
+        final PersistentTreap<V, List<V>> tree;
+        final int count;
+
+        Values(PersistentTreap<V, List<V>> tree, int count) {
+            this.tree = tree;
+            this.count = count;
+        }
+    }
+
+    // Обход значений вложенного дерева по спискам узлов
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Iterator<Map.Entry<V, List<V>>> entries;
+        private Iterator<V> bucket = Collections.emptyIterator();
+
+        private ValueIterator(Iterator<Map.Entry<V, List<V>>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!bucket.hasNext() && entries.hasNext()) {
+                bucket = entries.next().getValue().iterator();
+            }
+            return bucket.hasNext();
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return bucket.next();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package persistence.replication;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Транспорт внутри одной JVM на основе блокирующих очередей.
+ */
+public class LocalTransport<K, V> implements ReplicationTransport<K, V> {
+    private final LinkedBlockingQueue<ReplicationBatch<K, V>> batches = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<ReplicationAck> acks = new LinkedBlockingQueue<>();
+
+    @Override
+    public void send(ReplicationBatch<K, V> batch) {
+        batches.add(batch);
+    }
+
+    @Override
+    public ReplicationBatch<K, V> receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return batches.poll(timeout, unit);
+    }
+
+    @Override
+    public void acknowledge(ReplicationAck ack) {
+        acks.add(ack);
+    }
+
+    @Override
+    public ReplicationAck pollAcknowledgement() {
+        return acks.poll();
+    }
+}
@@ -0,0 +1,24 @@
+package persistence.replication;
+
+/**
+ * Ответ ведомого ведущему.
+ * Подтверждает применение всех шагов до порядкового номера включительно
+ * или, при {@code catchUp}, просит повторить передачу начиная со следующего номера.
+ */
+public class ReplicationAck {
+    private final long sequence;
+    private final boolean catchUp;
+
+    public ReplicationAck(long sequence, boolean catchUp) {
+        this.sequence = sequence;
+        this.catchUp = catchUp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isCatchUp() {
+        return catchUp;
+    }
+}
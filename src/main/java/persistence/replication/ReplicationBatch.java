@@ -0,0 +1,34 @@
+package persistence.replication;
+
+import java.util.List;
+
+/**
+ * Пачка изменений, передаваемая ведомому. Изменения сгруппированы по шагам модификации:
+ * шаг не делится между пачками, а шаги нумеруются сквозным порядковым номером журнала репликации.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class ReplicationBatch<K, V> {
+    // Порядковый номер первого шага пачки
+    private final long firstSequence;
+    // Изменения по шагам в порядке применения
+    private final List<ReplicationStep<K, V>> steps;
+
+    public ReplicationBatch(long firstSequence, List<ReplicationStep<K, V>> steps) {
+        this.firstSequence = firstSequence;
+        this.steps = List.copyOf(steps);
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long getLastSequence() {
+        return firstSequence + steps.size() - 1;
+    }
+
+    public List<ReplicationStep<K, V>> getSteps() {
+        return steps;
+    }
+}
@@ -0,0 +1,124 @@
+package persistence.replication;
+
+import persistence.base.IReplayable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведомый репликации: применяет полученные изменения к своей копии коллекции,
+ * воспроизводя те же шаги модификации, что и у ведущего. Изменения одного шага
+ * применяются вместе и дают одну версию копии. Для каждой ветви ведущего ведомый хранит
+ * свою копию, поэтому запись в основную ветвь после ответвления не смешивается с ветвью.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ * @param <C> Тип коллекции.
+ */
+public class ReplicationFollower<K, V, C extends IReplayable<K, V, C>> {
+    private final ReplicationTransport<K, V> transport;
+    // Текущая версия копии основной ветви
+    private volatile C current;
+    // Текущие версии копий ветвей по номерам ветвей ведущего
+    private final Map<Integer, C> heads = new HashMap<>();
+    // Последний применённый номер шага
+    private long applied;
+    // Запрошена повторная передача, пачки с разрывом игнорируются
+    private boolean awaitingCatchUp;
+
+    /**
+     * @param initial   Начальная копия, соответствующая номеру {@code applied}.
+     * @param applied   Контрольная точка: номер последнего уже применённого шага.
+     * @param transport Транспорт.
+     */
+    public ReplicationFollower(C initial, long applied, ReplicationTransport<K, V> transport) {
+        this.current = initial;
+        this.heads.put(ReplicationStep.MAIN, initial);
+        this.applied = applied;
+        this.transport = transport;
+    }
+
+    public ReplicationFollower(C initial, ReplicationTransport<K, V> transport) {
+        this(initial, 0, transport);
+    }
+
+    /**
+     * Просит ведущего передать изменения начиная с контрольной точки.
+     */
+    public synchronized void requestCatchUp() {
+        awaitingCatchUp = true;
+        transport.acknowledge(new ReplicationAck(applied, true));
+    }
+
+    /**
+     * Получение и применение одной пачки.
+     *
+     * @return Количество применённых изменений.
+     */
+    public synchronized int poll(long timeout, TimeUnit unit) throws InterruptedException {
+        var batch = transport.receive(timeout, unit);
+        if (batch == null) {
+            return 0;
+        }
+
+        if (batch.getFirstSequence() > applied + 1) {
+            // Пачка потерялась, просим повторить передачу один раз
+            if (!awaitingCatchUp) {
+                requestCatchUp();
+            }
+            return 0;
+        }
+
+        awaitingCatchUp = false;
+        var count = 0;
+        var sequence = batch.getFirstSequence();
+        for (var step : batch.getSteps()) {
+            if (sequence > applied) {
+                applyStep(step);
+                applied = sequence;
+                count += step.getChanges().size();
+            }
+            sequence++;
+        }
+
+        transport.acknowledge(new ReplicationAck(applied, false));
+        return count;
+    }
+
+    // Изменения шага применяются одной версией к копии своей ветви
+    private void applyStep(ReplicationStep<K, V> step) {
+        var head = heads.get(step.getBranch());
+        if (head == null) {
+            // Первый шаг ветви пишется в версию родительской ветви на шаге ответвления
+            head = heads.get(step.getParent()).version(step.getForkStep());
+        }
+
+        var changes = step.getChanges();
+        int number = changes.get(0).getStep();
+        var base = head.getModificationCount() == number - 1 ? head : head.version(number - 1);
+        var result = base.applyStep(changes);
+        heads.put(step.getBranch(), result);
+        if (step.getBranch() == ReplicationStep.MAIN) {
+            current = result;
+        }
+    }
+
+    /**
+     * Текущая версия копии основной ветви.
+     */
+    public C current() {
+        return current;
+    }
+
+    /**
+     * Текущая версия копии ветви с заданным номером или null, если шагов ветви ещё не было.
+     */
+    public synchronized C branch(int branch) {
+        return heads.get(branch);
+    }
+
+    public synchronized long getApplied() {
+        return applied;
+    }
+}
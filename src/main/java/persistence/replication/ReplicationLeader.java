@@ -0,0 +1,186 @@
+package persistence.replication;
+
+import persistence.base.BasePersistentCollection;
+import persistence.base.Change;
+import persistence.base.ChangeListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ведущий репликации: собирает изменения коллекции в журнал репликации и передаёт их ведомому пачками.
+ * Журнал хранит изменения по шагам, поэтому шаг из нескольких изменений, например фиксация транзакции,
+ * передаётся и подтверждается целиком.
+ * Изменения ветвей, созданных записью в старые версии коллекции, тоже попадают в журнал
+ * с номером ветви, поэтому ведомый ведёт свою копию каждой ветви.
+ * Несколько пачек могут находиться в пути одновременно; подтверждения освобождают окно и журнал.
+ * Запись в коллекцию только добавляет изменение в журнал, передача выполняется вызовом {@link #ship()}.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class ReplicationLeader<K, V> {
+    private final ReplicationTransport<K, V> transport;
+    // Максимальное количество изменений в пачке; шаг больше предела передаётся отдельной пачкой
+    private final int maxBatchSize;
+    // Максимальное количество неподтверждённых пачек
+    private final int maxInFlight;
+    // Журнал репликации по шагам, первый шаг имеет номер logStart
+    private final ArrayList<ReplicationStep<K, V>> log = new ArrayList<>();
+    private long logStart = 1;
+    // Номер следующего шага к отправке
+    private long nextToSend = 1;
+    // Последний подтверждённый номер
+    private long acknowledged;
+    // Последние номера отправленных, но не подтверждённых пачек
+    private final ArrayDeque<Long> inFlight = new ArrayDeque<>();
+    // Номер следующей ветви
+    private int nextBranch = ReplicationStep.MAIN + 1;
+
+    /**
+     * Подключает ведущего к коллекции. История версии {@code source} попадает в журнал репликации,
+     * поэтому ведомый, начинающий с пустой коллекции, воспроизведёт её с теми же шагами.
+     */
+    public ReplicationLeader(BasePersistentCollection<K, V, ?> source, ReplicationTransport<K, V> transport,
+                             int maxBatchSize, int maxInFlight) {
+        if (maxBatchSize <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Batch size and in-flight window must be positive");
+        }
+
+        this.transport = transport;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+        // История одной ветви линейна, поэтому изменения одного шага в ней идут подряд
+        var step = new ArrayList<Change<K, V>>();
+        for (var change : source.diff(0, source.getModificationCount()).toList()) {
+            if (!step.isEmpty() && step.get(0).getStep() != change.getStep()) {
+                log.add(new ReplicationStep<>(ReplicationStep.MAIN, -1, -1, step));
+                step.clear();
+            }
+            step.add(change);
+        }
+        if (!step.isEmpty()) {
+            log.add(new ReplicationStep<>(ReplicationStep.MAIN, -1, -1, step));
+        }
+        source.addChangeListener(new BranchTap(ReplicationStep.MAIN, -1, -1));
+    }
+
+    /**
+     * Обработка ответов и отправка пачек в пределах окна.
+     *
+     * @return Количество отправленных пачек.
+     */
+    public synchronized int ship() {
+        processAcknowledgements();
+
+        var sent = 0;
+        long logEnd = logStart + log.size();
+        while (nextToSend < logEnd && inFlight.size() < maxInFlight) {
+            int from = (int) (nextToSend - logStart);
+            int to = from + 1;
+            int size = log.get(from).getChanges().size();
+            while (to < log.size() && size + log.get(to).getChanges().size() <= maxBatchSize) {
+                size += log.get(to++).getChanges().size();
+            }
+            var batch = new ReplicationBatch<>(nextToSend, log.subList(from, to));
+            transport.send(batch);
+            inFlight.add(batch.getLastSequence());
+            nextToSend = batch.getLastSequence() + 1;
+            sent++;
+        }
+
+        return sent;
+    }
+
+    private void processAcknowledgements() {
+        ReplicationAck ack;
+        while ((ack = transport.pollAcknowledgement()) != null) {
+            acknowledged = Math.max(acknowledged, ack.getSequence());
+            while (!inFlight.isEmpty() && inFlight.peek() <= acknowledged) {
+                inFlight.poll();
+            }
+
+            if (ack.isCatchUp()) {
+                if (ack.getSequence() + 1 < logStart) {
+                    throw new IllegalStateException("Changes after " + ack.getSequence() + " are no longer retained");
+                }
+                // Всё, что было в пути, будет отправлено заново
+                inFlight.clear();
+                nextToSend = ack.getSequence() + 1;
+            }
+        }
+
+        compact();
+    }
+
+    // Удаление подтверждённой части журнала, когда она занимает больше половины
+    private void compact() {
+        int confirmed = (int) Math.min(log.size(), acknowledged - logStart + 1);
+        if (confirmed > 0 && confirmed * 2 >= log.size()) {
+            log.subList(0, confirmed).clear();
+            logStart += confirmed;
+        }
+    }
+
+    public synchronized long getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Номер последнего шага в журнале.
+     */
+    public synchronized long getLastSequence() {
+        return logStart + log.size() - 1;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    // Подписчик одной ветви: все изменения шага попадают в журнал одной записью с номером ветви
+    private class BranchTap implements ChangeListener<K, V> {
+        private final int branch;
+        private final int parent;
+        private final int forkStep;
+        // Записан ли хотя бы один шаг ветви
+        private boolean written;
+
+        private BranchTap(int branch, int parent, int forkStep) {
+            this.branch = branch;
+            this.parent = parent;
+            this.forkStep = forkStep;
+        }
+
+        @Override
+        public void onChange(Change<K, V> change) {
+            onStep(List.of(change));
+        }
+
+        @Override
+        public void onStep(List<Change<K, V>> changes) {
+            synchronized (ReplicationLeader.this) {
+                log.add(new ReplicationStep<>(branch, parent, forkStep, changes));
+                written = true;
+            }
+        }
+
+        @Override
+        public boolean isShared() {
+            return true;
+        }
+
+        /**
+         * Новая ветвь получает свой номер. Ветвь без своих шагов совпадает с родительской
+         * до шага ответвления, поэтому её ответвления отсчитываются от родительской.
+         */
+        @Override
+        public ChangeListener<K, V> forBranch(int step) {
+            synchronized (ReplicationLeader.this) {
+                return written || branch == ReplicationStep.MAIN
+                        ? new BranchTap(nextBranch++, branch, step)
+                        : new BranchTap(nextBranch++, parent, step);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package persistence.replication;
+
+import persistence.base.Change;
+
+import java.util.List;
+
+/**
+ * Шаг журнала репликации: изменения одного шага модификации одной ветви ведущего.
+ * Ветви нумеруются ведущим, основная ветвь — та, к которой он подключён, — имеет номер {@link #MAIN}.
+ * Первый шаг новой ветви применяется к версии родительской ветви на шаге ответвления.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public class ReplicationStep<K, V> {
+    public static final int MAIN = 0;
+
+    private final int branch;
+    // Родительская ветвь и шаг ответвления; у основной ветви равны -1
+    private final int parent;
+    private final int forkStep;
+    private final List<Change<K, V>> changes;
+
+    public ReplicationStep(int branch, int parent, int forkStep, List<Change<K, V>> changes) {
+        this.branch = branch;
+        this.parent = parent;
+        this.forkStep = forkStep;
+        this.changes = List.copyOf(changes);
+    }
+
+    public int getBranch() {
+        return branch;
+    }
+
+    public int getParent() {
+        return parent;
+    }
+
+    public int getForkStep() {
+        return forkStep;
+    }
+
+    public List<Change<K, V>> getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,35 @@
+package persistence.replication;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Транспорт между ведущим и ведомым: прямой канал пачек изменений и обратный канал подтверждений.
+ *
+ * @param <K> Тип ключа (индекса).
+ * @param <V> Тип значения.
+ */
+public interface ReplicationTransport<K, V> {
+    /**
+     * Отправка пачки ведомому. Не должна блокировать ведущего надолго.
+     */
+    void send(ReplicationBatch<K, V> batch);
+
+    /**
+     * Получение следующей пачки на стороне ведомого.
+     *
+     * @return Пачка или null, если за время ожидания ничего не пришло.
+     */
+    ReplicationBatch<K, V> receive(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Отправка ответа ведущему.
+     */
+    void acknowledge(ReplicationAck ack);
+
+    /**
+     * Получение следующего ответа на стороне ведущего без ожидания.
+     *
+     * @return Ответ или null, если ответов нет.
+     */
+    ReplicationAck pollAcknowledgement();
+}
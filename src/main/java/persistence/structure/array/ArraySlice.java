@@ -0,0 +1,214 @@
+package persistence.structure.array;
+
+import persistence.base.Change;
+import persistence.base.ChangeType;
+import persistence.base.tree.ImplicitTreap;
+
+import java.util.*;
+
+/**
+ * Неизменяемая последовательность, составленная из отрезков версий {@link PersistentArray}.
+ * Срез и соединение не копируют элементы: отрезок хранит только версию, смещение и длину,
+ * а отрезки лежат в неизменяемом декартовом дереве по неявному ключу, поэтому срез и соединение
+ * стоят O(log s), где s — количество отрезков, и разделяют остальные отрезки с исходными последовательностями.
+ * Доступ по индексу находит отрезок спуском по дереву за O(log s) и читает значение из его версии.
+ * Последовательность только читается: у неё нет своих версий, отмены и журнала изменений.
+ * Для правки её нужно скопировать в новый массив через {@link #toPersistentArray()} за O(n).
+ *
+ * @param <T> Тип элементов.
+ */
+public final class ArraySlice<T> extends AbstractList<T> implements RandomAccess {
+    private final Segment<T> root;
+
+    private ArraySlice(Segment<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Отрезок [from, to) версии массива.
+     */
+    static <T> ArraySlice<T> of(PersistentArray<T> array, int from, int to) {
+        checkRange(from, to, array.getCount());
+        return new ArraySlice<>(from == to ? null
+                : new Segment<>(array, from, to - from, ImplicitTreap.priority(), null, null));
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size());
+
+        var node = root;
+        while (true) {
+            int leftWeight = Segment.weightOf(node.left);
+            if (index < leftWeight) {
+                node = node.left;
+            } else if (index < leftWeight + node.length) {
+                return node.array.get(node.offset + index - leftWeight);
+            } else {
+                index -= leftWeight + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return Segment.weightOf(root);
+    }
+
+    /**
+     * Срез [from, to) без копирования элементов за O(log s).
+     */
+    public ArraySlice<T> slice(int from, int to) {
+        checkRange(from, to, size());
+        if (from == 0 && to == size()) {
+            return this;
+        }
+
+        var parts = Segment.<T>treap().split(root, from);
+        return new ArraySlice<>(Segment.<T>treap().split(parts.right, to - from).left);
+    }
+
+    @Override
+    public ArraySlice<T> subList(int from, int to) {
+        return slice(from, to);
+    }
+
+    /**
+     * Соединение с другой последовательностью за O(log s). Смежные отрезки одной версии сливаются.
+     */
+    public ArraySlice<T> concat(ArraySlice<T> other) {
+        if (other.root == null) {
+            return this;
+        }
+        if (root == null) {
+            return other;
+        }
+
+        var treap = Segment.<T>treap();
+        var last = root;
+        while (last.right != null) {
+            last = last.right;
+        }
+        var first = other.root;
+        while (first.left != null) {
+            first = first.left;
+        }
+        if (last.array != first.array || last.offset + last.length != first.offset) {
+            return new ArraySlice<>(treap.merge(root, other.root));
+        }
+
+        var head = treap.split(root, size() - last.length).left;
+        var tail = treap.split(other.root, first.length).right;
+        var joined = new Segment<>(last.array, last.offset, last.length + first.length, ImplicitTreap.priority(), null, null);
+        return new ArraySlice<>(treap.merge(treap.merge(head, joined), tail));
+    }
+
+    public ArraySlice<T> concat(PersistentArray<T> other) {
+        return concat(of(other, 0, other.getCount()));
+    }
+
+    /**
+     * Разделение на [0, index) и [index, size).
+     */
+    public List<ArraySlice<T>> splitAt(int index) {
+        return List.of(slice(0, index), slice(index, size()));
+    }
+
+    /**
+     * Копия последовательности в новый массив за O(n) одним шагом.
+     * В отличие от среза, копия редактируется, отменяется и ветвится как обычный массив.
+     */
+    public PersistentArray<T> toPersistentArray() {
+        var changes = new ArrayList<Change<Integer, T>>(size());
+        for (var value : this) {
+            changes.add(new Change<>(0, ChangeType.Insert, changes.size(), null, value));
+        }
+        return new PersistentArray<T>().applyStep(changes);
+    }
+
+    /**
+     * Количество отрезков, из которых составлена последовательность.
+     */
+    public int segmentCount() {
+        return root == null ? 0 : root.count;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        var path = new ArrayDeque<Segment<T>>();
+        for (var node = root; node != null; node = node.left) {
+            path.push(node);
+        }
+
+        // Обход отрезков по порядку, внутри отрезка — по позициям его версии
+        return new Iterator<>() {
+            private Segment<T> segment;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return segment != null && position < segment.length || !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (segment == null || position == segment.length) {
+                    if (path.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    segment = path.pop();
+                    position = 0;
+                    for (var node = segment.right; node != null; node = node.left) {
+                        path.push(node);
+                    }
+                }
+                return segment.array.get(segment.offset + position++);
+            }
+        };
+    }
+
+    private static void checkRange(int from, int to, int size) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + size);
+        }
+    }
+
+    // Отрезок версии массива в узле дерева отрезков
+    private static final class Segment<T> extends ImplicitTreap.TreapNode<Segment<T>> {
+        private static final SegmentTreap<?> TREAP = new SegmentTreap<>();
+
+        private final PersistentArray<T> array;
+        private final int offset;
+        private final int length;
+        // Количество отрезков в поддереве
+        private final int count;
+
+        private Segment(PersistentArray<T> array, int offset, int length, int priority, Segment<T> left, Segment<T> right) {
+            super(length, priority, left, right);
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            this.count = 1 + (left == null ? 0 : left.count) + (right == null ? 0 : right.count);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> SegmentTreap<T> treap() {
+            return (SegmentTreap<T>) TREAP;
+        }
+    }
+
+    // Операции дерева отрезков: отрезок на границе разреза делится на два отрезка той же версии
+    private static final class SegmentTreap<T> extends ImplicitTreap<Segment<T>> {
+        @Override
+        protected Segment<T> with(Segment<T> node, Segment<T> left, Segment<T> right) {
+            return new Segment<>(node.array, node.offset, node.length, node.priority, left, right);
+        }
+
+        @Override
+        protected Split<Segment<T>> cut(Segment<T> node, int offset) {
+            return new Split<>(new Segment<>(node.array, node.offset, offset, node.priority, node.left, null),
+                    new Segment<>(node.array, node.offset + offset, node.length - offset, node.priority, null, node.right));
+        }
+    }
+}
@@ -1,25 +1,50 @@
 package persistence.structure.array;
 
 import persistence.base.*;
+import persistence.base.tree.BinaryTree;
+import persistence.base.tree.ITree;
 
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-public class PersistentArray<T> extends BasePersistentCollection<Integer, T, List<PersistentNode<T>>> implements Iterable<T>, IUndoRedo<PersistentArray<T>> {
+public class PersistentArray<T> extends BasePersistentCollection<Integer, T, List<PersistentNode<T>>> implements Iterable<T>, IUndoRedo<PersistentArray<T>>, IReplayable<Integer, T, PersistentArray<T>>, IRangeHashed {
+    // Пустое дерево истории, по образцу которого создаются деревья истории новых узлов
+    private final ITree<Integer, T> history;
 
     /**
      * Конструктор по умолчанию. Создаёт пустой массив.
      */
     public PersistentArray() throws IndexOutOfBoundsException {
+        this(new BinaryTree<>());
+    }
+
+    /**
+     * Создаёт пустой массив с заданным деревом истории значений каждой позиции,
+     * например {@link persistence.base.tree.ArrayBinaryTree}, не создающим объект на каждое изменение.
+     *
+     * @param history Пустое дерево истории; деревья новых узлов создаются через {@link ITree#createEmpty()}.
+     */
+    public PersistentArray(ITree<Integer, T> history) {
+        if (history.size() != 0) {
+            throw new IllegalArgumentException("History tree must be empty");
+        }
+
+        this.history = history;
         // Создаём пустую коллекцию узлов и устанавливаем счётчик модификаций.
         nodes = new PersistentContent<>(new ArrayList<>(), new ModificationCount(modificationCount));
+        nodes.addListener(new SequenceLengthIndex(changeLog(), modificationCount));
     }
 
     /**
      * Приватный конструктор для внутреннего использования.
      * Позволяет создавать массив с заданными узлами и параметрами.
      */
-    private PersistentArray(PersistentContent<List<PersistentNode<T>>> nodes, int count, int modificationCount) {
+    private PersistentArray(ITree<Integer, T> history, PersistentContent<List<PersistentNode<T>>> nodes, int count, int modificationCount) {
         super(nodes, count, modificationCount);
+        this.history = history;
     }
 
     /**
@@ -28,6 +53,7 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
      */
     public PersistentArray(PersistentContent<List<PersistentNode<T>>> nodes, int count, int modificationCount, int start) {
         super(nodes, count, modificationCount, start);
+        this.history = new BinaryTree<>();
     }
 
     /**
@@ -36,8 +62,7 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
     @Override
     protected PersistentContent<List<PersistentNode<T>>> reassembleNodes() {
         // Создаём новую коллекцию узлов для нового состояния.
-        PersistentContent<List<PersistentNode<T>>> newContent = new PersistentContent<>(new ArrayList<>(),
-                new ModificationCount(modificationCount));
+        PersistentContent<List<PersistentNode<T>>> newContent = nodes.fork(new ArrayList<>(), modificationCount);
 
         // Список всех модификаций, которые произошли до текущего шага.
         ArrayList<Map.Entry<Integer, Map.Entry<Integer, T>>> allModifications = new ArrayList<>();
@@ -68,13 +93,31 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
             if (m.getKey() >= newContent.getContent().size()) {
                 // Если узел новый, создаём его и добавляем в коллекцию.
                 newContent.update(c ->
-                        c.add(new PersistentNode<>(m.getValue().getKey(), m.getValue().getValue())));
+                        c.add(newNode(m.getValue().getKey(), m.getValue().getValue())));
             } else {
                 // Если узел существует, обновляем его значение.
                 newContent.update(c -> c.get(m.getKey()).update(m.getValue().getKey(), m.getValue().getValue()));
             }
         });
 
+        // Каждое обновление увеличивает счётчик, поэтому возвращаем его к шагу пересборки
+        newContent.getMaxModification().setValue(modificationCount);
+        newContent.addListener(lengths().fork(modificationCount));
+
+        // Новая ветвь получает собственное зеркало, если оно было у исходной
+        if (nodes.getListener(ListMirror.class) != null) {
+            newContent.addListener(new ListMirror<>(materialize(), modificationCount));
+        }
+
+        for (RangeAggregateIndex<?> index : nodes.getListeners(RangeAggregateIndex.class)) {
+            newContent.addListener(index.fork(modificationCount));
+        }
+
+        var hashIndex = nodes.getListener(SequenceHashIndex.class);
+        if (hashIndex != null) {
+            newContent.addListener(hashIndex.fork(modificationCount));
+        }
+
         return newContent;
     }
 
@@ -82,34 +125,42 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
      * Реализация добавления элемента в массив.
      */
     private void addImpl(PersistentContent<List<PersistentNode<T>>> content, int modificationCount, T value) {
-        // Добавляем новый узел с текущим значением и шагом модификации.
-        content.update(c -> c.add(new PersistentNode<>(modificationCount + 1, value)));
+        // Добавляем узел с текущим значением сразу за концом версии в её эпохе.
+        int end = content.epochBase(modificationCount) + getCount();
+        content.update(c -> setNode(c, end, modificationCount + 1, value));
+        content.publish(new Change<>(modificationCount + 1, ChangeType.Insert, getCount(), null, value));
     }
 
     /**
      * Реализация вставки элемента в массив по индексу.
      */
     private void insertImpl(PersistentContent<List<PersistentNode<T>>> content, int modificationCount, int index, T value) {
+        int base = content.epochBase(modificationCount);
+        int end = base + getCount();
         content.update(c -> {
             // Добавляем новый узел в конец, чтобы сохранить размер массива.
-            c.add(new PersistentNode<>(modificationCount + 1, c.get(c.size() - 1).value(modificationCount)));
+            setNode(c, end, modificationCount + 1, c.get(end - 1).value(modificationCount));
 
             // Обновляем значение по указанному индексу.
-            c.get(index).update(modificationCount + 1, value);
+            c.get(base + index).update(modificationCount + 1, value);
 
             // Сдвигаем оставшиеся элементы вправо.
-            for (var i = index + 1; i < c.size(); i++) {
+            for (var i = base + index + 1; i < end; i++) {
                 c.get(i).update(modificationCount + 1, c.get(i - 1).value(modificationCount));
             }
         });
+        content.publish(new Change<>(modificationCount + 1, ChangeType.Insert, index, null, value));
     }
 
     /**
      * Реализация замены элемента в массиве.
      */
     private void replaceImpl(PersistentContent<List<PersistentNode<T>>> content, int modificationCount, int index, T value) {
+        int position = content.epochBase(modificationCount) + index;
+        T oldValue = content.getContent().get(position).value(modificationCount);
         // Обновляем значение в узле по индексу.
-        content.update(c -> c.get(index).update(modificationCount + 1, value));
+        content.update(c -> c.get(position).update(modificationCount + 1, value));
+        content.publish(new Change<>(modificationCount + 1, ChangeType.Update, index, oldValue, value));
     }
 
     /**
@@ -117,22 +168,39 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
      */
 
     private void removeImpl(PersistentContent<List<PersistentNode<T>>> content, int modificationCount, int index) {
+        int base = content.epochBase(modificationCount);
+        int end = base + getCount();
+        T oldValue = content.getContent().get(base + index).value(modificationCount);
         content.update(c -> {
             // Сдвигаем элементы влево, начиная с удаляемого индекса
-            for (var i = index; i < c.size() - 1; i++) {
+            for (var i = base + index; i < end - 1; i++) {
                 c.get(i).update(modificationCount + 1, c.get(i + 1).value(modificationCount));
             }
-            // А вместо записи `null` в последний элемент — физически убираем его
-            c.remove(c.size() - 1);
+            // Последний узел остаётся на месте: старые версии читают его, а длину версии задаёт индекс длин
         });
+        content.publish(new Change<>(modificationCount + 1, ChangeType.Remove, index, oldValue, null));
     }
 
     /**
-     * Реализация очистки массива.
+     * Реализация очистки массива: узлы не трогаются, новая эпоха начинается за последним узлом.
      */
-
     private void clear(PersistentContent<List<PersistentNode<T>>> content, int modificationCount) {
-        content.update(c -> c.clear()); // физически делаем c.size() = 0
+        content.update(c -> content.markEpoch(modificationCount + 1, c.size()));
+        content.publish(new Change<Integer, T>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    // Запись значения в узел с заданной позицией или добавление нового узла в конец
+    private void setNode(List<PersistentNode<T>> content, int position, int step, T value) {
+        if (position < content.size()) {
+            content.get(position).update(step, value);
+        } else {
+            content.add(newNode(step, value));
+        }
+    }
+
+    // Узел с историей того же вида, что и у остальных узлов массива
+    private PersistentNode<T> newNode(int step, T value) {
+        return new PersistentNode<>(history.createEmpty(), step, value);
     }
 
     /**
@@ -142,12 +210,12 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var res = reassembleNodes(); // Пересобираем узлы.
             addImpl(res, modificationCount, value); // Добавляем элемент.
-            return new PersistentArray<>(res, getCount() + 1, modificationCount + 1);
+            return new PersistentArray<>(history, res, getCount() + 1, modificationCount + 1);
         }
 
         // Добавляем элемент в текущую коллекцию узлов.
         addImpl(nodes, modificationCount, value);
-        return new PersistentArray<>(nodes, getCount() + 1, modificationCount + 1);
+        return new PersistentArray<>(history, nodes, getCount() + 1, modificationCount + 1);
     }
 
     /**
@@ -165,31 +233,48 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var res = reassembleNodes(); // Пересобираем узлы.
             insertImpl(res, modificationCount, index, value); // Вставляем элемент.
-            return new PersistentArray<>(res, getCount() + 1, modificationCount + 1);
+            return new PersistentArray<>(history, res, getCount() + 1, modificationCount + 1);
         }
 
         // Вставляем элемент в текущую коллекцию узлов.
         insertImpl(nodes, modificationCount, index, value);
-        return new PersistentArray<>(nodes, getCount() + 1, modificationCount + 1);
+        return new PersistentArray<>(history, nodes, getCount() + 1, modificationCount + 1);
     }
 
     /**
      * Замена элемента по индексу.
      */
     public PersistentArray<T> replace(Integer index, T value) {
-        if (index < 0 || index > getCount()) {
+        if (index < 0 || index >= getCount()) {
             throw new IndexOutOfBoundsException(index);
         }
 
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var res = reassembleNodes(); // Пересобираем узлы.
             replaceImpl(res, modificationCount, index, value); // Заменяем элемент.
-            return new PersistentArray<>(res, getCount(), modificationCount + 1);
+            return new PersistentArray<>(history, res, getCount(), modificationCount + 1);
         }
 
         // Заменяем элемент в текущей коллекции узлов.
         replaceImpl(nodes, modificationCount, index, value);
-        return new PersistentArray<>(nodes, getCount(), modificationCount + 1);
+        return new PersistentArray<>(history, nodes, getCount(), modificationCount + 1);
+    }
+
+    /**
+     * Изменение вложенной персистентной коллекции одним шагом массива. Массив хранит ссылку
+     * на новую версию вложенной коллекции, поэтому отмена и переход к любой версии массива
+     * возвращают и вложенную коллекцию к её версии на том шаге.
+     * Первое изменение вложенной коллекции после такой отмены ответвляет её содержимое
+     * за O(размер вложенной истории), как и запись в старую версию самого массива.
+     *
+     * @param index  Индекс вложенной коллекции.
+     * @param update Изменение, возвращающее новую версию вложенной коллекции.
+     * @return Новая версия или этот же массив, если изменение вернуло ту же версию.
+     */
+    public PersistentArray<T> updateNested(int index, UnaryOperator<T> update) {
+        var inner = get(index);
+        var updated = update.apply(inner);
+        return updated == inner ? this : replace(index, updated);
     }
 
     /**
@@ -203,27 +288,216 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var res = reassembleNodes(); // Пересобираем узлы.
             removeImpl(res, modificationCount, index); // Удаляем элемент.
-            return new PersistentArray<>(res, getCount() - 1, modificationCount + 1);
+            return new PersistentArray<>(history, res, getCount() - 1, modificationCount + 1);
         }
 
         // Удаляем элемент из текущей коллекции узлов.
         removeImpl(nodes, modificationCount, index);
-        return new PersistentArray<>(nodes, getCount() - 1, modificationCount + 1);
+        return new PersistentArray<>(history, nodes, getCount() - 1, modificationCount + 1);
     }
 
     /**
-     * Очистка массива (установка всех элементов в null).
+     * Очистка массива за O(1). Предыдущие версии остаются доступными.
      */
     public PersistentArray<T> clearAll() {
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var res = reassembleNodes(); // Пересобираем узлы.
             clear(res, modificationCount); // Очищаем массив.
-            return new PersistentArray<>(res, 0, modificationCount + 1);
+            return new PersistentArray<>(history, res, 0, modificationCount + 1);
         }
 
         // Очищаем текущую коллекцию узлов.
         clear(nodes, modificationCount);
-        return new PersistentArray<>(nodes, 0, modificationCount + 1);
+        return new PersistentArray<>(history, nodes, 0, modificationCount + 1);
+    }
+
+    /**
+     * Ответвление этой версии в именованную ветвь. Ветвь разделяет с исходным содержимым
+     * журнал изменений до этого шага, а её изменения не видны другим ветвям.
+     *
+     * @param name Имя новой ветви.
+     * @return Голова новой ветви, равная этой версии.
+     */
+    public PersistentArray<T> fork(String name) {
+        return new PersistentArray<>(history, forkBranch(name), getCount(), modificationCount);
+    }
+
+    /**
+     * Последняя версия ветви с заданным именем.
+     */
+    public PersistentArray<T> checkout(String name) {
+        var content = branchContent(name);
+        var head = new PersistentArray<T>(history, content, 0, content.getMaxModification().getValue());
+        head.setCount(head.recalculateCount(head.modificationCount));
+        return head;
+    }
+
+    /**
+     * Трёхстороннее слияние другой версии в эту по индексам. Замена отмечает изменённым один индекс,
+     * а изменения одной стороны переносятся через вставки и удаления другой стороны по элементам предка.
+     * Индекс, изменённый только другой стороной, получает её элемент; элемент, по-разному изменённый
+     * обеими сторонами или изменённый одной стороной и удалённый другой, разрешается через {@code resolver},
+     * а null от него убирает элемент. Вставки обеих сторон в одно место идут подряд, сначала свои.
+     * Без вставок и удалений время пропорционально количеству изменённых индексов, иначе — длине
+     * хвоста после первого сдвига. Все изменения результата записываются одним шагом этой ветви.
+     *
+     * @param other    Вливаемая версия с общей историей.
+     * @param resolver Разрешение конфликтов; отсутствующий элемент передаётся как null.
+     * @return Результат слияния или эта же версия, если слияние ничего не меняет.
+     * @throws IllegalArgumentException если у версий нет общей истории.
+     */
+    public PersistentArray<T> merge(PersistentArray<T> other, MergeResolver<Integer, T> resolver) {
+        int base = commonAncestor(other);
+        var ancestor = version(base);
+        var ours = new TreeSet<Integer>();
+        var theirs = new TreeSet<Integer>();
+        int shift = Math.min(changedIndexes(base, ours), other.changedIndexes(base, theirs));
+
+        // До первого сдвига элементы стоят на местах, поэтому индексы сливаются заменами
+        var changes = new ArrayList<Change<Integer, T>>();
+        var updated = new TreeSet<>(ours);
+        updated.addAll(theirs);
+        for (var index : updated.headSet(shift)) {
+            var merged = mergeAt(index, ours.contains(index), theirs.contains(index), other, ancestor, resolver);
+            if (merged == null) {
+                // Удалённый элемент сдвигает остальные: хвост сливается вместе со сдвигами
+                shift = index;
+                break;
+            }
+            if (!Objects.equals(get(index), merged)) {
+                changes.add(new Change<>(0, ChangeType.Update, index, null, merged));
+            }
+        }
+
+        if (shift >= Math.max(getCount(), other.getCount())) {
+            return applyStep(changes);
+        }
+
+        // Хвост после первого сдвига сопоставляется по элементам предка и собирается заново
+        var oursOrigin = new ArrayList<Integer>();
+        var oursChanged = new ArrayList<Boolean>();
+        var theirsOrigin = new ArrayList<Integer>();
+        var theirsChanged = new ArrayList<Boolean>();
+        alignTail(base, shift, ancestor.getCount(), oursOrigin, oursChanged);
+        other.alignTail(base, shift, ancestor.getCount(), theirsOrigin, theirsChanged);
+
+        var tail = new ArrayList<T>();
+        int i = 0;
+        int j = 0;
+        for (var origin = shift; ; origin++) {
+            int oursInserted = i;
+            while (oursInserted < oursOrigin.size() && oursOrigin.get(oursInserted) < 0) {
+                oursInserted++;
+            }
+            int theirsInserted = j;
+            while (theirsInserted < theirsOrigin.size() && theirsOrigin.get(theirsInserted) < 0) {
+                theirsInserted++;
+            }
+            var inserted = asList().subList(shift + i, shift + oursInserted);
+            var otherInserted = other.asList().subList(shift + j, shift + theirsInserted);
+            tail.addAll(inserted);
+            if (!inserted.equals(otherInserted)) {
+                tail.addAll(otherInserted);
+            }
+            i = oursInserted;
+            j = theirsInserted;
+            if (origin >= ancestor.getCount()) {
+                break;
+            }
+
+            // Элемент предка есть на стороне, если её очередная позиция происходит от него
+            boolean inOurs = i < oursOrigin.size() && oursOrigin.get(i) == origin;
+            boolean inTheirs = j < theirsOrigin.size() && theirsOrigin.get(j) == origin;
+            var value = inOurs ? get(shift + i) : null;
+            var otherValue = inTheirs ? other.get(shift + j) : null;
+            boolean changed = inOurs && oursChanged.get(i);
+            boolean otherChanged = inTheirs && theirsChanged.get(j);
+            T merged;
+            if (inOurs && inTheirs) {
+                merged = !otherChanged || Objects.equals(value, otherValue) ? value
+                        : !changed ? otherValue
+                        : resolver.resolve(shift + tail.size(), ancestor.get(origin), value, otherValue);
+            } else if (changed || otherChanged) {
+                merged = resolver.resolve(shift + tail.size(), ancestor.get(origin), value, otherValue);
+            } else {
+                merged = null; // Удалён одной стороной и не изменён другой
+            }
+            if (merged != null) {
+                tail.add(merged);
+            }
+            i += inOurs ? 1 : 0;
+            j += inTheirs ? 1 : 0;
+        }
+
+        int common = 0;
+        while (common < tail.size() && shift + common < getCount() && Objects.equals(get(shift + common), tail.get(common))) {
+            common++;
+        }
+        for (var index = getCount() - 1; index >= shift + common; index--) {
+            changes.add(new Change<>(0, ChangeType.Remove, index, null, null));
+        }
+        for (var index = common; index < tail.size(); index++) {
+            changes.add(new Change<>(0, ChangeType.Insert, shift + index, null, tail.get(index)));
+        }
+
+        return applyStep(changes);
+    }
+
+    // Слияние одного индекса; отсутствующий элемент обозначается null
+    private T mergeAt(int index, boolean oursChanged, boolean theirsChanged, PersistentArray<T> other,
+                      PersistentArray<T> ancestor, MergeResolver<Integer, T> resolver) {
+        var value = index < getCount() ? get(index) : null;
+        var theirs = index < other.getCount() ? other.get(index) : null;
+        if (!theirsChanged || Objects.equals(value, theirs)) {
+            return value;
+        }
+        if (!oursChanged) {
+            return theirs;
+        }
+        return resolver.resolve(index, index < ancestor.getCount() ? ancestor.get(index) : null, value, theirs);
+    }
+
+    // Индексы, заменённые после заданного шага, и наименьшая позиция сдвига или Integer.MAX_VALUE
+    private int changedIndexes(int step, Set<Integer> updated) {
+        int[] shift = {Integer.MAX_VALUE};
+        changeLog().between(step, modificationCount).flatMap(Change::expand).forEach(c -> {
+            switch (c.getType()) {
+                case Update -> updated.add(c.getKey());
+                case Insert, Remove -> shift[0] = Math.min(shift[0], c.getKey());
+                case Clear -> shift[0] = 0;
+            }
+        });
+        return shift[0];
+    }
+
+    // Происхождение позиций этой версии начиная с from: индекс элемента предка или -1 для вставленного,
+    // и отметки замены после шага предка
+    private void alignTail(int step, int from, int baseCount, List<Integer> origin, List<Boolean> changed) {
+        for (var index = from; index < baseCount; index++) {
+            origin.add(index);
+            changed.add(false);
+        }
+        changeLog().between(step, modificationCount).flatMap(Change::expand).forEach(c -> {
+            switch (c.getType()) {
+                case Insert -> {
+                    origin.add(c.getKey() - from, -1);
+                    changed.add(c.getKey() - from, false);
+                }
+                case Remove -> {
+                    origin.remove(c.getKey() - from);
+                    changed.remove(c.getKey() - from);
+                }
+                case Update -> {
+                    if (c.getKey() >= from) {
+                        changed.set(c.getKey() - from, true);
+                    }
+                }
+                case Clear -> {
+                    origin.clear();
+                    changed.clear();
+                }
+            }
+        });
     }
 
     /**
@@ -233,17 +507,207 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
         if (index < 0 || index >= getCount()) {
             throw new IndexOutOfBoundsException(index);
         }
-        return nodes.getContent().get(index).value(modificationCount); // Возвращаем значение на текущем шаге.
+
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.get(index); // Последняя версия читается из зеркала.
+        }
+
+        var cache = nodes.getVersionCache();
+        if (cache != null) {
+            List<T> snapshot = cache.peek(nodes, modificationCount);
+            if (snapshot != null) {
+                return snapshot.get(index);
+            }
+        }
+
+        // Возвращаем значение на текущем шаге с учётом смещения эпохи.
+        return nodes.getContent().get(nodes.epochBase(modificationCount) + index).value(modificationCount);
+    }
+
+    /**
+     * Включает зеркало последней версии: чтения последней версии выполняются по плоскому списку,
+     * а более старые версии по-прежнему разрешаются через историю узлов.
+     */
+    public PersistentArray<T> withHeadMirror() {
+        if (nodes.getListener(ListMirror.class) == null) {
+            var head = new PersistentArray<>(history, nodes, recalculateCount(nodes.getMaxModification().getValue()),
+                    nodes.getMaxModification().getValue());
+            nodes.addListener(new ListMirror<>(head.materialize(), head.modificationCount));
+        }
+
+        return this;
+    }
+
+    /**
+     * Подключает кэш материализованных версий. Кэш общий для всех версий этого содержимого
+     * и может разделяться между несколькими коллекциями.
+     */
+    public PersistentArray<T> withVersionCache(VersionCache cache) {
+        nodes.setVersionCache(cache);
+        return this;
+    }
+
+    /**
+     * Подключает индекс агрегатов диапазонов для заданной операции. Индекс строится по журналу изменений,
+     * поэтому агрегаты доступны и для версий, созданных до подключения.
+     * Для каждой операции достаточно подключить индекс один раз.
+     */
+    public PersistentArray<T> withAggregate(Monoid<T> monoid) {
+        if (aggregateIndex(monoid) == null) {
+            nodes.addListener(new RangeAggregateIndex<>(monoid, changeLog(), nodes.getMaxModification().getValue()));
+        }
+
+        return this;
     }
 
+    /**
+     * Агрегат значений в диапазоне [from, to) этой версии за O(log n).
+     *
+     * @throws IllegalStateException если индекс для операции не подключён.
+     */
+    public T aggregate(Monoid<T> monoid, int from, int to) {
+        if (from < 0 || to > getCount() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + getCount());
+        }
+
+        var index = aggregateIndex(monoid);
+        if (index == null) {
+            throw new IllegalStateException("No aggregate index for the monoid");
+        }
+
+        return index.aggregate(modificationCount, from, to);
+    }
+
+    /**
+     * Хеш элементов в позициях [from, to) этой версии за O(log n). Дерево хешей строится
+     * по журналу изменений при первом обращении и дальше поддерживается для каждой новой версии.
+     */
+    @Override
+    public long contentHash(int from, int to) {
+        Objects.checkFromToIndex(from, to, getCount());
+        return hashIndex().hash(modificationCount, from, to);
+    }
+
+    private SequenceHashIndex hashIndex() {
+        var index = nodes.getListener(SequenceHashIndex.class);
+        if (index == null) {
+            index = new SequenceHashIndex(changeLog(), nodes.getMaxModification().getValue());
+            nodes.addListener(index);
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RangeAggregateIndex<T> aggregateIndex(Monoid<T> monoid) {
+        for (RangeAggregateIndex<?> index : nodes.getListeners(RangeAggregateIndex.class)) {
+            if (index.getMonoid() == monoid) {
+                return (RangeAggregateIndex<T>) index;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected Stream<Change<Integer, T>> insertionsAt(int modificationStep, int changeStep) {
+        var values = new PersistentArray<>(history, nodes, recalculateCount(modificationStep), modificationStep).materialize();
+        return IntStream.range(0, values.size())
+                .mapToObj(i -> new Change<>(changeStep, ChangeType.Insert, i, null, values.get(i)));
+    }
+
+    /**
+     * Зеркало, если оно соответствует шагу этой версии.
+     */
+    @SuppressWarnings("unchecked")
+    private ListMirror<T> headMirror() {
+        ListMirror<T> mirror = nodes.getListener(ListMirror.class);
+        return mirror != null && mirror.getStep() == modificationCount ? mirror : null;
+    }
+
+    /**
+     * Значения версии в виде плоского списка.
+     */
+    private List<T> materialize() {
+        var result = new ArrayList<T>(getCount());
+        historyIterator().forEachRemaining(result::add);
+        return result;
+    }
 
     public Iterator<T> iterator() {
+        if (headMirror() != null) {
+            // Зеркало может измениться при следующей записи, поэтому каждый элемент читается через get.
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < getCount();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(index++);
+                }
+            };
+        }
+
+        var cache = nodes.getVersionCache();
+        if (cache != null) {
+            return Collections.unmodifiableList(cache.get(nodes, modificationCount, this::materialize)).iterator();
+        }
+
+        return historyIterator();
+    }
+
+    /**
+     * Представление версии в виде неизменяемого {@link List} без копирования:
+     * каждое обращение по индексу читает значение этой версии.
+     */
+    public List<T> asList() {
+        return new ListView();
+    }
+
+    /**
+     * Срез [from, to) этой версии без копирования элементов и истории. Срез только читается;
+     * для правки его нужно скопировать через {@link ArraySlice#toPersistentArray()}.
+     */
+    public ArraySlice<T> slice(int from, int to) {
+        return ArraySlice.of(this, from, to);
+    }
+
+    /**
+     * Подсписок [from, to) этой версии, разделяющий структуру с массивом.
+     */
+    public ArraySlice<T> subList(int from, int to) {
+        return slice(from, to);
+    }
+
+    /**
+     * Разделение версии на [0, index) и [index, count) без копирования.
+     */
+    public List<ArraySlice<T>> splitAt(int index) {
+        return List.of(slice(0, index), slice(index, getCount()));
+    }
+
+    /**
+     * Соединение этой версии с версией другого массива без копирования.
+     */
+    public ArraySlice<T> concat(PersistentArray<T> other) {
+        return slice(0, getCount()).concat(other);
+    }
+
+    /**
+     * Обход версии по истории узлов.
+     */
+    private Iterator<T> historyIterator() {
+        int base = nodes.epochBase(modificationCount);
         return nodes.getContent()
+                .subList(base, base + getCount()) // Только узлы эпохи этой версии.
                 .stream()
-                .filter(
-                        n -> n.getModifications().toList()
-                                .stream()
-                                .anyMatch(m -> m.getKey() <= modificationCount)) // Только актуальные узлы.
                 .map(n -> n.value(modificationCount)) // Возвращаем значения узлов.
                 .iterator();
     }
@@ -252,7 +716,7 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
      * Откат изменений на один шаг назад.
      */
     public PersistentArray<T> undo() {
-        return modificationCount == startModificationCount ? this : new PersistentArray<>(nodes,
+        return modificationCount == startModificationCount ? this : new PersistentArray<>(history, nodes,
                 recalculateCount(modificationCount - 1), modificationCount - 1);
     }
 
@@ -260,21 +724,135 @@ public class PersistentArray<T> extends BasePersistentCollection<Integer, T, Lis
      * Повтор изменений на один шаг вперёд.
      */
     public PersistentArray<T> redo() {
-        return modificationCount == nodes.getMaxModification().getValue() ? this : new PersistentArray<>(nodes,
+        return modificationCount == nodes.getMaxModification().getValue() ? this : new PersistentArray<>(history, nodes,
                 recalculateCount(modificationCount + 1), modificationCount + 1);
     }
 
     /**
-     * Пересчёт количества элементов в массиве.
+     * Применение опубликованного изменения к этой версии.
+     */
+    @Override
+    public PersistentArray<T> apply(Change<Integer, T> change) {
+        return switch (change.getType()) {
+            case Insert -> insert(change.getKey(), change.getNewValue());
+            case Update -> replace(change.getKey(), change.getNewValue());
+            case Remove -> remove(change.getKey());
+            case Clear -> clearAll();
+        };
+    }
+
+    /**
+     * Подготовка записи нескольких изменений одним шагом. Индексы проверяются по длине,
+     * которую задают предыдущие изменения, поэтому ошибка обнаруживается до записи.
+     * При записи узлы читаются на шаге записи: каждое изменение видит сдвиги предыдущих,
+     * а очистка внутри шага начинает новую эпоху, как и {@link #clearAll()}.
+     */
+    @Override
+    public Supplier<PersistentArray<T>> prepare(List<Change<Integer, T>> changes) {
+        var length = getCount();
+        for (var change : changes) {
+            switch (change.getType()) {
+                case Insert -> {
+                    Objects.checkIndex(change.getKey(), length + 1);
+                    length++;
+                }
+                case Update -> Objects.checkIndex(change.getKey(), length);
+                case Remove -> {
+                    Objects.checkIndex(change.getKey(), length);
+                    length--;
+                }
+                case Clear -> length = 0;
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return () -> this;
+        }
+
+        int newCount = length;
+        return () -> {
+            var content = nodes.getMaxModification().getValue() > modificationCount ? reassembleNodes() : nodes;
+            var step = modificationCount + 1;
+            var published = new ArrayList<Change<Integer, T>>(changes.size());
+            content.update(c -> {
+                var count = getCount();
+                for (var change : changes) {
+                    int index = change.getType() == ChangeType.Clear ? 0 : change.getKey();
+                    int position = content.epochBase(step) + index;
+                    int end = content.epochBase(step) + count;
+                    switch (change.getType()) {
+                        case Insert -> {
+                            // Сдвиг вправо идёт с конца, чтобы каждый узел прочитал ещё не сдвинутого соседа
+                            for (var i = end; i > position; i--) {
+                                setNode(c, i, step, c.get(i - 1).value(step));
+                            }
+                            setNode(c, position, step, change.getNewValue());
+                            published.add(new Change<>(step, ChangeType.Insert, index, null, change.getNewValue()));
+                            count++;
+                        }
+                        case Update -> {
+                            published.add(new Change<>(step, ChangeType.Update, index, c.get(position).value(step), change.getNewValue()));
+                            c.get(position).update(step, change.getNewValue());
+                        }
+                        case Remove -> {
+                            published.add(new Change<>(step, ChangeType.Remove, index, c.get(position).value(step), null));
+                            for (var i = position; i < end - 1; i++) {
+                                c.get(i).update(step, c.get(i + 1).value(step));
+                            }
+                            count--;
+                        }
+                        case Clear -> {
+                            content.markEpoch(step, c.size());
+                            published.add(new Change<>(step, ChangeType.Clear, null, null, null));
+                            count = 0;
+                        }
+                    }
+                }
+            });
+            content.publishAll(published);
+
+            return new PersistentArray<>(history, content, newCount, step);
+        };
+    }
+
+    /**
+     * Версия массива на заданном шаге модификации.
+     */
+    @Override
+    public PersistentArray<T> version(int modificationStep) {
+        checkModificationStep(modificationStep);
+        return modificationStep == modificationCount ? this
+                : new PersistentArray<>(history, nodes, recalculateCount(modificationStep), modificationStep);
+    }
+
+    /**
+     * Количество элементов версии по индексу длин.
      */
     @Override
     protected int recalculateCount(int modificationStep) {
-        return (int) nodes.getContent()
-                .stream()
-                .filter(n -> n.getModifications().toList()
-                        .stream()
-                        .anyMatch(m -> m.getKey() <= modificationStep)
-                ).count();
+        return lengths().length(modificationStep);
+    }
+
+    // Индекс длин; для содержимого, созданного без него, строится по журналу изменений
+    private SequenceLengthIndex lengths() {
+        var index = nodes.getListener(SequenceLengthIndex.class);
+        if (index == null) {
+            index = new SequenceLengthIndex(changeLog(), nodes.getMaxModification().getValue());
+            nodes.addListener(index);
+        }
+        return index;
+    }
+
+    // Неизменяемое представление версии со случайным доступом
+    private final class ListView extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            return PersistentArray.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return getCount();
+        }
     }
-    
 }
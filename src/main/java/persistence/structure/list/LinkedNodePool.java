@@ -0,0 +1,256 @@
+package persistence.structure.list;
+
+import java.util.Arrays;
+
+/**
+ * Компактный пул узлов двусвязного списка.
+ * Узлы адресуются целочисленными идентификаторами, а история связей и значений
+ * хранится в параллельных массивах примитивов вместо отдельных объектов на каждое изменение.
+ * Номера записей каждого узла лежат подряд в порядке возрастания шагов, поэтому запись,
+ * действующая на шаге, находится двоичным поиском за O(log h), где h — длина истории узла.
+ * Это важно для псевдоузлов головы и хвоста, связи которых меняются при каждой записи в края списка.
+ *
+ * @param <T> Тип значений в списке.
+ */
+public class LinkedNodePool<T> {
+    // Идентификаторы псевдоузлов головы и хвоста
+    public static final int HEAD = 0;
+    public static final int TAIL = 1;
+    // Отсутствие узла или записи
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Начальная длина списка записей узла
+    private static final int NODE_CAPACITY = 2;
+
+    // Записи истории связей: шаг, предыдущий узел, следующий узел
+    private int[] linkStep = new int[INITIAL_CAPACITY];
+    private int[] linkPrev = new int[INITIAL_CAPACITY];
+    private int[] linkNext = new int[INITIAL_CAPACITY];
+    private int linkSize;
+
+    // Записи истории значений: шаг, значение
+    private int[] valueStep = new int[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int valueSize;
+
+    // Номера записей связей и значений каждого узла в порядке возрастания шагов и их количество
+    private int[][] linkRecords = new int[INITIAL_CAPACITY][];
+    private int[] linkCounts = new int[INITIAL_CAPACITY];
+    private int[][] valueRecords = new int[INITIAL_CAPACITY][];
+    private int[] valueCounts = new int[INITIAL_CAPACITY];
+    private int nodeSize;
+
+    /**
+     * Создаёт пул с псевдоузлами головы и хвоста, связанными друг с другом на заданном шаге.
+     *
+     * @param creationStep Шаг создания списка.
+     */
+    public LinkedNodePool(int creationStep) {
+        allocate();
+        allocate();
+        link(HEAD, creationStep, NONE, TAIL);
+        link(TAIL, creationStep, HEAD, NONE);
+    }
+
+    /**
+     * Выделяет новый узел без истории.
+     *
+     * @return Идентификатор узла.
+     */
+    public int allocate() {
+        if (nodeSize == linkCounts.length) {
+            int capacity = nodeSize * 2;
+            linkRecords = Arrays.copyOf(linkRecords, capacity);
+            linkCounts = Arrays.copyOf(linkCounts, capacity);
+            valueRecords = Arrays.copyOf(valueRecords, capacity);
+            valueCounts = Arrays.copyOf(valueCounts, capacity);
+        }
+
+        linkRecords[nodeSize] = new int[NODE_CAPACITY];
+        valueRecords[nodeSize] = new int[NODE_CAPACITY];
+        return nodeSize++;
+    }
+
+    /**
+     * Выделяет новый узел с начальным значением.
+     *
+     * @param step  Шаг создания узла.
+     * @param value Значение узла.
+     * @return Идентификатор узла.
+     */
+    public int allocate(int step, T value) {
+        int id = allocate();
+        setValue(id, step, value);
+        return id;
+    }
+
+    /**
+     * Записывает связи узла на заданном шаге. Повторная запись на том же шаге перезаписывает связи.
+     */
+    public void link(int id, int step, int prev, int next) {
+        int last = linkCounts[id] == 0 ? NONE : linkRecords[id][linkCounts[id] - 1];
+        if (last != NONE && linkStep[last] == step) {
+            linkPrev[last] = prev;
+            linkNext[last] = next;
+            return;
+        }
+
+        if (linkSize == linkStep.length) {
+            int capacity = linkSize * 2;
+            linkStep = Arrays.copyOf(linkStep, capacity);
+            linkPrev = Arrays.copyOf(linkPrev, capacity);
+            linkNext = Arrays.copyOf(linkNext, capacity);
+        }
+
+        linkStep[linkSize] = step;
+        linkPrev[linkSize] = prev;
+        linkNext[linkSize] = next;
+        linkRecords[id] = append(linkRecords[id], linkCounts[id]++, linkSize++);
+    }
+
+    /**
+     * Меняет только ссылку на следующий узел, сохраняя ссылку на предыдущий.
+     */
+    public void linkNext(int id, int step, int next) {
+        link(id, step, prev(id, step), next);
+    }
+
+    /**
+     * Меняет только ссылку на предыдущий узел, сохраняя ссылку на следующий.
+     */
+    public void linkPrev(int id, int step, int prev) {
+        link(id, step, prev, next(id, step));
+    }
+
+    /**
+     * Записывает значение узла на заданном шаге. Повторная запись на том же шаге перезаписывает значение.
+     */
+    public void setValue(int id, int step, T value) {
+        int last = valueCounts[id] == 0 ? NONE : valueRecords[id][valueCounts[id] - 1];
+        if (last != NONE && valueStep[last] == step) {
+            values[last] = value;
+            return;
+        }
+
+        if (valueSize == valueStep.length) {
+            int capacity = valueSize * 2;
+            valueStep = Arrays.copyOf(valueStep, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        valueStep[valueSize] = step;
+        values[valueSize] = value;
+        valueRecords[id] = append(valueRecords[id], valueCounts[id]++, valueSize++);
+    }
+
+    /**
+     * Следующий узел на заданном шаге.
+     *
+     * @return Идентификатор узла или {@link #NONE}.
+     */
+    public int next(int id, int step) {
+        int record = findLink(id, step);
+        return record == NONE ? NONE : linkNext[record];
+    }
+
+    /**
+     * Предыдущий узел на заданном шаге.
+     *
+     * @return Идентификатор узла или {@link #NONE}.
+     */
+    public int prev(int id, int step) {
+        int record = findLink(id, step);
+        return record == NONE ? NONE : linkPrev[record];
+    }
+
+    /**
+     * Значение узла на заданном шаге.
+     */
+    @SuppressWarnings("unchecked")
+    public T value(int id, int step) {
+        int record = find(valueRecords[id], valueCounts[id], valueStep, step);
+        return record == NONE ? null : (T) values[record];
+    }
+
+    /**
+     * Количество выделенных узлов, включая псевдоузлы.
+     */
+    public int nodeCount() {
+        return nodeSize;
+    }
+
+    /**
+     * Количество записей истории связей и значений.
+     */
+    public int recordCount() {
+        return linkSize + valueSize;
+    }
+
+    /**
+     * Создаёт копию пула, содержащую только изменения до заданного шага включительно.
+     * Идентификаторы узлов при копировании сохраняются.
+     *
+     * @param step Последний учитываемый шаг.
+     * @return Новый пул.
+     */
+    @SuppressWarnings("unchecked")
+    public LinkedNodePool<T> truncate(int step) {
+        var copy = new LinkedNodePool<T>();
+        for (var id = 0; id < nodeSize; id++) {
+            copy.allocate();
+        }
+
+        // Записи узла упорядочены по шагам, поэтому копируется их начало до шага включительно
+        for (var id = 0; id < nodeSize; id++) {
+            var records = linkRecords[id];
+            for (var i = 0; i < linkCounts[id] && linkStep[records[i]] <= step; i++) {
+                copy.link(id, linkStep[records[i]], linkPrev[records[i]], linkNext[records[i]]);
+            }
+
+            records = valueRecords[id];
+            for (var i = 0; i < valueCounts[id] && valueStep[records[i]] <= step; i++) {
+                copy.setValue(id, valueStep[records[i]], (T) values[records[i]]);
+            }
+        }
+
+        return copy;
+    }
+
+    // Конструктор пустого пула без псевдоузлов для копирования
+    private LinkedNodePool() {
+    }
+
+    // Поиск записи связей, действующей на заданном шаге
+    private int findLink(int id, int step) {
+        return find(linkRecords[id], linkCounts[id], linkStep, step);
+    }
+
+    // Двоичный поиск последней записи узла с шагом не больше заданного
+    private static int find(int[] records, int count, int[] steps, int step) {
+        int low = 0;
+        int high = count - 1;
+        int found = NONE;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (steps[records[middle]] <= step) {
+                found = records[middle];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return found;
+    }
+
+    // Добавление номера записи в список записей узла с ростом списка
+    private static int[] append(int[] records, int count, int record) {
+        if (count == records.length) {
+            records = Arrays.copyOf(records, count * 2);
+        }
+        records[count] = record;
+        return records;
+    }
+}
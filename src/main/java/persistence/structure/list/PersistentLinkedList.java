@@ -4,123 +4,129 @@ import persistence.base.*;
 
 import java.util.*;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T, DoubleLinkedContent<T>> implements IUndoRedo<PersistentLinkedList<T>> {
+import static persistence.structure.list.LinkedNodePool.HEAD;
+import static persistence.structure.list.LinkedNodePool.TAIL;
 
-    public PersistentLinkedList() {
-        var head = new PersistentNode<>(modificationCount - 1, new DoubleLinkedData<T>(null, null, new PersistentNode<>(-1, null)));
-        var tail = new PersistentNode<>(modificationCount - 1, new DoubleLinkedData<>(null, null, new PersistentNode<T>(-1, null)));
-        head.update(modificationCount, new DoubleLinkedData<>(tail, null, head.value(modificationCount - 1).getValue(), head.value(modificationCount - 1).getId()));
-        tail.update(modificationCount, new DoubleLinkedData<>(null, head, tail.value(modificationCount - 1).getValue(), tail.value(modificationCount - 1).getId()));
-
-        nodes = new PersistentContent<>(new DoubleLinkedContent<>(head, tail), new ModificationCount(modificationCount));
+public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T, LinkedNodePool<T>> implements IUndoRedo<PersistentLinkedList<T>>, IReplayable<Integer, T, PersistentLinkedList<T>>, IRangeHashed {
 
+    public PersistentLinkedList() {
+        nodes = new PersistentContent<>(new LinkedNodePool<>(modificationCount), new ModificationCount(modificationCount));
+        nodes.addListener(new SequenceLengthIndex(changeLog(), modificationCount));
     }
 
-    private PersistentLinkedList(PersistentContent<DoubleLinkedContent<T>> nodes,
+    private PersistentLinkedList(PersistentContent<LinkedNodePool<T>> nodes,
                                  int count,
                                  int modificationCount) {
         super(nodes, count, modificationCount);
     }
 
-    public PersistentLinkedList(PersistentContent<DoubleLinkedContent<T>> nodes,
+    public PersistentLinkedList(PersistentContent<LinkedNodePool<T>> nodes,
                                 int count, int modificationCount,
                                 int start) {
         super(nodes, count, modificationCount, start);
     }
 
+    /**
+     * Количество элементов версии по индексу длин за O(1), без обхода связей.
+     */
     @Override
     protected int recalculateCount(int modificationStep) {
-        return toList(modificationStep).size();
+        return lengths().length(modificationStep);
+    }
+
+    // Индекс длин; для содержимого, созданного без него, строится по журналу изменений
+    private SequenceLengthIndex lengths() {
+        var index = nodes.getListener(SequenceLengthIndex.class);
+        if (index == null) {
+            index = new SequenceLengthIndex(changeLog(), nodes.getMaxModification().getValue());
+            nodes.addListener(index);
+        }
+        return index;
     }
 
     @Override
-    protected PersistentContent<DoubleLinkedContent<T>> reassembleNodes() {
-        var allModifications = new ArrayList<Map.Entry<UUID, Map.Entry<Integer, DoubleLinkedData<T>>>>();
-        var nodeModificationCount = new LinkedHashMap<UUID, Integer>();
-        var current = nodes.getContent().getPseudoHead();
-
-        for (var i = getCount(); i != -2; i--) {
-            var neededModifications = current.getModifications().toList()
-                    .stream()
-                    .filter(m -> m.getKey() <= modificationCount)
-                    .map(m -> Map.entry(m.getValue().getId(), m))
-                    .sorted(Map.Entry.comparingByKey()).toList();
-
-            allModifications.addAll(neededModifications);
-            nodeModificationCount.put(current.value(modificationCount).getId(), neededModifications.size());
-            current = current.value(modificationCount).getNext();
-        }
-        var orderedModifications = new ArrayList<>(allModifications.stream()
-                .collect(Collectors.groupingBy(m -> m.getValue().getKey()))
-                .values()
-                .stream()
-                .flatMap(entries -> entries
-                        .stream()
-                        .sorted((Comparator.comparing(o -> nodeModificationCount.get(o.getKey())))))
-                .toList())
-                .stream()
-                .sorted(Comparator.comparing(o -> o.getValue().getKey()))
-                .collect(Collectors.toList());
-
-        var newNodes = new LinkedHashMap<UUID, PersistentNode<DoubleLinkedData<T>>>();
-        newNodes.put(orderedModifications.get(0).getKey(),
-                new PersistentNode<>(-1,
-                        new DoubleLinkedData<>(null,
-                                null,
-                                new PersistentNode<>(-1, null),
-                                orderedModifications.get(0).getKey())));
-
-
-        orderedModifications.remove(0);
-
-        newNodes.put(orderedModifications.get(0).getKey(),
-                new PersistentNode<>(-1,
-                        new DoubleLinkedData<>(null,
-                                null,
-                                new PersistentNode<>(-1, null),
-                                orderedModifications.get(0).getKey())
-                )
-        );
-
-        orderedModifications.remove(0);
-
-        for (var entry : orderedModifications) {
-            var nodeKey = entry.getKey();
-            var step = entry.getValue().getKey();
-            var nodeValue = entry.getValue().getValue();
-            if (newNodes.containsKey(nodeKey)) {
-                var node = newNodes.get(nodeKey);
-                node.update(step,
-                        new DoubleLinkedData<>(nodeValue.getNext() == null ? null :
-                                newNodes.get(nodeValue.getNext().value(step).getId()),
-                                nodeValue.getPrevious() == null ? null : newNodes.get(nodeValue.getPrevious().value(step).getId()),
-                                node.value(step - 1).getValue().update(step, nodeValue.getValue().value(step)), nodeKey));
-            } else {
-                var newNode = new PersistentNode<>(step,
-                        new DoubleLinkedData<>(newNodes.get(nodeValue.getNext().value(step).getId()),
-                                newNodes.get(nodeValue.getPrevious().value(step).getId()),
-                                new PersistentNode<>(step, nodeValue.getValue().value(step)),
-                                nodeKey)
-                );
-                newNodes.put(nodeKey, newNode);
-            }
+    protected PersistentContent<LinkedNodePool<T>> reassembleNodes() {
+        var newContent = nodes.fork(nodes.getContent().truncate(modificationCount), modificationCount);
+
+        if (nodes.getListener(ListMirror.class) != null) {
+            newContent.addListener(new ListMirror<>(toList(modificationCount), modificationCount));
         }
 
-        var newHead = newNodes.get(nodes.getContent().getPseudoHead().value(modificationCount).getId());
-        var newTail = newNodes.get(nodes.getContent().getPseudoTail().value(modificationCount).getId());
-        return new PersistentContent<>(new DoubleLinkedContent<>(newHead, newTail),
-                new ModificationCount(modificationCount));
+        var hashIndex = nodes.getListener(SequenceHashIndex.class);
+        if (hashIndex != null) {
+            newContent.addListener(hashIndex.fork(modificationCount));
+        }
+        newContent.addListener(lengths().fork(modificationCount));
 
+        return newContent;
     }
 
     public T get(Integer num) {
-        var node = findNode(num);
-        return node == nodes.getContent().getPseudoTail() ? null :
-                node.value(modificationCount).getValue() == null ?
-                        null :
-                        node.value(modificationCount).getValue().value(modificationCount);
+        if (num < 0 || num >= getCount()) {
+            return null;
+        }
+
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.get(num);
+        }
+
+        return nodes.getContent().value(findNode(num), modificationCount);
+    }
+
+    /**
+     * Включает зеркало последней версии: доступ по индексу к последней версии выполняется за O(1),
+     * а более старые версии по-прежнему обходятся по истории связей.
+     */
+    public PersistentLinkedList<T> withHeadMirror() {
+        if (nodes.getListener(ListMirror.class) == null) {
+            var maxModification = nodes.getMaxModification().getValue();
+            nodes.addListener(new ListMirror<>(toList(maxModification), maxModification));
+        }
+
+        return this;
+    }
+
+    /**
+     * Хеш элементов в позициях [from, to) этой версии за O(log n) без обхода связей.
+     * Дерево хешей строится по журналу изменений при первом обращении и дальше поддерживается
+     * для каждой новой версии.
+     */
+    @Override
+    public long contentHash(int from, int to) {
+        Objects.checkFromToIndex(from, to, getCount());
+        var index = nodes.getListener(SequenceHashIndex.class);
+        if (index == null) {
+            index = new SequenceHashIndex(changeLog(), nodes.getMaxModification().getValue());
+            nodes.addListener(index);
+        }
+        return index.hash(modificationCount, from, to);
+    }
+
+    @Override
+    protected Stream<Change<Integer, T>> insertionsAt(int modificationStep, int changeStep) {
+        var values = toList(modificationStep);
+        return IntStream.range(0, values.size())
+                .mapToObj(i -> new Change<>(changeStep, ChangeType.Insert, i, null, values.get(i)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ListMirror<T> headMirror() {
+        ListMirror<T> mirror = nodes.getListener(ListMirror.class);
+        return mirror != null && mirror.getStep() == modificationCount ? mirror : null;
+    }
+
+    private List<T> toList(int modificationStep) {
+        var pool = nodes.getContent();
+        var result = new ArrayList<T>();
+        for (var current = pool.next(HEAD, modificationStep); current != TAIL; current = pool.next(current, modificationStep)) {
+            result.add(pool.value(current, modificationStep));
+        }
+        return result;
     }
 
     public PersistentLinkedList<T> clear() {
@@ -128,14 +134,12 @@ public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T
             return this;
         }
 
-        Function<PersistentContent<DoubleLinkedContent<T>>, PersistentLinkedList<T>> updContent = x -> {
-            x.update(m ->
-            {
-                m.getPseudoHead().update(modificationCount + 1,
-                        new DoubleLinkedData<>(m.getPseudoTail(), null, m.getPseudoHead().value(modificationCount).getValue(), m.getPseudoHead().value(modificationCount).getId()));
-                m.getPseudoTail().update(modificationCount + 1,
-                        new DoubleLinkedData<>(null, m.getPseudoHead(), m.getPseudoTail().value(modificationCount).getValue(), m.getPseudoTail().value(modificationCount).getId()));
+        Function<PersistentContent<LinkedNodePool<T>>, PersistentLinkedList<T>> updContent = x -> {
+            x.update(pool -> {
+                pool.linkNext(HEAD, modificationCount + 1, TAIL);
+                pool.linkPrev(TAIL, modificationCount + 1, HEAD);
             });
+            x.publish(new Change<Integer, T>(modificationCount + 1, ChangeType.Clear, null, null, null));
 
             return new PersistentLinkedList<>(x, 0, modificationCount + 1);
         };
@@ -149,18 +153,22 @@ public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T
     }
 
     public boolean contains(T item) {
-        var current = nodes.getContent().getPseudoHead().value(modificationCount).getNext();
-        for (var i = getCount(); i != 0; i--) {
-            if (current.value(modificationCount).getValue().value(modificationCount).equals(item)) {
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.contains(item);
+        }
+
+        var pool = nodes.getContent();
+        for (var current = pool.next(HEAD, modificationCount); current != TAIL; current = pool.next(current, modificationCount)) {
+            if (Objects.equals(pool.value(current, modificationCount), item)) {
                 return true;
             }
-            current = current.value(modificationCount).getNext();
         }
         return false;
     }
 
     public PersistentLinkedList<T> replace(Integer num, T value) {
-        if (num > getCount()) return this;
+        if (num < 0 || num >= getCount()) return this;
         if (nodes.getMaxModification().getValue() > modificationCount) {
             var newContent = reassembleNodes();
             return replace(newContent, num, value);
@@ -213,136 +221,220 @@ public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T
         return removeFirst(nodes);
     }
 
-    private PersistentLinkedList<T> addFirst(PersistentContent<DoubleLinkedContent<T>> content, T value) {
-        var oldHead = content.getContent().getPseudoHead().value(modificationCount);
-        var oldNextToHead = oldHead.getNext();
-        var oldNextToHeadValue = oldNextToHead.value(modificationCount);
-        var newHead = new PersistentNode<>(modificationCount + 1,
-                new DoubleLinkedData<>(oldHead.getNext(),
-                        content.getContent().getPseudoHead(),
-                        new PersistentNode<>(modificationCount + 1, value)
-                )
-        );
-        content.update(m -> {
-                    oldNextToHead.update(modificationCount + 1,
-                            new DoubleLinkedData<>(oldNextToHeadValue.getNext(),
-                                    newHead,
-                                    oldNextToHeadValue.getValue(),
-                                    oldNextToHeadValue.getId())
-                    );
-                    m.getPseudoHead().update(modificationCount + 1,
-                            new DoubleLinkedData<>(newHead, null, oldHead.getValue(), oldHead.getId()));
-                }
-        );
+    private PersistentLinkedList<T> addFirst(PersistentContent<LinkedNodePool<T>> content, T value) {
+        var step = modificationCount + 1;
+        content.update(pool -> linkFirst(pool, step, value));
+        content.publish(new Change<>(step, ChangeType.Insert, 0, null, value));
 
         return new PersistentLinkedList<>(content, getCount() + 1, modificationCount + 1);
     }
 
-    private PersistentNode<DoubleLinkedData<T>> findNode(int num) {
-        var current = nodes.getContent().getPseudoHead().value(modificationCount).getNext();
-        for (var i = num; i != 0; i--) {
-            current = current.value(modificationCount).getNext();
-        }
-
-        return current;
+    private int findNode(int num) {
+        return nodeAt(nodes.getContent(), modificationCount, num);
     }
 
-
-    private PersistentLinkedList<T> replace(PersistentContent<DoubleLinkedContent<T>> content, int num, T value) {
+    private PersistentLinkedList<T> replace(PersistentContent<LinkedNodePool<T>> content, int num, T value) {
         var node = findNode(num);
-        var nodeValue = node.value(modificationCount);
-        content.update(m ->
-                node.update(modificationCount + 1,
-                        new DoubleLinkedData<>(nodeValue.getNext(),
-                                nodeValue.getPrevious(),
-                                nodeValue.getValue().update(modificationCount + 1, value),
-                                nodeValue.getId())
-                )
-        );
+        var oldValue = content.getContent().value(node, modificationCount);
+        content.update(pool -> pool.setValue(node, modificationCount + 1, value));
+        content.publish(new Change<>(modificationCount + 1, ChangeType.Update, num, oldValue, value));
 
         return new PersistentLinkedList<>(content, getCount(), modificationCount + 1);
     }
 
-    private PersistentLinkedList<T> addLast(PersistentContent<DoubleLinkedContent<T>> content, T value) {
-        var oldTail = content.getContent().getPseudoTail().value(modificationCount);
-        var oldNextToTail = oldTail.getPrevious();
-        var oldNextToTailValue = oldNextToTail.value(modificationCount);
-        var newTail = new PersistentNode<>(modificationCount + 1,
-                new DoubleLinkedData<>(content.getContent().getPseudoTail(),
-                        oldTail.getPrevious(),
-                        new PersistentNode<>(modificationCount + 1, value)
-                )
-        );
-        content.update(m -> {
-                    oldNextToTail.update(modificationCount + 1,
-                            new DoubleLinkedData<>(newTail,
-                                    oldNextToTailValue.getPrevious(),
-                                    oldNextToTailValue.getValue(),
-                                    oldNextToTailValue.getId())
-                    );
-                    m.getPseudoTail().update(modificationCount + 1,
-                            new DoubleLinkedData<>(null, newTail, oldTail.getValue(), oldTail.getId())
-                    );
-                }
-        );
+    private PersistentLinkedList<T> addLast(PersistentContent<LinkedNodePool<T>> content, T value) {
+        var step = modificationCount + 1;
+        content.update(pool -> linkLast(pool, step, value));
+        content.publish(new Change<>(step, ChangeType.Insert, getCount(), null, value));
 
         return new PersistentLinkedList<>(content, getCount() + 1, modificationCount + 1);
     }
 
-    private PersistentLinkedList<T> removeFirst(PersistentContent<DoubleLinkedContent<T>> content) {
-        var oldHead = content.getContent().getPseudoHead();
-        var oldHeadValue = oldHead.value(modificationCount);
-        var oldNextToNextToHead = oldHeadValue.getNext().value(modificationCount).getNext();
-        var oldNextToNextToHeadValue = oldNextToNextToHead.value(modificationCount);
-        content.update(m -> {
-                    oldNextToNextToHead.update(modificationCount + 1,
-                            new DoubleLinkedData<>(oldNextToNextToHeadValue.getNext(),
-                                    oldHead,
-                                    oldNextToNextToHeadValue.getValue(),
-                                    oldNextToNextToHeadValue.getId())
-                    );
-                    oldHead.update(modificationCount + 1,
-                            new DoubleLinkedData<>(oldNextToNextToHead,
-                                    null, oldHeadValue.getValue(),
-                                    oldHeadValue.getId())
-                    );
-                }
-        );
+    private PersistentLinkedList<T> removeFirst(PersistentContent<LinkedNodePool<T>> content) {
+        var step = modificationCount + 1;
+        var oldValue = content.getContent().value(content.getContent().next(HEAD, modificationCount), modificationCount);
+        content.update(pool -> unlinkFirst(pool, step));
+        content.publish(new Change<>(step, ChangeType.Remove, 0, oldValue, null));
+
         return new PersistentLinkedList<>(content, getCount() - 1, modificationCount + 1);
     }
 
-    private PersistentLinkedList<T> removeLast(PersistentContent<DoubleLinkedContent<T>> content) {
-        var oldTail = content.getContent().getPseudoTail();
-        var oldTailValue = oldTail.value(modificationCount);
-        var oldNextToNextToTail = oldTailValue.getPrevious().value(modificationCount).getPrevious();
-        var oldNextToNextToTailValue = oldNextToNextToTail.value(modificationCount);
-        content.update(m -> {
-                    oldNextToNextToTail.update(modificationCount + 1,
-                            new DoubleLinkedData<>(oldTail,
-                                    oldNextToNextToTailValue.getPrevious(),
-                                    oldNextToNextToTailValue.getValue(),
-                                    oldNextToNextToTailValue.getId())
-                    );
-                    oldTail.update(modificationCount,
-                            new DoubleLinkedData<>(null,
-                                    oldNextToNextToTail,
-                                    oldTailValue.getValue(),
-                                    oldTailValue.getId())
-                    );
-                }
-        );
+    private PersistentLinkedList<T> removeLast(PersistentContent<LinkedNodePool<T>> content) {
+        var step = modificationCount + 1;
+        var oldValue = content.getContent().value(content.getContent().prev(TAIL, modificationCount), modificationCount);
+        content.update(pool -> unlinkLast(pool, step));
+        content.publish(new Change<>(step, ChangeType.Remove, getCount() - 1, oldValue, null));
+
         return new PersistentLinkedList<>(content, getCount() - 1, modificationCount + 1);
     }
 
+    // Связи читаются на шаге записи, поэтому каждая операция видит предыдущие записи того же шага.
+    // До первой записи шага чтение на нём совпадает с чтением последней версии содержимого
+    private static <T> void linkFirst(LinkedNodePool<T> pool, int step, T value) {
+        var oldFirst = pool.next(HEAD, step);
+        var newFirst = pool.allocate(step, value);
+        pool.link(newFirst, step, HEAD, oldFirst);
+        pool.linkPrev(oldFirst, step, newFirst);
+        pool.linkNext(HEAD, step, newFirst);
+    }
+
+    private static <T> void linkLast(LinkedNodePool<T> pool, int step, T value) {
+        var oldLast = pool.prev(TAIL, step);
+        var newLast = pool.allocate(step, value);
+        pool.link(newLast, step, oldLast, TAIL);
+        pool.linkNext(oldLast, step, newLast);
+        pool.linkPrev(TAIL, step, newLast);
+    }
+
+    private static <T> void unlinkFirst(LinkedNodePool<T> pool, int step) {
+        var newFirst = pool.next(pool.next(HEAD, step), step);
+        pool.linkPrev(newFirst, step, HEAD);
+        pool.linkNext(HEAD, step, newFirst);
+    }
+
+    private static <T> void unlinkLast(LinkedNodePool<T> pool, int step) {
+        var newLast = pool.prev(pool.prev(TAIL, step), step);
+        pool.linkNext(newLast, step, TAIL);
+        pool.linkPrev(TAIL, step, newLast);
+    }
 
-    private ArrayList<T> toList(int modificationStep) {
-        var newList = new ArrayList<T>();
-        var current = nodes.getContent().getPseudoHead().value(modificationStep).getNext();
-        for (var i = getCount(); i != 0; i--) {
-            newList.add(current.value(modificationStep).getValue().value(modificationStep));
-            current = current.value(modificationStep).getNext();
+    private static <T> int nodeAt(LinkedNodePool<T> pool, int step, int num) {
+        var current = pool.next(HEAD, step);
+        for (var i = num; i != 0; i--) {
+            current = pool.next(current, step);
         }
-        return newList;
+        return current;
+    }
+
+    /**
+     * Подготовка записи нескольких изменений одним шагом. Как и в {@link #apply(Change)},
+     * вставка и удаление допустимы только с концов; удаление из пустого списка, очистка пустого
+     * и замена вне границ пропускаются, как и соответствующие операции. Проверка идёт по длине,
+     * которую задают предыдущие изменения, поэтому ошибка обнаруживается до записи.
+     */
+    @Override
+    public Supplier<PersistentLinkedList<T>> prepare(List<Change<Integer, T>> changes) {
+        var count = getCount();
+        var accepted = new ArrayList<Change<Integer, T>>(changes.size());
+        for (var change : changes) {
+            int index = change.getKey() == null ? 0 : change.getKey();
+            switch (change.getType()) {
+                case Insert -> {
+                    if (index != 0 && index != count) {
+                        throw new IllegalArgumentException("Insertion is only supported at the ends of the list: " + index);
+                    }
+                    count++;
+                }
+                case Remove -> {
+                    if (count == 0) {
+                        continue;
+                    }
+                    if (index != 0 && index != count - 1) {
+                        throw new IllegalArgumentException("Removal is only supported at the ends of the list: " + index);
+                    }
+                    count--;
+                }
+                case Update -> {
+                    if (index < 0 || index >= count) {
+                        continue;
+                    }
+                }
+                case Clear -> {
+                    if (count == 0) {
+                        continue;
+                    }
+                    count = 0;
+                }
+            }
+            accepted.add(change);
+        }
+
+        if (accepted.isEmpty()) {
+            return () -> this;
+        }
+
+        int newCount = count;
+        return () -> {
+            var content = nodes.getMaxModification().getValue() > modificationCount ? reassembleNodes() : nodes;
+            var step = modificationCount + 1;
+            var published = new ArrayList<Change<Integer, T>>(accepted.size());
+            content.update(pool -> {
+                for (var change : accepted) {
+                    int index = change.getKey() == null ? 0 : change.getKey();
+                    switch (change.getType()) {
+                        case Insert -> {
+                            if (index == 0) {
+                                linkFirst(pool, step, change.getNewValue());
+                            } else {
+                                linkLast(pool, step, change.getNewValue());
+                            }
+                            published.add(new Change<>(step, ChangeType.Insert, index, null, change.getNewValue()));
+                        }
+                        case Remove -> {
+                            // При одном элементе первый и последний совпадают
+                            var node = index == 0 ? pool.next(HEAD, step) : pool.prev(TAIL, step);
+                            published.add(new Change<>(step, ChangeType.Remove, index, pool.value(node, step), null));
+                            if (index == 0) {
+                                unlinkFirst(pool, step);
+                            } else {
+                                unlinkLast(pool, step);
+                            }
+                        }
+                        case Update -> {
+                            var node = nodeAt(pool, step, index);
+                            published.add(new Change<>(step, ChangeType.Update, index, pool.value(node, step), change.getNewValue()));
+                            pool.setValue(node, step, change.getNewValue());
+                        }
+                        case Clear -> {
+                            pool.linkNext(HEAD, step, TAIL);
+                            pool.linkPrev(TAIL, step, HEAD);
+                            published.add(new Change<Integer, T>(step, ChangeType.Clear, null, null, null));
+                        }
+                    }
+                }
+            });
+            content.publishAll(published);
+
+            return new PersistentLinkedList<>(content, newCount, step);
+        };
+    }
+
+    /**
+     * Применение опубликованного изменения. Список изменяется только с концов,
+     * поэтому вставка и удаление допустимы лишь по первому и последнему индексу.
+     */
+    @Override
+    public PersistentLinkedList<T> apply(Change<Integer, T> change) {
+        int index = change.getKey() == null ? 0 : change.getKey();
+        return switch (change.getType()) {
+            case Insert -> {
+                if (index == 0) {
+                    yield addFirst(change.getNewValue());
+                }
+                if (index == getCount()) {
+                    yield addLast(change.getNewValue());
+                }
+                throw new IllegalArgumentException("Insertion is only supported at the ends of the list: " + index);
+            }
+            case Remove -> {
+                if (index == 0) {
+                    yield removeFirst();
+                }
+                if (index == getCount() - 1) {
+                    yield removeLast();
+                }
+                throw new IllegalArgumentException("Removal is only supported at the ends of the list: " + index);
+            }
+            case Update -> replace(index, change.getNewValue());
+            case Clear -> clear();
+        };
+    }
+
+    @Override
+    public PersistentLinkedList<T> version(int modificationStep) {
+        checkModificationStep(modificationStep);
+        return modificationStep == modificationCount ? this
+                : new PersistentLinkedList<>(nodes, recalculateCount(modificationStep), modificationStep);
     }
 
     @Override
@@ -367,4 +459,155 @@ public class PersistentLinkedList<T> extends BasePersistentCollection<Integer, T
     public int size() {
         return getCount();
     }
+
+    /**
+     * Первый элемент версии.
+     *
+     * @throws NoSuchElementException если список пуст.
+     */
+    public T getFirst() {
+        if (getCount() == 0) {
+            throw new NoSuchElementException();
+        }
+
+        var pool = nodes.getContent();
+        return pool.value(pool.next(HEAD, modificationCount), modificationCount);
+    }
+
+    /**
+     * Последний элемент версии.
+     *
+     * @throws NoSuchElementException если список пуст.
+     */
+    public T getLast() {
+        if (getCount() == 0) {
+            throw new NoSuchElementException();
+        }
+
+        var pool = nodes.getContent();
+        return pool.value(pool.prev(TAIL, modificationCount), modificationCount);
+    }
+
+    /**
+     * Представление версии в виде неизменяемого последовательного {@link List} без копирования.
+     * Итераторы представления двигаются по связям версии за O(1) на шаг в обе стороны.
+     */
+    public List<T> asList() {
+        return new SequentialView();
+    }
+
+    /**
+     * Обход версии от последнего элемента к первому.
+     */
+    public Iterator<T> descendingIterator() {
+        var iterator = new ViewIterator(getCount());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public T next() {
+                return iterator.previous();
+            }
+        };
+    }
+
+    // Неизменяемое представление версии
+    private final class SequentialView extends AbstractSequentialList<T> {
+        @Override
+        public ListIterator<T> listIterator(int index) {
+            if (index < 0 || index > getCount()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return new ViewIterator(index);
+        }
+
+        @Override
+        public int size() {
+            return getCount();
+        }
+    }
+
+    // Итератор по связям версии; nextNode - узел, который вернёт next()
+    private final class ViewIterator implements ListIterator<T> {
+        private final LinkedNodePool<T> pool = nodes.getContent();
+        private int nextNode;
+        private int nextIndex;
+
+        private ViewIterator(int index) {
+            // Начальная позиция ищется с ближайшего конца
+            if (index <= getCount() / 2) {
+                nextNode = pool.next(HEAD, modificationCount);
+                for (var i = 0; i < index; i++) {
+                    nextNode = pool.next(nextNode, modificationCount);
+                }
+            } else {
+                nextNode = TAIL;
+                for (var i = getCount(); i > index; i--) {
+                    nextNode = pool.prev(nextNode, modificationCount);
+                }
+            }
+            nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < getCount();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var value = pool.value(nextNode, modificationCount);
+            nextNode = pool.next(nextNode, modificationCount);
+            nextIndex++;
+            return value;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public T previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            nextNode = pool.prev(nextNode, modificationCount);
+            nextIndex--;
+            return pool.value(nextNode, modificationCount);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(T value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(T value) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package persistence.structure.map;
+
+import persistence.base.Change;
+import persistence.base.ChangeListener;
+import persistence.base.PersistentBitSet;
+import persistence.base.StepVersions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Версионный индекс живых ключей словаря. Каждый ключ получает постоянный номер слота,
+ * а для каждого шага хранится битовое множество живых слотов, поэтому проверка существования
+ * и количество ключей любой версии не требуют просмотра истории значений.
+ * Как и в дереве ключей, ключи с одинаковым хешем считаются одним ключом.
+ *
+ * @param <TK> Тип ключа.
+ */
+class LiveKeyIndex<TK> implements ChangeListener<TK, Object> {
+    // Номер слота по хешу ключа
+    private final HashMap<Integer, Integer> slots;
+    // Ключ по номеру слота
+    private final ArrayList<TK> keys;
+    // Живые слоты по шагам модификации
+    private final StepVersions<PersistentBitSet> versions;
+
+    LiveKeyIndex(int creationStep) {
+        this(new HashMap<>(), new ArrayList<>(), new StepVersions<>(PersistentBitSet.empty()));
+        versions.extendTo(creationStep);
+    }
+
+    private LiveKeyIndex(HashMap<Integer, Integer> slots, ArrayList<TK> keys, StepVersions<PersistentBitSet> versions) {
+        this.slots = slots;
+        this.keys = keys;
+        this.versions = versions;
+    }
+
+    @Override
+    public void onChange(Change<TK, Object> change) {
+        versions.apply(change.getStep(), live -> switch (change.getType()) {
+            case Insert -> live.set(slot(change.getKey()));
+            case Remove -> live.clear(slots.get(change.getKey().hashCode()));
+            case Update -> live;
+            case Clear -> PersistentBitSet.empty();
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага. Слоты копируются, чтобы ключи ветви
+     * не занимали слоты исходного содержимого.
+     */
+    LiveKeyIndex<TK> fork(int step) {
+        return new LiveKeyIndex<>(new HashMap<>(slots), new ArrayList<>(keys), versions.fork(step));
+    }
+
+    boolean contains(TK key, int step) {
+        var slot = slots.get(key.hashCode());
+        return slot != null && versions.get(step).get(slot);
+    }
+
+    int count(int step) {
+        return versions.get(step).cardinality();
+    }
+
+    /**
+     * Живые ключи версии в порядке слотов, то есть в порядке первого добавления.
+     */
+    List<TK> keys(int step) {
+        var live = versions.get(step);
+        var result = new ArrayList<TK>(live.cardinality());
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            result.add(keys.get(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Живые слоты версии.
+     */
+    PersistentBitSet live(int step) {
+        return versions.get(step);
+    }
+
+    TK key(int slot) {
+        return keys.get(slot);
+    }
+
+    private int slot(TK key) {
+        return slots.computeIfAbsent(key.hashCode(), hash -> {
+            keys.add(key);
+            return keys.size() - 1;
+        });
+    }
+}
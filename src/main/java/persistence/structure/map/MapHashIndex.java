@@ -0,0 +1,53 @@
+package persistence.structure.map;
+
+import persistence.base.Change;
+import persistence.base.ChangeListener;
+import persistence.base.ChangeLog;
+import persistence.base.ContentHash;
+import persistence.base.StepVersions;
+
+/**
+ * Версионный аддитивный хеш содержимого словаря: сумма хешей пар ключ-значение.
+ * Сумма не зависит от порядка ключей, а каждое изменение пересчитывает её за O(1),
+ * поэтому хеш любой версии хранится готовым.
+ */
+class MapHashIndex implements ChangeListener<Object, Object> {
+    // Хеши по шагам модификации
+    private final StepVersions<Long> versions;
+
+    MapHashIndex(ChangeLog<?, ?> changeLog, int lastStep) {
+        this.versions = new StepVersions<>(0L);
+        changeLog.between(0, lastStep).forEach(this::apply);
+        versions.extendTo(lastStep);
+    }
+
+    private MapHashIndex(StepVersions<Long> versions) {
+        this.versions = versions;
+    }
+
+    @Override
+    public void onChange(Change<Object, Object> change) {
+        apply(change);
+    }
+
+    private void apply(Change<?, ?> change) {
+        versions.apply(change.getStep(), hash -> switch (change.getType()) {
+            case Insert -> hash + ContentHash.entry(change.getKey(), change.getNewValue());
+            case Update -> hash - ContentHash.entry(change.getKey(), change.getOldValue())
+                    + ContentHash.entry(change.getKey(), change.getNewValue());
+            case Remove -> hash - ContentHash.entry(change.getKey(), change.getOldValue());
+            case Clear -> 0L;
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага.
+     */
+    MapHashIndex fork(int step) {
+        return new MapHashIndex(versions.fork(step));
+    }
+
+    long hash(int step) {
+        return versions.get(step);
+    }
+}
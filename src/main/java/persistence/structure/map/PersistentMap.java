@@ -2,24 +2,63 @@ package persistence.structure.map;
 
 import persistence.base.*;
 import persistence.base.tree.BinaryTree;
+import persistence.base.tree.ITree;
+import persistence.base.tree.TreapMultimap;
 
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, ITree<TK, PersistentNode<TV>>> implements Iterable<Map.Entry<TK, TV>>, IUndoRedo<PersistentMap<TK, TV>>, IReplayable<TK, TV, PersistentMap<TK, TV>> {
+    // Пустое дерево истории, по образцу которого создаются деревья истории новых узлов
+    private final ITree<Integer, TV> history;
 
-public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, BinaryTree<TK, PersistentNode<TV>>> implements Iterable<Map.Entry<TK, TV>>, IUndoRedo<PersistentMap<TK, TV>> {
     public PersistentMap() {
-        nodes = new PersistentContent<>(new BinaryTree<>(), new ModificationCount(modificationCount));
+        this(new BinaryTree<>());
+    }
+
+    /**
+     * Создание словаря с заданным индексом ключей, например {@link persistence.base.tree.BPlusTree}
+     * для больших наборов ключей.
+     *
+     * @param tree Пустой индекс ключей.
+     */
+    public PersistentMap(ITree<TK, PersistentNode<TV>> tree) {
+        this(tree, new BinaryTree<>());
     }
 
-    private PersistentMap(PersistentContent<BinaryTree<TK, PersistentNode<TV>>> nodes, int count, int modificationCount) {
+    /**
+     * Создание словаря с заданными индексом ключей и деревом истории значений каждого ключа,
+     * например {@link persistence.base.tree.ArrayBinaryTree}, не создающим объект на каждое изменение.
+     *
+     * @param tree    Пустой индекс ключей.
+     * @param history Пустое дерево истории; деревья новых узлов создаются через {@link ITree#createEmpty()}.
+     */
+    public PersistentMap(ITree<TK, PersistentNode<TV>> tree, ITree<Integer, TV> history) {
+        if (tree.size() != 0 || history.size() != 0) {
+            throw new IllegalArgumentException("Key index and history tree must be empty");
+        }
+
+        this.history = history;
+        nodes = new PersistentContent<>(tree, new ModificationCount(modificationCount));
+        nodes.addListener(new LiveKeyIndex<TK>(modificationCount));
+    }
+
+    private PersistentMap(ITree<Integer, TV> history, PersistentContent<ITree<TK, PersistentNode<TV>>> nodes, int count, int modificationCount) {
         super(nodes, count, modificationCount);
+        this.history = history;
     }
 
-    protected PersistentContent<BinaryTree<TK, PersistentNode<TV>>> reassembleNodes() {
-        var newContent = new PersistentContent<>(
-                new BinaryTree<TK, PersistentNode<TV>>(),
-                new ModificationCount(modificationCount)
-        );
+    // Узел с историей того же вида, что и у остальных узлов словаря
+    private PersistentNode<TV> newNode(int step, TV value) {
+        return new PersistentNode<>(history.createEmpty(), step, value);
+    }
+
+    protected PersistentContent<ITree<TK, PersistentNode<TV>>> reassembleNodes() {
+        var newContent = nodes.fork(nodes.getContent().createEmpty(), modificationCount);
 
         var allModifications = new ArrayList<Map.Entry<TK, Map.Entry<Integer, TV>>>();
 
@@ -44,39 +83,64 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
             newContent.update(c -> {
                 var node = c.get(nodeKey);
                 if (node == null) {
-                    c.insert(nodeKey, new PersistentNode<>(step, nodeVal));
+                    c.insert(nodeKey, newNode(step, nodeVal));
                 } else {
                     node.update(step, nodeVal);
                 }
             });
         }
 
+        newContent.getMaxModification().setValue(modificationCount);
+        newContent.addListener(liveKeys().fork(modificationCount));
+        for (SecondaryIndex<?, ?, ?> index : nodes.getListeners(SecondaryIndex.class)) {
+            newContent.addListener(index.fork(modificationCount));
+        }
+        var hashIndex = nodes.getListener(MapHashIndex.class);
+        if (hashIndex != null) {
+            newContent.addListener(hashIndex.fork(modificationCount));
+        }
+
+        if (nodes.getListener(MapMirror.class) != null) {
+            newContent.addListener(new MapMirror<>(materialize(), modificationCount));
+        }
+
         return newContent;
     }
 
-    private void implAdd(PersistentContent<BinaryTree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key, TV value) {
-        nodes.update(c -> c.insert(key, new PersistentNode<>(modificationCount + 1, value)));
+    private void implAdd(PersistentContent<ITree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key, TV value) {
+        nodes.update(c -> {
+            var node = c.get(key);
+            if (node == null) {
+                c.insert(key, newNode(modificationCount + 1, value));
+            } else {
+                node.update(modificationCount + 1, value); // Ключ возвращается после удаления, история сохраняется
+            }
+        });
+        nodes.publish(new Change<>(modificationCount + 1, ChangeType.Insert, key, null, value));
     }
 
-    private void implRemove(PersistentContent<BinaryTree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key) {
+    private void implRemove(PersistentContent<ITree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key) {
+        var oldValue = nodes.getContent().get(key).value(modificationCount);
         nodes.update(c -> c.get(key).update(modificationCount + 1, null));
+        nodes.publish(new Change<>(modificationCount + 1, ChangeType.Remove, key, oldValue, null));
     }
 
-    private void implClear(PersistentContent<BinaryTree<TK, PersistentNode<TV>>> nodes, int modificationCount) {
+    // Очистка за O(1): узлы не трогаются, индекс живых ключей получает пустую версию
+    private void implClear(PersistentContent<ITree<TK, PersistentNode<TV>>> nodes, int modificationCount) {
         nodes.update(c -> {
-            for (var keyValuePair : c.toList()) {
-                keyValuePair.getValue().update(modificationCount + 1, null);
-            }
+            // Узлы не меняются: очищенные ключи скрывает индекс живых ключей
         });
+        nodes.publish(new Change<TK, TV>(modificationCount + 1, ChangeType.Clear, null, null, null));
     }
 
-    private void implReplace(PersistentContent<BinaryTree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key, TV value) {
+    private void implReplace(PersistentContent<ITree<TK, PersistentNode<TV>>> nodes, int modificationCount, TK key, TV value) {
+        var oldValue = nodes.getContent().get(key).value(modificationCount);
         nodes.update(c -> c.get(key).update(modificationCount + 1, value));
+        nodes.publish(new Change<>(modificationCount + 1, ChangeType.Update, key, oldValue, value));
     }
 
     public PersistentMap<TK, TV> add(TK key, TV value) {
-        var tryNode = nodes.getContent().get(key);
-        if (tryNode != null && tryNode.getModifications().toList().stream().anyMatch(m -> m.getKey() <= modificationCount)) {
+        if (contains(key)) {
             throw new IllegalArgumentException("Such a key is already exists!");
         }
 
@@ -84,17 +148,16 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
             var res = reassembleNodes();
             implAdd(res, modificationCount, key, value);
 
-            return new PersistentMap<>(res, getCount() + 1, modificationCount + 1);
+            return new PersistentMap<>(history, res, getCount() + 1, modificationCount + 1);
         }
 
         implAdd(nodes, modificationCount, key, value);
 
-        return new PersistentMap<>(nodes, getCount() + 1, modificationCount + 1);
+        return new PersistentMap<>(history, nodes, getCount() + 1, modificationCount + 1);
     }
 
     public PersistentMap<TK, TV> remove(TK key) {
-        var tryNode = nodes.getContent().get(key);
-        if (tryNode == null || tryNode.getModifications().toList().stream().allMatch(m -> m.getKey() > modificationCount)) {
+        if (!contains(key)) {
             return this;
         }
 
@@ -102,12 +165,12 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
             var res = reassembleNodes();
             implRemove(res, modificationCount, key);
 
-            return new PersistentMap<>(res, getCount() - 1, modificationCount + 1);
+            return new PersistentMap<>(history, res, getCount() - 1, modificationCount + 1);
         }
 
         implRemove(nodes, modificationCount, key);
 
-        return new PersistentMap<>(nodes, getCount() - 1, modificationCount + 1);
+        return new PersistentMap<>(history, nodes, getCount() - 1, modificationCount + 1);
     }
 
     public PersistentMap<TK, TV> clear() {
@@ -115,17 +178,16 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
             var res = reassembleNodes();
             implClear(res, modificationCount);
 
-            return new PersistentMap<>(res, 0, modificationCount + 1);
+            return new PersistentMap<>(history, res, 0, modificationCount + 1);
         }
 
         implClear(nodes, modificationCount);
 
-        return new PersistentMap<>(nodes, 0, modificationCount + 1);
+        return new PersistentMap<>(history, nodes, 0, modificationCount + 1);
     }
 
     public PersistentMap<TK, TV> replace(TK key, TV value) {
-        var tryNode = nodes.getContent().get(key);
-        if (tryNode == null || tryNode.getModifications().toList().stream().allMatch(m -> m.getKey() > modificationCount)) {
+        if (!contains(key)) {
             throw new IllegalArgumentException("Such a key does not exists!");
         }
 
@@ -133,66 +195,480 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
             var res = reassembleNodes();
             implReplace(res, modificationCount, key, value);
 
-            return new PersistentMap<>(res, getCount(), modificationCount + 1);
+            return new PersistentMap<>(history, res, getCount(), modificationCount + 1);
         }
 
         implReplace(nodes, modificationCount, key, value);
 
-        return new PersistentMap<>(nodes, getCount(), modificationCount + 1);
+        return new PersistentMap<>(history, nodes, getCount(), modificationCount + 1);
+    }
+
+    /**
+     * Изменение вложенной персистентной коллекции одним шагом словаря. Словарь хранит ссылку
+     * на новую версию вложенной коллекции, поэтому отмена и переход к любой версии словаря
+     * возвращают и вложенную коллекцию к её версии на том шаге.
+     * После такой отмены вложенная версия уже не последняя в своём содержимом, и первое её изменение
+     * ответвляет вложенное содержимое за O(размер вложенной истории), как и запись в старую версию
+     * самого словаря. Следующие изменения идут в новую ветвь и снова стоят как обычные записи.
+     *
+     * @param key    Ключ вложенной коллекции.
+     * @param update Изменение, возвращающее новую версию вложенной коллекции.
+     * @return Новая версия или этот же словарь, если изменение вернуло ту же версию.
+     */
+    public PersistentMap<TK, TV> updateNested(TK key, UnaryOperator<TV> update) {
+        if (!contains(key)) {
+            throw new IllegalArgumentException("Such a key does not exists!");
+        }
+
+        var inner = get(key);
+        var updated = update.apply(inner);
+        return updated == inner ? this : replace(key, updated);
+    }
+
+    /**
+     * Изменение вложенной коллекции с её созданием, если ключа нет. Создание и изменение
+     * выполняются одним шагом словаря.
+     *
+     * @param key    Ключ вложенной коллекции.
+     * @param empty  Пустая вложенная коллекция для отсутствующего ключа.
+     * @param update Изменение, возвращающее новую версию вложенной коллекции.
+     */
+    public PersistentMap<TK, TV> updateNested(TK key, TV empty, UnaryOperator<TV> update) {
+        return contains(key) ? updateNested(key, update) : add(key, update.apply(empty));
+    }
+
+    /**
+     * Ответвление этой версии в именованную ветвь. Ветвь разделяет с исходным содержимым
+     * журнал изменений до этого шага, а её изменения не видны другим ветвям.
+     *
+     * @param name Имя новой ветви.
+     * @return Голова новой ветви, равная этой версии.
+     */
+    public PersistentMap<TK, TV> fork(String name) {
+        return new PersistentMap<>(history, forkBranch(name), getCount(), modificationCount);
+    }
+
+    /**
+     * Последняя версия ветви с заданным именем.
+     */
+    public PersistentMap<TK, TV> checkout(String name) {
+        var content = branchContent(name);
+        var head = new PersistentMap<>(history, content, 0, content.getMaxModification().getValue());
+        head.setCount(head.recalculateCount(head.modificationCount));
+        return head;
+    }
+
+    /**
+     * Трёхстороннее слияние другой версии в эту. Из журналов обеих сторон берутся ключи,
+     * изменённые после общего предка, поэтому время пропорционально количеству этих изменений,
+     * а не размеру словаря. Ключ, изменённый только другой стороной, получает её значение;
+     * ключ, по-разному изменённый обеими сторонами, разрешается через {@code resolver}.
+     * Все изменения результата записываются одним шагом этой ветви, поэтому слияние отменяется
+     * одной отменой, а подписчики получают его одним шагом без промежуточных состояний.
+     *
+     * @param other    Вливаемая версия с общей историей.
+     * @param resolver Разрешение конфликтов.
+     * @return Результат слияния или эта же версия, если слияние ничего не меняет.
+     * @throws IllegalArgumentException если у версий нет общей истории.
+     */
+    public PersistentMap<TK, TV> merge(PersistentMap<TK, TV> other, MergeResolver<TK, TV> resolver) {
+        int base = commonAncestor(other);
+        var ancestor = version(base);
+        var ours = changedKeys(base);
+        var changes = new ArrayList<Change<TK, TV>>();
+
+        for (var key : other.changedKeys(base)) {
+            boolean theirsPresent = other.contains(key);
+            var theirs = other.get(key);
+            boolean oursPresent = contains(key);
+            var value = get(key);
+            if (theirsPresent == oursPresent && Objects.equals(theirs, value)) {
+                continue;
+            }
+
+            boolean present = theirsPresent;
+            var merged = theirs;
+            if (ours.contains(key)) {
+                merged = resolver.resolve(key, ancestor.get(key), value, theirs);
+                present = merged != null;
+            }
+
+            if (!present) {
+                changes.add(new Change<>(0, ChangeType.Remove, key, null, null));
+            } else if (oursPresent) {
+                if (!Objects.equals(value, merged)) {
+                    changes.add(new Change<>(0, ChangeType.Update, key, null, merged));
+                }
+            } else {
+                changes.add(new Change<>(0, ChangeType.Insert, key, null, merged));
+            }
+        }
+
+        return applyStep(changes);
+    }
+
+    // Ключи, изменённые после заданного шага; очистка затрагивает все ключи версии перед ней
+    private Set<TK> changedKeys(int step) {
+        var keys = new LinkedHashSet<TK>();
+        changeLog().between(step, modificationCount).forEach(c -> {
+            if (c.getType() == ChangeType.Clear) {
+                keys.addAll(version(c.getStep() - 1).keySet());
+            } else {
+                keys.add(c.getKey());
+            }
+        });
+        return keys;
     }
 
     public TV get(TK key) {
-        var node = nodes.getContent().get(key);
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.get(key);
+        }
+
+        var cache = nodes.getVersionCache();
+        if (cache != null) {
+            Map<TK, TV> snapshot = cache.peek(nodes, modificationCount);
+            if (snapshot != null) {
+                return snapshot.get(key);
+            }
+        }
+
+        // Значения удалённых ключей не разрешаются
+        return contains(key) ? nodes.getContent().get(key).value(modificationCount) : null;
+    }
+
+    /**
+     * Проверка существования ключа в этой версии по индексу живых ключей, без просмотра истории значений.
+     */
+    public boolean contains(TK key) {
+        return liveKeys().contains(key, modificationCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LiveKeyIndex<TK> liveKeys() {
+        return nodes.getListener(LiveKeyIndex.class);
+    }
+
+    /**
+     * Включает зеркало последней версии: чтения последней версии выполняются по {@link HashMap},
+     * а более старые версии по-прежнему разрешаются через историю узлов.
+     */
+    public PersistentMap<TK, TV> withHeadMirror() {
+        if (nodes.getListener(MapMirror.class) == null) {
+            var maxModification = nodes.getMaxModification().getValue();
+            var head = new PersistentMap<>(history, nodes, recalculateCount(maxModification), maxModification);
+            nodes.addListener(new MapMirror<>(head.materialize(), maxModification));
+        }
+
+        return this;
+    }
+
+    /**
+     * Подключает кэш материализованных версий. Кэш общий для всех версий этого содержимого
+     * и может разделяться между несколькими коллекциями.
+     */
+    public PersistentMap<TK, TV> withVersionCache(VersionCache cache) {
+        nodes.setVersionCache(cache);
+        return this;
+    }
+
+    /**
+     * Подключает вторичный индекс по атрибуту значений. Индекс строится по журналу изменений,
+     * поэтому сразу доступен для всех существующих версий, и далее обновляется на том же шаге,
+     * что и словарь. Индекс определяется экземпляром функции извлечения атрибута.
+     *
+     * @param extractor  Функция извлечения атрибута из значения.
+     * @param comparator Порядок атрибутов.
+     */
+    public <A> PersistentMap<TK, TV> withIndex(Function<? super TV, ? extends A> extractor, Comparator<? super A> comparator) {
+        if (secondaryIndex(extractor) == null) {
+            nodes.addListener(new SecondaryIndex<>(extractor, comparator, changeLog(), nodes.getMaxModification().getValue()));
+        }
+
+        return this;
+    }
+
+    /**
+     * Подключает несколько индексов с естественным порядком атрибутов.
+     * Индексы строятся параллельно: каждый независимо воспроизводит журнал изменений.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PersistentMap<TK, TV> withIndexes(List<? extends Function<? super TV, ? extends Comparable<?>>> extractors) {
+        var log = changeLog();
+        var lastStep = nodes.getMaxModification().getValue();
+        extractors.stream()
+                .distinct()
+                .filter(e -> secondaryIndex(e) == null)
+                .toList()
+                .parallelStream()
+                .map(e -> new SecondaryIndex<TK, TV, Comparable>((Function) e, Comparator.naturalOrder(), log, lastStep))
+                .toList()
+                .forEach(nodes::addListener);
+
+        return this;
+    }
+
+    /**
+     * Ленивый обход ключей этой версии, значения которых имеют заданный атрибут, за O(log n + k).
+     *
+     * @throws IllegalStateException если индекс для функции не подключён.
+     */
+    public <A> Iterable<TK> keysWhere(Function<? super TV, ? extends A> extractor, A attribute) {
+        TreapMultimap<A, TK> multimap = indexAt(extractor);
+        return () -> multimap.get(attribute);
+    }
+
+    /**
+     * Ленивый обход пар «атрибут — ключ» этой версии с атрибутами из диапазона [from, to) в порядке атрибутов.
+     *
+     * @throws IllegalStateException если индекс для функции не подключён.
+     */
+    public <A> Iterable<Map.Entry<A, TK>> keysInRange(Function<? super TV, ? extends A> extractor, A from, A to) {
+        TreapMultimap<A, TK> multimap = indexAt(extractor);
+        return () -> multimap.range(from, true, to, false);
+    }
+
+    // Мультисловарь индекса на шаге этой версии
+    @SuppressWarnings("unchecked")
+    private <A> TreapMultimap<A, TK> indexAt(Function<?, ?> extractor) {
+        var index = secondaryIndex(extractor);
+        if (index == null) {
+            throw new IllegalStateException("No secondary index for the extractor");
+        }
+
+        return ((SecondaryIndex<TK, TV, A>) index).at(modificationCount);
+    }
+
+    /**
+     * Аддитивный хеш содержимого этой версии за O(1): сумма хешей пар ключ-значение,
+     * не зависящая от порядка ключей. Хеши строятся по журналу изменений при первом обращении
+     * и дальше поддерживаются для каждой новой версии.
+     */
+    public long contentHash() {
+        var index = nodes.getListener(MapHashIndex.class);
+        if (index == null) {
+            index = new MapHashIndex(changeLog(), nodes.getMaxModification().getValue());
+            nodes.addListener(index);
+        }
+        return index.hash(modificationCount);
+    }
+
+    /**
+     * Сравнение содержимого. Различие количества ключей или хешей отвечает за O(1) без обхода словарей,
+     * а совпадение хешей только подсказывает равенство и подтверждается поиском каждой пары в другом словаре.
+     */
+    public boolean contentEquals(PersistentMap<TK, TV> other) {
+        return getCount() == other.getCount() && contentHash() == other.contentHash() && asMap().equals(other.asMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private SecondaryIndex<TK, TV, ?> secondaryIndex(Function<?, ?> extractor) {
+        for (SecondaryIndex<?, ?, ?> index : nodes.getListeners(SecondaryIndex.class)) {
+            if (index.getExtractor() == extractor) {
+                return (SecondaryIndex<TK, TV, ?>) index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Снимок версии из кэша или null, если кэш не подключён.
+     */
+    private Map<TK, TV> cachedSnapshot() {
+        var cache = nodes.getVersionCache();
+        return cache == null ? null : cache.get(nodes, modificationCount, () -> Collections.unmodifiableMap(materialize()));
+    }
+
+    @Override
+    protected Stream<Change<TK, TV>> insertionsAt(int modificationStep, int changeStep) {
+        var values = new PersistentMap<>(history, nodes, 0, modificationStep).materialize();
+        return values.entrySet().stream()
+                .map(e -> new Change<>(changeStep, ChangeType.Insert, e.getKey(), null, e.getValue()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MapMirror<TK, TV> headMirror() {
+        MapMirror<TK, TV> mirror = nodes.getListener(MapMirror.class);
+        return mirror != null && mirror.getStep() == modificationCount ? mirror : null;
+    }
 
-        return node == null
-                ? null
-                : node.getModifications().findNearestLess(modificationCount);
+    private Map<TK, TV> materialize() {
+        var result = new HashMap<TK, TV>();
+        var tree = nodes.getContent();
+        for (var key : liveKeys().keys(modificationCount)) {
+            result.put(key, tree.get(key).value(modificationCount));
+        }
+        return result;
+    }
+
+    /**
+     * Представление версии в виде неизменяемого {@link Map} без копирования.
+     * Чтение по ключу разрешается через индекс, а {@code keySet}, {@code values} и {@code entrySet}
+     * лениво обходят живые ключи этой версии.
+     */
+    public Map<TK, TV> asMap() {
+        return new MapView();
     }
 
     public Set<TK> keySet() {
-        return nodes.getContent().
-                toList().
-                stream().
-                filter(k -> k.getValue().getModifications().
-                        toList().
-                        stream().
-                        anyMatch(m -> m.getKey() <= modificationCount)
-                ).
-                map(Map.Entry::getKey).
-                collect(Collectors.toSet());
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.keys();
+        }
+
+        var snapshot = cachedSnapshot();
+        if (snapshot != null) {
+            return new HashSet<>(snapshot.keySet());
+        }
+
+        return new HashSet<>(liveKeys().keys(modificationCount));
     }
 
 
     public Set<TV> valueSet() {
-        return nodes.getContent().
-                toList().
-                stream().
-                filter(k -> k.getValue().getModifications().
-                        toList().
-                        stream().
-                        anyMatch(m -> m.getKey() <= modificationCount)
-                ).
-                map(k -> k.getValue().value(modificationCount)).
-                collect(Collectors.toSet());
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.entries().stream().map(Map.Entry::getValue).collect(Collectors.toSet());
+        }
+
+        var snapshot = cachedSnapshot();
+        if (snapshot != null) {
+            return new HashSet<>(snapshot.values());
+        }
+
+        var tree = nodes.getContent();
+        return liveKeys().keys(modificationCount).stream()
+                .map(k -> tree.get(k).value(modificationCount))
+                .collect(Collectors.toSet());
     }
 
     public Iterator<Map.Entry<TK, TV>> iterator() {
-        return nodes.getContent().toList().stream()
-                .filter(k ->
-                        k.getValue().getModifications().toList().stream().anyMatch(m -> m.getKey() <= modificationCount))
-                .map(k ->
-                        Map.entry(k.getKey(), k.getValue().value(modificationCount))).toList().iterator();
+        var mirror = headMirror();
+        if (mirror != null) {
+            return mirror.entries().iterator();
+        }
+
+        var snapshot = cachedSnapshot();
+        if (snapshot != null) {
+            return snapshot.entrySet().iterator();
+        }
+
+        return new EntryIterator();
+    }
+
+    @Override
+    public PersistentMap<TK, TV> apply(Change<TK, TV> change) {
+        return switch (change.getType()) {
+            case Insert -> add(change.getKey(), change.getNewValue());
+            case Update -> replace(change.getKey(), change.getNewValue());
+            case Remove -> remove(change.getKey());
+            case Clear -> clear();
+        };
+    }
+
+    /**
+     * Подготовка записи нескольких изменений одним шагом. Присутствие ключей проверяется
+     * по наложению поверх этой версии, поэтому содержимое не меняется до записи;
+     * удаление отсутствующего ключа пропускается, как и в {@link #remove(Object)}.
+     */
+    @Override
+    public Supplier<PersistentMap<TK, TV>> prepare(List<Change<TK, TV>> changes) {
+        var present = new HashMap<TK, Boolean>();
+        var cleared = false;
+        var count = getCount();
+        var accepted = new ArrayList<Change<TK, TV>>(changes.size());
+        for (var change : changes) {
+            var key = change.getKey();
+            boolean exists = change.getType() != ChangeType.Clear
+                    && (present.containsKey(key) ? present.get(key) : !cleared && contains(key));
+            switch (change.getType()) {
+                case Insert -> {
+                    if (exists) {
+                        throw new IllegalArgumentException("Such a key is already exists!");
+                    }
+                    present.put(key, true);
+                    count++;
+                }
+                case Update -> {
+                    if (!exists) {
+                        throw new IllegalArgumentException("Such a key does not exists!");
+                    }
+                }
+                case Remove -> {
+                    if (!exists) {
+                        continue;
+                    }
+                    present.put(key, false);
+                    count--;
+                }
+                case Clear -> {
+                    present.clear();
+                    cleared = true;
+                    count = 0;
+                }
+            }
+            accepted.add(change);
+        }
+
+        if (accepted.isEmpty()) {
+            return () -> this;
+        }
+
+        int newCount = count;
+        return () -> {
+            var content = nodes.getMaxModification().getValue() > modificationCount ? reassembleNodes() : nodes;
+            var step = modificationCount + 1;
+            var published = new ArrayList<Change<TK, TV>>(accepted.size());
+            // Узлы читаются на шаге записи, поэтому каждое изменение видит предыдущие изменения шага
+            content.update(c -> {
+                for (var change : accepted) {
+                    var key = change.getKey();
+                    var node = key == null ? null : c.get(key);
+                    switch (change.getType()) {
+                        case Insert -> {
+                            if (node == null) {
+                                c.insert(key, newNode(step, change.getNewValue()));
+                            } else {
+                                node.update(step, change.getNewValue());
+                            }
+                            published.add(new Change<>(step, ChangeType.Insert, key, null, change.getNewValue()));
+                        }
+                        case Update -> {
+                            published.add(new Change<>(step, ChangeType.Update, key, node.value(step), change.getNewValue()));
+                            node.update(step, change.getNewValue());
+                        }
+                        case Remove -> {
+                            published.add(new Change<>(step, ChangeType.Remove, key, node.value(step), null));
+                            node.update(step, null);
+                        }
+                        case Clear -> published.add(new Change<>(step, ChangeType.Clear, null, null, null));
+                    }
+                }
+            });
+            content.publishAll(published);
+
+            return new PersistentMap<>(history, content, newCount, step);
+        };
+    }
+
+    @Override
+    public PersistentMap<TK, TV> version(int modificationStep) {
+        checkModificationStep(modificationStep);
+        return modificationStep == modificationCount ? this
+                : new PersistentMap<>(history, nodes, recalculateCount(modificationStep), modificationStep);
     }
 
     public PersistentMap<TK, TV> undo() {
-        return modificationCount == startModificationCount ? this : new PersistentMap<>(nodes,
+        return modificationCount == startModificationCount ? this : new PersistentMap<>(history, nodes,
                 recalculateCount(modificationCount - 1), modificationCount - 1);
     }
 
     public PersistentMap<TK, TV> redo() {
         return modificationCount == nodes.getMaxModification().getValue()
                 ? this
-                : new PersistentMap<>(
+                : new PersistentMap<>(history,
                 nodes,
                 recalculateCount(modificationCount + 1),
                 modificationCount + 1
@@ -200,11 +676,69 @@ public class PersistentMap<TK, TV> extends BasePersistentCollection<TK, TV, Bina
     }
 
     protected int recalculateCount(int modificationStep) {
-        return (int) nodes.getContent().toList()
-                .stream()
-                .filter(n -> n.getValue().getModifications().toList()
-                        .stream()
-                        .anyMatch(m -> m.getKey() <= modificationStep))
-                .count();
+        return liveKeys().count(modificationStep);
+    }
+
+    // Неизменяемое представление версии
+    private final class MapView extends AbstractMap<TK, TV> {
+        private Set<Map.Entry<TK, TV>> entries;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public TV get(Object key) {
+            return key == null ? null : PersistentMap.this.get((TK) key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean containsKey(Object key) {
+            return key != null && contains((TK) key);
+        }
+
+        @Override
+        public int size() {
+            return getCount();
+        }
+
+        @Override
+        public Set<Map.Entry<TK, TV>> entrySet() {
+            if (entries == null) {
+                entries = new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<TK, TV>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return getCount();
+                    }
+                };
+            }
+            return entries;
+        }
+    }
+
+    // Ленивый обход живых слотов версии
+    private final class EntryIterator implements Iterator<Map.Entry<TK, TV>> {
+        private final LiveKeyIndex<TK> index = liveKeys();
+        private final PersistentBitSet live = index.live(modificationCount);
+        private int slot = live.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+            return slot >= 0;
+        }
+
+        @Override
+        public Map.Entry<TK, TV> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var key = index.key(slot);
+            slot = live.nextSetBit(slot + 1);
+            return new AbstractMap.SimpleImmutableEntry<>(key, nodes.getContent().get(key).value(modificationCount));
+        }
     }
 }
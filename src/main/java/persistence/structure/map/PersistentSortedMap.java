@@ -0,0 +1,278 @@
+package persistence.structure.map;
+
+import persistence.base.*;
+import persistence.base.tree.PersistentTreap;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Персистентный словарь, упорядоченный компаратором.
+ * Каждая версия хранит собственный корень неизменяемого декартова дерева, поэтому поиск соседних ключей
+ * и обход диапазонов любой версии выполняются за O(log n + k) без пересборки истории.
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ */
+public class PersistentSortedMap<TK, TV> extends RootPerStepCollection<TK, TV, PersistentTreap<TK, TV>, PersistentSortedMap<TK, TV>> implements Iterable<Map.Entry<TK, TV>>, IReplayable<TK, TV, PersistentSortedMap<TK, TV>> {
+
+    /**
+     * Словарь с естественным порядком ключей.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentSortedMap() {
+        this((Comparator<? super TK>) Comparator.naturalOrder());
+    }
+
+    public PersistentSortedMap(Comparator<? super TK> comparator) {
+        super(new PersistentTreap<>(comparator));
+    }
+
+    private PersistentSortedMap(PersistentContent<List<PersistentTreap<TK, TV>>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentSortedMap<TK, TV> create(PersistentContent<List<PersistentTreap<TK, TV>>> nodes, int count, int modificationCount) {
+        return new PersistentSortedMap<>(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(PersistentTreap<TK, TV> root) {
+        return root.size();
+    }
+
+    public PersistentSortedMap<TK, TV> add(TK key, TV value) {
+        var root = root();
+        if (root.containsKey(key)) {
+            throw new IllegalArgumentException("Such a key is already exists!");
+        }
+
+        return commit(root.put(key, value), new Change<>(modificationCount + 1, ChangeType.Insert, key, null, value));
+    }
+
+    @Override
+    public PersistentSortedMap<TK, TV> replace(TK key, TV value) {
+        var root = root();
+        if (!root.containsKey(key)) {
+            throw new IllegalArgumentException("Such a key does not exists!");
+        }
+
+        return commit(root.put(key, value), new Change<>(modificationCount + 1, ChangeType.Update, key, root.get(key), value));
+    }
+
+    /**
+     * Изменение вложенной персистентной коллекции одним шагом словаря.
+     *
+     * @return Новая версия или этот же словарь, если изменение вернуло ту же версию.
+     * @see PersistentMap#updateNested(Object, UnaryOperator)
+     */
+    public PersistentSortedMap<TK, TV> updateNested(TK key, UnaryOperator<TV> update) {
+        var root = root();
+        if (!root.containsKey(key)) {
+            throw new IllegalArgumentException("Such a key does not exists!");
+        }
+
+        var inner = root.get(key);
+        var updated = update.apply(inner);
+        return updated == inner ? this : replace(key, updated);
+    }
+
+    public PersistentSortedMap<TK, TV> remove(TK key) {
+        var root = root();
+        if (!root.containsKey(key)) {
+            return this;
+        }
+
+        return commit(root.remove(key), new Change<>(modificationCount + 1, ChangeType.Remove, key, root.get(key), null));
+    }
+
+    public PersistentSortedMap<TK, TV> clear() {
+        return commit(root().clear(), new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    @Override
+    public TV get(TK key) {
+        return root().get(key);
+    }
+
+    public boolean containsKey(TK key) {
+        return root().containsKey(key);
+    }
+
+    /**
+     * Наибольший ключ, не больший заданного, или null.
+     */
+    public TK floorKey(TK key) {
+        return root().floorKey(key, true);
+    }
+
+    /**
+     * Наименьший ключ, не меньший заданного, или null.
+     */
+    public TK ceilingKey(TK key) {
+        return root().ceilingKey(key, true);
+    }
+
+    /**
+     * Наибольший ключ, строго меньший заданного, или null.
+     */
+    public TK lowerKey(TK key) {
+        return root().floorKey(key, false);
+    }
+
+    /**
+     * Наименьший ключ, строго больший заданного, или null.
+     */
+    public TK higherKey(TK key) {
+        return root().ceilingKey(key, false);
+    }
+
+    /**
+     * @throws NoSuchElementException если словарь пуст.
+     */
+    public TK firstKey() {
+        return root().firstKey();
+    }
+
+    /**
+     * @throws NoSuchElementException если словарь пуст.
+     */
+    public TK lastKey() {
+        return root().lastKey();
+    }
+
+    /**
+     * Ленивый обход ключей из диапазона [from, to) текущей версии.
+     */
+    public Iterable<Map.Entry<TK, TV>> subMap(TK from, TK to) {
+        return subMap(from, true, to, false);
+    }
+
+    /**
+     * Ленивый обход ключей из диапазона с заданными границами текущей версии.
+     */
+    public Iterable<Map.Entry<TK, TV>> subMap(TK from, boolean fromInclusive, TK to, boolean toInclusive) {
+        Objects.requireNonNull(from);
+        Objects.requireNonNull(to);
+        var root = root();
+        return () -> root.iterator(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Ленивый обход ключей, строго меньших заданного.
+     */
+    public Iterable<Map.Entry<TK, TV>> headMap(TK to) {
+        Objects.requireNonNull(to);
+        var root = root();
+        return () -> root.iterator(null, true, to, false);
+    }
+
+    /**
+     * Ленивый обход ключей, не меньших заданного.
+     */
+    public Iterable<Map.Entry<TK, TV>> tailMap(TK from) {
+        Objects.requireNonNull(from);
+        var root = root();
+        return () -> root.iterator(from, true, null, true);
+    }
+
+    /**
+     * Количество ключей в диапазоне [from, to) за O(log n).
+     */
+    public int countInRange(TK from, TK to) {
+        var root = root();
+        return Math.max(0, root.rank(to) - root.rank(from));
+    }
+
+    /**
+     * Ключи текущей версии в порядке компаратора.
+     */
+    public SortedSet<TK> keySet() {
+        var root = root();
+        var result = new TreeSet<TK>(root.comparator());
+        for (var entry : root) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    public Comparator<? super TK> comparator() {
+        return root().comparator();
+    }
+
+    @Override
+    public Iterator<Map.Entry<TK, TV>> iterator() {
+        return root().iterator();
+    }
+
+    @Override
+    protected Stream<Change<TK, TV>> insertionsAt(int modificationStep, int changeStep) {
+        return StreamSupport.stream(rootAt(modificationStep).spliterator(), false)
+                .map(e -> new Change<>(changeStep, ChangeType.Insert, e.getKey(), null, e.getValue()));
+    }
+
+    @Override
+    public PersistentSortedMap<TK, TV> apply(Change<TK, TV> change) {
+        return switch (change.getType()) {
+            case Insert -> add(change.getKey(), change.getNewValue());
+            case Update -> replace(change.getKey(), change.getNewValue());
+            case Remove -> remove(change.getKey());
+            case Clear -> clear();
+        };
+    }
+
+    /**
+     * Подготовка записи нескольких изменений одним шагом: изменения применяются к неизменяемому
+     * корню этой версии, поэтому проверка и построение корня не затрагивают содержимое до записи.
+     */
+    @Override
+    public Supplier<PersistentSortedMap<TK, TV>> prepare(List<Change<TK, TV>> changes) {
+        var step = modificationCount + 1;
+        var root = root();
+        var published = new ArrayList<Change<TK, TV>>(changes.size());
+        for (var change : changes) {
+            var key = change.getKey();
+            switch (change.getType()) {
+                case Insert -> {
+                    if (root.containsKey(key)) {
+                        throw new IllegalArgumentException("Such a key is already exists!");
+                    }
+                    published.add(new Change<>(step, ChangeType.Insert, key, null, change.getNewValue()));
+                    root = root.put(key, change.getNewValue());
+                }
+                case Update -> {
+                    if (!root.containsKey(key)) {
+                        throw new IllegalArgumentException("Such a key does not exists!");
+                    }
+                    published.add(new Change<>(step, ChangeType.Update, key, root.get(key), change.getNewValue()));
+                    root = root.put(key, change.getNewValue());
+                }
+                case Remove -> {
+                    if (root.containsKey(key)) {
+                        published.add(new Change<>(step, ChangeType.Remove, key, root.get(key), null));
+                        root = root.remove(key);
+                    }
+                }
+                case Clear -> {
+                    published.add(new Change<>(step, ChangeType.Clear, null, null, null));
+                    root = root.clear();
+                }
+            }
+        }
+
+        if (published.isEmpty()) {
+            return () -> this;
+        }
+
+        var newRoot = root;
+        return () -> commit(newRoot, published);
+    }
+
+    public int size() {
+        return getCount();
+    }
+}
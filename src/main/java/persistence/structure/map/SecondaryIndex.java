@@ -0,0 +1,83 @@
+package persistence.structure.map;
+
+import persistence.base.Change;
+import persistence.base.ChangeListener;
+import persistence.base.ChangeLog;
+import persistence.base.StepVersions;
+import persistence.base.tree.TreapMultimap;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Версионный вторичный индекс словаря: упорядоченный мультисловарь «атрибут значения → ключи».
+ * Для каждого шага хранится корень неизменяемого мультисловаря, поэтому выборка ключей
+ * по атрибуту в любой версии стоит O(log n + k). Значения, для которых атрибут равен null, не индексируются.
+ * Ключи одного атрибута упорядочены по хешу, а разные ключи с одинаковым хешем хранятся
+ * одним узлом и различаются по равенству. Порядку не нужен общий реестр ключей, поэтому индекс
+ * не удерживает ключи, которых нет ни в одной его версии.
+ *
+ * @param <TK> Тип ключа.
+ * @param <TV> Тип значения.
+ * @param <A>  Тип атрибута.
+ */
+class SecondaryIndex<TK, TV, A> implements ChangeListener<TK, TV> {
+    // Порядок ключей одного атрибута
+    private static final Comparator<Object> KEY_ORDER = Comparator.comparingInt(Objects::hashCode);
+
+    private final Function<? super TV, ? extends A> extractor;
+    // Корни мультисловарей по шагам модификации
+    private final StepVersions<TreapMultimap<A, TK>> versions;
+
+    /**
+     * Индекс, построенный по журналу изменений словаря.
+     */
+    SecondaryIndex(Function<? super TV, ? extends A> extractor, Comparator<? super A> comparator,
+                   ChangeLog<TK, TV> changeLog, int lastStep) {
+        this.extractor = extractor;
+        this.versions = new StepVersions<>(new TreapMultimap<>(comparator, KEY_ORDER));
+        changeLog.between(0, lastStep).forEach(this::onChange);
+        versions.extendTo(lastStep);
+    }
+
+    private SecondaryIndex(Function<? super TV, ? extends A> extractor, StepVersions<TreapMultimap<A, TK>> versions) {
+        this.extractor = extractor;
+        this.versions = versions;
+    }
+
+    @Override
+    public void onChange(Change<TK, TV> change) {
+        versions.apply(change.getStep(), multimap -> switch (change.getType()) {
+            case Insert -> with(multimap, change.getKey(), change.getNewValue());
+            case Update -> with(without(multimap, change.getKey(), change.getOldValue()), change.getKey(), change.getNewValue());
+            case Remove -> without(multimap, change.getKey(), change.getOldValue());
+            case Clear -> multimap.clear();
+        });
+    }
+
+    /**
+     * Индекс ветви, ответвлённой от заданного шага.
+     */
+    SecondaryIndex<TK, TV, A> fork(int step) {
+        return new SecondaryIndex<>(extractor, versions.fork(step));
+    }
+
+    TreapMultimap<A, TK> at(int step) {
+        return versions.get(step);
+    }
+
+    Function<? super TV, ? extends A> getExtractor() {
+        return extractor;
+    }
+
+    private TreapMultimap<A, TK> with(TreapMultimap<A, TK> multimap, TK key, TV value) {
+        var attribute = value == null ? null : extractor.apply(value);
+        return attribute == null ? multimap : multimap.put(attribute, key);
+    }
+
+    private TreapMultimap<A, TK> without(TreapMultimap<A, TK> multimap, TK key, TV value) {
+        var attribute = value == null ? null : extractor.apply(value);
+        return attribute == null ? multimap : multimap.remove(attribute, key);
+    }
+}
@@ -0,0 +1,148 @@
+package persistence.structure.queue;
+
+import persistence.base.*;
+import persistence.base.tree.LeftistHeap;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Персистентная очередь с приоритетом. Каждая версия хранит корень неизменяемой левосторонней кучи,
+ * поэтому просмотр минимума стоит O(1), а вставка, извлечение и слияние очередей — O(log n)
+ * в любой версии. Номером элемента считается его позиция в порядке приоритета: извлечение публикуется
+ * как удаление элемента с номером 0, замена — как замена элемента с заданным номером,
+ * а вставка — без номера, так как позицию нового элемента определяет приоритет.
+ *
+ * @param <T> Тип элементов.
+ */
+public class PersistentPriorityQueue<T> extends RootPerStepCollection<Integer, T, LeftistHeap<T>, PersistentPriorityQueue<T>> implements Iterable<T> {
+
+    /**
+     * Очередь с естественным порядком элементов.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentPriorityQueue() {
+        this((Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    public PersistentPriorityQueue(Comparator<? super T> comparator) {
+        super(new LeftistHeap<>(comparator));
+    }
+
+    private PersistentPriorityQueue(PersistentContent<List<LeftistHeap<T>>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentPriorityQueue<T> create(PersistentContent<List<LeftistHeap<T>>> nodes, int count, int modificationCount) {
+        return new PersistentPriorityQueue<>(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(LeftistHeap<T> root) {
+        return root.size();
+    }
+
+    public PersistentPriorityQueue<T> insert(T value) {
+        Objects.requireNonNull(value);
+        return commit(root().insert(value), new Change<>(modificationCount + 1, ChangeType.Insert, null, null, value));
+    }
+
+    /**
+     * Наименьший элемент текущей версии.
+     *
+     * @throws NoSuchElementException если очередь пуста.
+     */
+    public T peek() {
+        return root().peek();
+    }
+
+    /**
+     * Версия без наименьшего элемента. Сам элемент доступен через {@link #peek()} исходной версии.
+     *
+     * @throws NoSuchElementException если очередь пуста.
+     */
+    public PersistentPriorityQueue<T> poll() {
+        var heap = root();
+        var head = heap.peek();
+        return commit(heap.poll(), new Change<>(modificationCount + 1, ChangeType.Remove, 0, head, null));
+    }
+
+    /**
+     * Слияние с другой очередью того же порядка одной новой версией.
+     * Кучи сливаются за O(log n), а шаг публикует одно массовое изменение: вставки элементов
+     * другой очереди строятся из её неизменяемой кучи только при обходе журнала.
+     */
+    public PersistentPriorityQueue<T> meld(PersistentPriorityQueue<T> other) {
+        var heap = root();
+        var otherHeap = other.root();
+        if (!heap.comparator().equals(otherHeap.comparator())) {
+            throw new IllegalArgumentException("Queues are ordered by different comparators!");
+        }
+
+        int step = modificationCount + 1;
+        return commit(heap.meld(otherHeap), new BulkChange<>(step, () -> StreamSupport.stream(otherHeap.spliterator(), false)
+                .map(v -> new Change<>(step, ChangeType.Insert, null, null, v))));
+    }
+
+    public PersistentPriorityQueue<T> clear() {
+        return commit(root().clear(), new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    /**
+     * Элемент с заданным номером в порядке приоритета за O(k log k).
+     */
+    @Override
+    public T get(Integer index) {
+        Objects.checkIndex(index, getCount());
+
+        var iterator = root().iterator();
+        for (var i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    /**
+     * Замена элемента с заданным номером в порядке приоритета за O(k log n): элемент убирается
+     * из кучи без изменения порядка остальных, а новый элемент занимает место по своему приоритету.
+     * Заменяется тот же элемент, который возвращает {@link #get(Integer)}, так как обход и извлечение
+     * упорядочивают равные по приоритету элементы одинаково.
+     */
+    @Override
+    public PersistentPriorityQueue<T> replace(Integer index, T value) {
+        Objects.checkIndex(index, getCount());
+        Objects.requireNonNull(value);
+
+        var old = get(index);
+        return commit(root().removeAt(index).insert(value),
+                new Change<>(modificationCount + 1, ChangeType.Update, index, old, value));
+    }
+
+    public Comparator<? super T> comparator() {
+        return root().comparator();
+    }
+
+    /**
+     * Ленивый обход текущей версии в порядке приоритета.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return root().iterator();
+    }
+
+    @Override
+    protected Stream<Change<Integer, T>> insertionsAt(int modificationStep, int changeStep) {
+        return StreamSupport.stream(rootAt(modificationStep).spliterator(), false)
+                .map(v -> new Change<>(changeStep, ChangeType.Insert, null, null, v));
+    }
+
+    public int size() {
+        return getCount();
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+}
@@ -0,0 +1,119 @@
+package persistence.structure.rope;
+
+import persistence.base.*;
+import persistence.base.tree.Rope;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Персистентный текстовый буфер. Каждая версия хранит корень неизменяемого {@link Rope},
+ * поэтому вставка, удаление, подстрока и доступ по индексу любой версии стоят O(log n),
+ * а память растёт с количеством правок, а не с произведением размера текста на число версий.
+ * Изменения публикуются с позицией в качестве ключа и фрагментом текста в качестве значения.
+ */
+public class PersistentRope extends RootPerStepCollection<Integer, String, Rope, PersistentRope> implements CharSequence {
+
+    public PersistentRope() {
+        super(Rope.empty());
+    }
+
+    private PersistentRope(PersistentContent<List<Rope>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentRope create(PersistentContent<List<Rope>> nodes, int count, int modificationCount) {
+        return new PersistentRope(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(Rope root) {
+        return root.length();
+    }
+
+    /**
+     * Вставка текста перед заданной позицией.
+     */
+    public PersistentRope insert(int index, CharSequence text) {
+        return commit(root().insert(index, text),
+                new Change<>(modificationCount + 1, ChangeType.Insert, index, null, text.toString()));
+    }
+
+    /**
+     * Добавление текста в конец.
+     */
+    public PersistentRope append(CharSequence text) {
+        return insert(length(), text);
+    }
+
+    /**
+     * Удаление символов в позициях [from, to).
+     */
+    public PersistentRope delete(int from, int to) {
+        var rope = root();
+        var removed = rope.substring(from, to);
+        return commit(rope.delete(from, to), new Change<>(modificationCount + 1, ChangeType.Remove, from, removed, null));
+    }
+
+    /**
+     * Замена текста, начиная с заданной позиции, фрагментом той же длины.
+     */
+    @Override
+    public PersistentRope replace(Integer index, String text) {
+        var rope = root();
+        var old = rope.substring(index, index + text.length());
+        return commit(rope.delete(index, index + text.length()).insert(index, text),
+                new Change<>(modificationCount + 1, ChangeType.Update, index, old, text));
+    }
+
+    public PersistentRope clear() {
+        return commit(Rope.empty(), new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    /**
+     * Символ в заданной позиции в виде строки.
+     */
+    @Override
+    public String get(Integer index) {
+        return String.valueOf(charAt(index));
+    }
+
+    @Override
+    public char charAt(int index) {
+        return root().charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return getCount();
+    }
+
+    /**
+     * Текст символов [from, to) текущей версии.
+     */
+    public String substring(int from, int to) {
+        return root().substring(from, to);
+    }
+
+    /**
+     * Неизменяемый фрагмент текущей версии, разделяющий куски текста с ней.
+     */
+    @Override
+    public Rope subSequence(int from, int to) {
+        return root().subSequence(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return root().toString();
+    }
+
+    @Override
+    protected Stream<Change<Integer, String>> insertionsAt(int modificationStep, int changeStep) {
+        var rope = rootAt(modificationStep);
+        return rope.length() == 0 ? Stream.empty()
+                : Stream.of(new Change<>(changeStep, ChangeType.Insert, 0, null, rope.toString()));
+    }
+
+}
@@ -0,0 +1,299 @@
+package persistence.structure.set;
+
+import persistence.base.*;
+import persistence.base.tree.PersistentTreap;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Персистентное мультимножество. Каждая версия хранит корень неизменяемого декартова дерева
+ * с кратностями элементов и общее количество вхождений.
+ * Порядок элементов по умолчанию тот же, что и у {@link PersistentSet}.
+ *
+ * @param <T> Тип элементов.
+ */
+public class PersistentMultiset<T> extends RootPerStepCollection<T, Integer, PersistentMultiset.Version<T>, PersistentMultiset<T>> implements Iterable<Map.Entry<T, Integer>> {
+
+    /**
+     * Мультимножество с естественным порядком элементов.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentMultiset() {
+        this((Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    public PersistentMultiset(Comparator<? super T> comparator) {
+        super(new Version<>(new PersistentTreap<>(comparator), 0));
+    }
+
+    private PersistentMultiset(PersistentContent<List<Version<T>>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentMultiset<T> create(PersistentContent<List<Version<T>>> nodes, int count, int modificationCount) {
+        return new PersistentMultiset<>(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(Version<T> version) {
+        return version.total;
+    }
+
+    // Корень дерева текущей версии
+    private PersistentTreap<T, Integer> tree() {
+        return root().root;
+    }
+
+    // Запись нового корня и количества вхождений одной версией с публикацией изменения шага
+    private PersistentMultiset<T> commit(PersistentTreap<T, Integer> newRoot, int total, Change<T, Integer> change) {
+        return commit(new Version<>(newRoot, total), change);
+    }
+
+    public PersistentMultiset<T> add(T element) {
+        return add(element, 1);
+    }
+
+    /**
+     * Добавление нескольких вхождений элемента.
+     */
+    public PersistentMultiset<T> add(T element, int occurrences) {
+        if (occurrences <= 0) {
+            throw new IllegalArgumentException("Occurrences must be positive: " + occurrences);
+        }
+
+        return setCount(element, count(element) + occurrences);
+    }
+
+    /**
+     * Удаление одного вхождения элемента.
+     *
+     * @return Новая версия или это же мультимножество, если элемента нет.
+     */
+    public PersistentMultiset<T> remove(T element) {
+        return setCount(element, Math.max(0, count(element) - 1));
+    }
+
+    /**
+     * Удаление всех вхождений элемента.
+     */
+    public PersistentMultiset<T> removeAll(T element) {
+        return setCount(element, 0);
+    }
+
+    /**
+     * Установка кратности элемента.
+     *
+     * @return Новая версия или это же мультимножество, если кратность не изменилась.
+     */
+    public PersistentMultiset<T> setCount(T element, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+
+        int old = count(element);
+        if (old == count) {
+            return this;
+        }
+
+        var root = tree();
+        var newRoot = count == 0 ? root.remove(element) : root.put(element, count);
+        return commit(newRoot, getCount() - old + count, change(element, old, count));
+    }
+
+    public PersistentMultiset<T> clear() {
+        return commit(tree().clear(), 0, new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    /**
+     * Кратность элемента в текущей версии, 0 если элемента нет.
+     */
+    public int count(T element) {
+        var count = tree().get(element);
+        return count == null ? 0 : count;
+    }
+
+    public boolean contains(T element) {
+        return tree().containsKey(element);
+    }
+
+    @Override
+    public Integer get(T element) {
+        return count(element);
+    }
+
+    @Override
+    public PersistentMultiset<T> replace(T element, Integer count) {
+        return setCount(element, count);
+    }
+
+    /**
+     * Объединение одной новой версией: кратность равна наибольшей из кратностей.
+     * Элементы меньшего мультимножества вносятся в дерево большего.
+     */
+    public PersistentMultiset<T> union(PersistentMultiset<T> other) {
+        checkComparator(other);
+        var root = tree();
+        var otherRoot = other.tree();
+        boolean thisLarger = otherRoot.size() <= root.size();
+
+        var result = thisLarger ? root : otherRoot;
+        int total = thisLarger ? getCount() : other.getCount();
+        for (var entry : thisLarger ? otherRoot : root) {
+            var present = result.get(entry.getKey());
+            int current = present == null ? 0 : present;
+            if (entry.getValue() > current) {
+                result = result.put(entry.getKey(), entry.getValue());
+                total += entry.getValue() - current;
+            }
+        }
+
+        // Кратности могут вырасти только у элементов другого мультимножества
+        return commit(result, total, changes(otherRoot, root, result));
+    }
+
+    /**
+     * Пересечение одной новой версией: кратность равна наименьшей из кратностей.
+     * Дерево результата строится из элементов меньшего мультимножества.
+     */
+    public PersistentMultiset<T> intersect(PersistentMultiset<T> other) {
+        checkComparator(other);
+        var root = tree();
+        var otherRoot = other.tree();
+        var smaller = root.size() <= otherRoot.size() ? root : otherRoot;
+        var larger = smaller == root ? otherRoot : root;
+
+        var result = root.clear();
+        var total = 0;
+        for (var entry : smaller) {
+            var present = larger.get(entry.getKey());
+            if (present != null) {
+                int count = Math.min(entry.getValue(), present);
+                result = result.put(entry.getKey(), count);
+                total += count;
+            }
+        }
+
+        // Кратности могут уменьшиться только у элементов этого мультимножества
+        return commit(result, total, changes(root, root, result));
+    }
+
+    /**
+     * Разность одной новой версией: кратности уменьшаются на кратности другого мультимножества.
+     * Если другое мультимножество меньше, его элементы вычитаются из дерева этого,
+     * иначе дерево результата строится из элементов этого мультимножества.
+     */
+    public PersistentMultiset<T> difference(PersistentMultiset<T> other) {
+        checkComparator(other);
+        var root = tree();
+        var otherRoot = other.tree();
+
+        PersistentTreap<T, Integer> result;
+        int total;
+        if (otherRoot.size() <= root.size()) {
+            result = root;
+            total = getCount();
+            for (var entry : otherRoot) {
+                var present = root.get(entry.getKey());
+                if (present != null) {
+                    int count = Math.max(0, present - entry.getValue());
+                    result = count == 0 ? result.remove(entry.getKey()) : result.put(entry.getKey(), count);
+                    total -= present - count;
+                }
+            }
+        } else {
+            result = root.clear();
+            total = 0;
+            for (var entry : root) {
+                var subtracted = otherRoot.get(entry.getKey());
+                int count = subtracted == null ? entry.getValue() : Math.max(0, entry.getValue() - subtracted);
+                if (count > 0) {
+                    result = result.put(entry.getKey(), count);
+                    total += count;
+                }
+            }
+        }
+
+        return commit(result, total, changes(root.size() <= otherRoot.size() ? root : otherRoot, root, result));
+    }
+
+    // Массовое изменение шага: кратности элементов из заданного дерева при переходе от исходного корня
+    // к результату. Деревья неизменяемы, поэтому изменения строятся лениво при обходе журнала
+    private Change<T, Integer> changes(PersistentTreap<T, Integer> candidates, PersistentTreap<T, Integer> from,
+                                       PersistentTreap<T, Integer> to) {
+        return new BulkChange<>(modificationCount + 1, () -> StreamSupport.stream(candidates.spliterator(), false)
+                .map(Map.Entry::getKey)
+                .filter(element -> !Objects.equals(from.get(element), to.get(element)))
+                .map(element -> change(element, countIn(from, element), countIn(to, element))));
+    }
+
+    private static <T> int countIn(PersistentTreap<T, Integer> root, T element) {
+        var count = root.get(element);
+        return count == null ? 0 : count;
+    }
+
+    private Change<T, Integer> change(T element, int old, int count) {
+        if (old == 0) {
+            return new Change<>(modificationCount + 1, ChangeType.Insert, element, null, count);
+        }
+        if (count == 0) {
+            return new Change<>(modificationCount + 1, ChangeType.Remove, element, old, null);
+        }
+        return new Change<>(modificationCount + 1, ChangeType.Update, element, old, count);
+    }
+
+    private void checkComparator(PersistentMultiset<T> other) {
+        if (!tree().comparator().equals(other.tree().comparator())) {
+            throw new IllegalArgumentException("Multisets are ordered by different comparators!");
+        }
+    }
+
+    public Comparator<? super T> comparator() {
+        return tree().comparator();
+    }
+
+    /**
+     * Пары элемент-кратность текущей версии в порядке компаратора.
+     */
+    @Override
+    public Iterator<Map.Entry<T, Integer>> iterator() {
+        return tree().iterator();
+    }
+
+    @Override
+    protected Stream<Change<T, Integer>> insertionsAt(int modificationStep, int changeStep) {
+        return StreamSupport.stream(rootAt(modificationStep).root.spliterator(), false)
+                .map(e -> new Change<>(changeStep, ChangeType.Insert, e.getKey(), null, e.getValue()));
+    }
+
+    /**
+     * Общее количество вхождений.
+     */
+    public int size() {
+        return getCount();
+    }
+
+    /**
+     * Количество различных элементов.
+     */
+    public int distinctCount() {
+        return tree().size();
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    // Корень дерева и количество вхождений одного шага
+    static final class Version<T> {
+        private final PersistentTreap<T, Integer> root;
+        private final int total;
+
+        private Version(PersistentTreap<T, Integer> root, int total) {
+            this.root = root;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package persistence.structure.set;
+
+import persistence.base.*;
+import persistence.base.tree.PersistentTreap;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Персистентное множество. Каждая версия хранит корень неизменяемого декартова дерева без значений,
+ * поэтому принадлежность не требует истории значений на каждый элемент.
+ * По умолчанию элементы упорядочены естественным порядком, для остальных типов
+ * компаратор передаётся в конструктор, как у {@link persistence.structure.map.PersistentSortedMap}.
+ *
+ * @param <T> Тип элементов.
+ */
+public class PersistentSet<T> extends RootPerStepCollection<T, Boolean, PersistentTreap<T, Void>, PersistentSet<T>> implements Iterable<T> {
+    /**
+     * Множество с естественным порядком элементов.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentSet() {
+        this((Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    public PersistentSet(Comparator<? super T> comparator) {
+        super(new PersistentTreap<>(comparator));
+    }
+
+    private PersistentSet(PersistentContent<List<PersistentTreap<T, Void>>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentSet<T> create(PersistentContent<List<PersistentTreap<T, Void>>> nodes, int count, int modificationCount) {
+        return new PersistentSet<>(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(PersistentTreap<T, Void> root) {
+        return root.size();
+    }
+
+    /**
+     * Добавление элемента.
+     *
+     * @return Новая версия или это же множество, если элемент уже есть.
+     */
+    public PersistentSet<T> add(T element) {
+        var root = root();
+        if (root.containsKey(element)) {
+            return this;
+        }
+
+        return commit(root.put(element, null), inserted(element));
+    }
+
+    /**
+     * Удаление элемента.
+     *
+     * @return Новая версия или это же множество, если элемента нет.
+     */
+    public PersistentSet<T> remove(T element) {
+        var root = root();
+        if (!root.containsKey(element)) {
+            return this;
+        }
+
+        return commit(root.remove(element), removed(element));
+    }
+
+    public PersistentSet<T> clear() {
+        return commit(root().clear(), new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    public boolean contains(T element) {
+        return root().containsKey(element);
+    }
+
+    /**
+     * Принадлежность элемента текущей версии.
+     */
+    @Override
+    public Boolean get(T element) {
+        return contains(element);
+    }
+
+    /**
+     * Добавление или удаление элемента в зависимости от значения.
+     */
+    @Override
+    public PersistentSet<T> replace(T element, Boolean present) {
+        return present ? add(element) : remove(element);
+    }
+
+    /**
+     * Объединение одной новой версией. Обходится меньшее из множеств, а его элементы
+     * добавляются в дерево большего, поэтому дерево строится за O(m log n).
+     * Шаг публикует одно массовое изменение: добавленные элементы строятся при обходе журнала.
+     */
+    public PersistentSet<T> union(PersistentSet<T> other) {
+        checkComparator(other);
+        var root = root();
+        var otherRoot = other.root();
+        var smaller = otherRoot.size() <= root.size() ? otherRoot : root;
+        var result = smaller == otherRoot ? root : otherRoot;
+
+        for (var entry : smaller) {
+            if (!result.containsKey(entry.getKey())) {
+                result = result.put(entry.getKey(), null);
+            }
+        }
+
+        // Добавиться могут только элементы другого множества
+        return commit(result, changes(otherRoot, root, result));
+    }
+
+    /**
+     * Пересечение одной новой версией. Дерево результата строится из элементов меньшего множества.
+     */
+    public PersistentSet<T> intersect(PersistentSet<T> other) {
+        checkComparator(other);
+        var root = root();
+        var otherRoot = other.root();
+        var smaller = root.size() <= otherRoot.size() ? root : otherRoot;
+        var larger = smaller == root ? otherRoot : root;
+
+        var result = root.clear();
+        for (var entry : smaller) {
+            if (larger.containsKey(entry.getKey())) {
+                result = result.put(entry.getKey(), null);
+            }
+        }
+
+        // Удалиться могут только элементы этого множества
+        return commit(result, changes(root, root, result));
+    }
+
+    /**
+     * Разность одной новой версией: удаляются элементы другого множества.
+     * Если другое множество меньше, его элементы удаляются из дерева этого,
+     * иначе дерево результата строится из оставшихся элементов этого множества.
+     */
+    public PersistentSet<T> difference(PersistentSet<T> other) {
+        checkComparator(other);
+        var root = root();
+        var otherRoot = other.root();
+
+        PersistentTreap<T, Void> result;
+        if (otherRoot.size() <= root.size()) {
+            result = root;
+            for (var entry : otherRoot) {
+                result = result.remove(entry.getKey());
+            }
+        } else {
+            result = root.clear();
+            for (var entry : root) {
+                if (!otherRoot.containsKey(entry.getKey())) {
+                    result = result.put(entry.getKey(), null);
+                }
+            }
+        }
+
+        // Удалиться могут только общие элементы, поэтому достаточно обойти меньшее множество
+        return commit(result, changes(otherRoot.size() <= root.size() ? otherRoot : root, root, result));
+    }
+
+    // Массовое изменение шага: элементы заданного дерева, принадлежность которых различается
+    // в исходном корне и результате. Деревья неизменяемы, поэтому изменения строятся лениво
+    private Change<T, Boolean> changes(PersistentTreap<T, Void> candidates, PersistentTreap<T, Void> from,
+                                       PersistentTreap<T, Void> to) {
+        return new BulkChange<>(modificationCount + 1, () -> StreamSupport.stream(candidates.spliterator(), false)
+                .map(Map.Entry::getKey)
+                .filter(element -> from.containsKey(element) != to.containsKey(element))
+                .map(element -> from.containsKey(element) ? removed(element) : inserted(element)));
+    }
+
+    private void checkComparator(PersistentSet<T> other) {
+        if (!root().comparator().equals(other.root().comparator())) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators!");
+        }
+    }
+
+    private Change<T, Boolean> inserted(T element) {
+        return new Change<>(modificationCount + 1, ChangeType.Insert, element, null, true);
+    }
+
+    private Change<T, Boolean> removed(T element) {
+        return new Change<>(modificationCount + 1, ChangeType.Remove, element, true, null);
+    }
+
+    public Comparator<? super T> comparator() {
+        return root().comparator();
+    }
+
+    /**
+     * Элементы текущей версии в порядке компаратора.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        var entries = root().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entries.next().getKey();
+            }
+        };
+    }
+
+    @Override
+    protected Stream<Change<T, Boolean>> insertionsAt(int modificationStep, int changeStep) {
+        return StreamSupport.stream(rootAt(modificationStep).spliterator(), false)
+                .map(e -> new Change<>(changeStep, ChangeType.Insert, e.getKey(), null, true));
+    }
+
+    public int size() {
+        return getCount();
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+}
@@ -0,0 +1,115 @@
+package persistence.structure.trie;
+
+import persistence.base.*;
+import persistence.base.tree.RadixTree;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Персистентный словарь со строковыми ключами на основе сжатого префиксного дерева.
+ * Каждая версия хранит корень неизменяемого {@link RadixTree}, поэтому поиск ключа
+ * и перечисление ключей с префиксом в любой версии не зависят от общего количества ключей.
+ *
+ * @param <V> Тип значений.
+ */
+public class PersistentTrie<V> extends RootPerStepCollection<String, V, RadixTree<V>, PersistentTrie<V>> implements Iterable<Map.Entry<String, V>> {
+
+    public PersistentTrie() {
+        super(RadixTree.empty());
+    }
+
+    private PersistentTrie(PersistentContent<List<RadixTree<V>>> nodes, int count, int modificationCount) {
+        super(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected PersistentTrie<V> create(PersistentContent<List<RadixTree<V>>> nodes, int count, int modificationCount) {
+        return new PersistentTrie<>(nodes, count, modificationCount);
+    }
+
+    @Override
+    protected int countOf(RadixTree<V> root) {
+        return root.size();
+    }
+
+    /**
+     * Вставка или замена значения.
+     */
+    public PersistentTrie<V> put(String key, V value) {
+        Objects.requireNonNull(key);
+        var root = root();
+        var change = root.containsKey(key)
+                ? new Change<>(modificationCount + 1, ChangeType.Update, key, root.get(key), value)
+                : new Change<String, V>(modificationCount + 1, ChangeType.Insert, key, null, value);
+        return commit(root.put(key, value), change);
+    }
+
+    @Override
+    public PersistentTrie<V> replace(String key, V value) {
+        if (!root().containsKey(key)) {
+            throw new IllegalArgumentException("Such a key does not exists!");
+        }
+
+        return put(key, value);
+    }
+
+    /**
+     * Удаление ключа.
+     *
+     * @return Новая версия или эта же, если ключа нет.
+     */
+    public PersistentTrie<V> remove(String key) {
+        var root = root();
+        if (!root.containsKey(key)) {
+            return this;
+        }
+
+        return commit(root.remove(key), new Change<>(modificationCount + 1, ChangeType.Remove, key, root.get(key), null));
+    }
+
+    public PersistentTrie<V> clear() {
+        return commit(RadixTree.empty(), new Change<>(modificationCount + 1, ChangeType.Clear, null, null, null));
+    }
+
+    @Override
+    public V get(String key) {
+        return root().get(key);
+    }
+
+    public boolean containsKey(String key) {
+        return root().containsKey(key);
+    }
+
+    /**
+     * Ленивый обход ключей текущей версии с заданным префиксом в лексикографическом порядке.
+     */
+    public Iterable<Map.Entry<String, V>> prefixScan(String prefix) {
+        Objects.requireNonNull(prefix);
+        var root = root();
+        return () -> root.prefixScan(prefix);
+    }
+
+    /**
+     * Количество ключей с заданным префиксом за O(|prefix|).
+     */
+    public int countWithPrefix(String prefix) {
+        return root().countWithPrefix(prefix);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return root().iterator();
+    }
+
+    @Override
+    protected Stream<Change<String, V>> insertionsAt(int modificationStep, int changeStep) {
+        return StreamSupport.stream(rootAt(modificationStep).spliterator(), false)
+                .map(e -> new Change<>(changeStep, ChangeType.Insert, e.getKey(), null, e.getValue()));
+    }
+
+    public int size() {
+        return getCount();
+    }
+}
@@ -0,0 +1,32 @@
+package persistence.transaction;
+
+/**
+ * Изменяемая ссылка на текущую версию неизменяемой коллекции, участвующей в транзакциях.
+ * Версия меняется только фиксацией, отменой или повтором транзакции.
+ *
+ * @param <C> Тип коллекции.
+ */
+public final class Ref<C> {
+    private final TransactionManager manager;
+    private volatile C value;
+
+    Ref(TransactionManager manager, C value) {
+        this.manager = manager;
+        this.value = value;
+    }
+
+    /**
+     * Последняя зафиксированная версия.
+     */
+    public C get() {
+        return value;
+    }
+
+    void set(C value) {
+        this.value = value;
+    }
+
+    TransactionManager getManager() {
+        return manager;
+    }
+}
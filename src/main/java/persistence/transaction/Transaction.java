@@ -0,0 +1,215 @@
+package persistence.transaction;
+
+import persistence.base.Change;
+import persistence.base.ChangeType;
+import persistence.base.IReplayable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Транзакция над несколькими коллекциями. Изменения накапливаются и записываются только при фиксации,
+ * поэтому откат до фиксации стоит O(1) и не оставляет шагов в коллекциях.
+ * Фиксация записывает все изменения каждой коллекции одним общим шагом и переводит все ссылки
+ * на новые версии разом; отмена и повтор зафиксированной транзакции так же разом возвращают ссылки
+ * к версиям до неё и после неё.
+ */
+public class Transaction {
+    private enum State {Active, Committed, RolledBack}
+
+    private final TransactionManager manager;
+    // Накопленные изменения по участникам в порядке первого обращения
+    private final Map<Ref<?>, Batch<?, ?, ?>> staged = new LinkedHashMap<>();
+    // Версии участников до и после фиксации
+    private final List<Participant<?>> participants = new ArrayList<>();
+    private State state = State.Active;
+    private boolean undone;
+
+    Transaction(TransactionManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Вставка элемента. Ключи и индексы изменений относятся к версии, зафиксированной на момент
+     * фиксации, с уже накопленными изменениями этой транзакции.
+     *
+     * @return Эта же транзакция.
+     */
+    public <K, V, C extends IReplayable<K, V, C>> Transaction insert(Ref<C> ref, K key, V value) {
+        return stage(ref, new Change<>(0, ChangeType.Insert, key, null, value));
+    }
+
+    /**
+     * Замена значения по ключу или индексу.
+     *
+     * @return Эта же транзакция.
+     */
+    public <K, V, C extends IReplayable<K, V, C>> Transaction replace(Ref<C> ref, K key, V value) {
+        return stage(ref, new Change<>(0, ChangeType.Update, key, null, value));
+    }
+
+    /**
+     * Удаление по ключу или индексу.
+     *
+     * @return Эта же транзакция.
+     */
+    public <K, V, C extends IReplayable<K, V, C>> Transaction remove(Ref<C> ref, K key) {
+        return stage(ref, new Change<K, V>(0, ChangeType.Remove, key, null, null));
+    }
+
+    /**
+     * Очистка коллекции.
+     *
+     * @return Эта же транзакция.
+     */
+    public <K, V, C extends IReplayable<K, V, C>> Transaction clear(Ref<C> ref) {
+        return stage(ref, new Change<K, V>(0, ChangeType.Clear, null, null, null));
+    }
+
+    // Шаг изменения назначается при фиксации
+    @SuppressWarnings("unchecked")
+    private <K, V, C extends IReplayable<K, V, C>> Transaction stage(Ref<C> ref, Change<K, V> change) {
+        checkActive();
+        if (ref.getManager() != manager) {
+            throw new IllegalArgumentException("Reference is registered in another manager");
+        }
+
+        ((Batch<K, V, C>) staged.computeIfAbsent(ref, r -> new Batch<>(ref))).changes.add(change);
+        return this;
+    }
+
+    /**
+     * Фиксация в две фазы. Сначала изменения каждого участника проверяются относительно его версии,
+     * зафиксированной на момент фиксации, а не начала транзакции; если проверка не прошла,
+     * исключение выбрасывается до записи, и ни одна коллекция и ссылка не меняется.
+     * Затем изменения каждого участника записываются одним шагом и публикуются,
+     * после чего все ссылки переключаются на новые версии.
+     */
+    public void commit() {
+        checkActive();
+
+        synchronized (manager.getLock()) {
+            var prepared = new ArrayList<Supplier<? extends Participant<?>>>();
+            for (var batch : staged.values()) {
+                prepared.add(batch.prepare());
+            }
+
+            var results = new ArrayList<Participant<?>>();
+            for (var participant : prepared) {
+                results.add(participant.get());
+            }
+
+            for (var participant : results) {
+                participant.moveTo(true);
+            }
+            participants.addAll(results);
+        }
+
+        staged.clear();
+        state = State.Committed;
+    }
+
+    /**
+     * Откат незафиксированной транзакции: накопленные операции отбрасываются.
+     */
+    public void rollback() {
+        checkActive();
+        staged.clear();
+        state = State.RolledBack;
+    }
+
+    /**
+     * Отмена зафиксированной транзакции: все участники возвращаются к версиям до неё.
+     *
+     * @throws IllegalStateException если транзакция не зафиксирована, уже отменена
+     *                               или участник изменён более поздней транзакцией.
+     */
+    public void undo() {
+        move(true);
+    }
+
+    /**
+     * Повтор отменённой транзакции: все участники возвращаются к версиям после неё.
+     *
+     * @throws IllegalStateException если транзакция не отменена или участник изменён после отмены.
+     */
+    public void redo() {
+        move(false);
+    }
+
+    public boolean isCommitted() {
+        return state == State.Committed;
+    }
+
+    public boolean isUndone() {
+        return undone;
+    }
+
+    private void move(boolean back) {
+        if (state != State.Committed || undone != !back) {
+            throw new IllegalStateException(back ? "Transaction can not be undone" : "Transaction can not be redone");
+        }
+
+        synchronized (manager.getLock()) {
+            for (var participant : participants) {
+                if (!participant.isAt(back)) {
+                    throw new IllegalStateException("Participant was changed by a later transaction");
+                }
+            }
+            for (var participant : participants) {
+                participant.moveTo(!back);
+            }
+        }
+
+        undone = back;
+    }
+
+    private void checkActive() {
+        if (state != State.Active) {
+            throw new IllegalStateException("Transaction is already " + (state == State.Committed ? "committed" : "rolled back"));
+        }
+    }
+
+    // Накопленные изменения одного участника
+    private static final class Batch<K, V, C extends IReplayable<K, V, C>> {
+        private final Ref<C> ref;
+        private final List<Change<K, V>> changes = new ArrayList<>();
+
+        private Batch(Ref<C> ref) {
+            this.ref = ref;
+        }
+
+        // Проверка изменений относительно текущей версии; запись одним шагом откладывается до вызова результата
+        private Supplier<Participant<C>> prepare() {
+            var before = ref.get();
+            var write = before.prepare(changes);
+            return () -> new Participant<>(ref, before, write.get());
+        }
+    }
+
+    // Участник транзакции с версиями до и после неё
+    private static final class Participant<C> {
+        private final Ref<C> ref;
+        private final C before;
+        private final C after;
+
+        private Participant(Ref<C> ref, C before, C after) {
+            this.ref = ref;
+            this.before = before;
+            this.after = after;
+        }
+
+        // Переключение ссылки на версию после транзакции или до неё
+        private void moveTo(boolean after) {
+            ref.set(after ? this.after : before);
+        }
+
+        // Указывает ли ссылка на версию после транзакции или до неё
+        private boolean isAt(boolean after) {
+            return ref.get() == (after ? this.after : before);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package persistence.transaction;
+
+import persistence.base.VersionClock;
+
+/**
+ * Менеджер транзакций над несколькими коллекциями. Коллекции регистрируются как {@link Ref},
+ * а транзакции фиксируются по одной за раз. Если менеджер создан с общими часами версий,
+ * фиксация выполняется под их блокировкой, и срез часов не видит транзакцию частично.
+ */
+public class TransactionManager {
+    // Объект блокировки фиксаций: часы версий или сам менеджер
+    private final Object lock;
+
+    public TransactionManager() {
+        this.lock = this;
+    }
+
+    public TransactionManager(VersionClock clock) {
+        this.lock = clock;
+    }
+
+    /**
+     * Регистрация коллекции для участия в транзакциях.
+     *
+     * @param initial Начальная версия.
+     * @return Ссылка на текущую версию.
+     */
+    public <C> Ref<C> register(C initial) {
+        return new Ref<>(this, initial);
+    }
+
+    /**
+     * Начало транзакции. Операции не выполняются до фиксации.
+     */
+    public Transaction begin() {
+        return new Transaction(this);
+    }
+
+    Object getLock() {
+        return lock;
+    }
+}
@@ -0,0 +1,57 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogTest {
+
+    private static ChangeLog<String, Integer> sampleLog() {
+        ChangeLog<String, Integer> log = new ChangeLog<>();
+        log.onChange(new Change<>(1, ChangeType.Insert, "A", null, 1));
+        log.onChange(new Change<>(2, ChangeType.Insert, "B", null, 2));
+        log.onChange(new Change<>(3, ChangeType.Update, "A", 1, 10));
+        log.onChange(new Change<>(4, ChangeType.Remove, "B", 2, null));
+        return log;
+    }
+
+    @Test
+    void testBetweenExcludesFromAndIncludesTo() {
+        var log = sampleLog();
+
+        List<Change<String, Integer>> changes = log.between(1, 3).toList();
+
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(0).getStep());
+        assertEquals(3, changes.get(1).getStep());
+        assertTrue(log.between(3, 3).toList().isEmpty());
+        assertEquals(4, log.between(0, 100).count());
+    }
+
+    @Test
+    void testReverseInvertsChanges() {
+        var log = sampleLog();
+
+        List<Change<String, Integer>> changes = log.reverse(4, 2).toList();
+
+        assertEquals(2, changes.size());
+        assertEquals(ChangeType.Insert, changes.get(0).getType(), "Удаление отменяется вставкой");
+        assertEquals("B", changes.get(0).getKey());
+        assertEquals(2, changes.get(0).getNewValue());
+        assertEquals(ChangeType.Update, changes.get(1).getType());
+        assertEquals(1, changes.get(1).getNewValue(), "Замена отменяется возвратом старого значения");
+    }
+
+    @Test
+    void testAtAndTruncate() {
+        var log = sampleLog();
+
+        assertEquals("A", log.at(3).findFirst().orElseThrow().getKey());
+
+        var truncated = log.truncate(2);
+        assertEquals(2, truncated.size());
+        assertEquals(4, log.size(), "Исходный журнал не меняется");
+    }
+}
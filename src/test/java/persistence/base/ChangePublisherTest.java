@@ -0,0 +1,134 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+import persistence.structure.map.PersistentMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangePublisherTest {
+
+    // Подписчик, запрашивающий пачки вручную
+    private static class RecordingSubscriber<K, V> implements Flow.Subscriber<List<Change<K, V>>> {
+        final List<List<Change<K, V>>> batches = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(List<Change<K, V>> item) {
+            batches.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    void testDeliversOnlyRequestedBatches() {
+        ChangePublisher<String, Integer> publisher = new ChangePublisher<>(Runnable::run, 2, 100);
+        var subscriber = new RecordingSubscriber<String, Integer>();
+        publisher.subscribe(subscriber);
+
+        for (var i = 1; i <= 5; i++) {
+            publisher.onChange(new Change<>(i, ChangeType.Insert, "K" + i, null, i));
+        }
+        assertTrue(subscriber.batches.isEmpty(), "Без запроса изменения не доставляются");
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.batches.size());
+        assertEquals(2, subscriber.batches.get(0).size(), "Пачка ограничена максимальным размером");
+        assertEquals(3, subscriber.batches.get(1).get(0).getStep());
+
+        subscriber.subscription.request(10);
+        assertEquals(3, subscriber.batches.size());
+        assertEquals(1, subscriber.batches.get(2).size());
+
+        publisher.close();
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void testBufferOverflowSignalsError() {
+        ChangePublisher<String, Integer> publisher = new ChangePublisher<>(Runnable::run, 10, 2);
+        var subscriber = new RecordingSubscriber<String, Integer>();
+        publisher.subscribe(subscriber);
+
+        for (var i = 1; i <= 3; i++) {
+            publisher.onChange(new Change<>(i, ChangeType.Insert, "K" + i, null, i));
+        }
+
+        assertInstanceOf(IllegalStateException.class, subscriber.error);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void testInvalidRequestSignalsError() {
+        ChangePublisher<String, Integer> publisher = new ChangePublisher<>(Runnable::run, 10, 10);
+        var subscriber = new RecordingSubscriber<String, Integer>();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+    }
+
+    @Test
+    void testCollectionFeed() throws InterruptedException {
+        PersistentMap<String, Integer> map = new PersistentMap<>();
+        var received = new ArrayList<Change<String, Integer>>();
+        var latch = new CountDownLatch(2);
+
+        map.changes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(List<Change<String, Integer>> item) {
+                synchronized (received) {
+                    received.addAll(item);
+                }
+                item.forEach(c -> latch.countDown());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        var v1 = map.add("A", 1).add("B", 2);
+        // Изменение старой версии создаёт ветвь со своим шагом 2 и своим издателем
+        var branch = v1.undo().replace("A", 10);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNotSame(map.changes(), branch.changes(), "Шаги ветвей пересекаются, поэтому ленты не должны смешиваться");
+        assertEquals(0, branch.changes().getSubscriberCount());
+        synchronized (received) {
+            assertEquals(List.of(1, 2), received.stream().map(Change::getStep).toList());
+            assertEquals(ChangeType.Insert, received.get(1).getType());
+        }
+    }
+}
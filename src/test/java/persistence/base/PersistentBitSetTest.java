@@ -0,0 +1,64 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentBitSetTest {
+
+    @Test
+    void testSetAndClearKeepOldVersions() {
+        var empty = PersistentBitSet.empty();
+        var first = empty.set(3).set(100);
+        var second = first.clear(3);
+
+        assertFalse(empty.get(3));
+        assertTrue(first.get(3));
+        assertTrue(first.get(100));
+        assertFalse(second.get(3), "Сброшенный бит не должен быть виден в новой версии");
+        assertEquals(2, first.cardinality());
+        assertEquals(1, second.cardinality());
+        assertSame(second, second.set(100), "Повторная установка не должна копировать множество");
+        assertSame(second, second.clear(5));
+    }
+
+    @Test
+    void testGrowsAndMatchesBitSet() {
+        var random = new Random(3);
+        var expected = new BitSet();
+        var actual = PersistentBitSet.empty();
+        for (var i = 0; i < 5000; i++) {
+            int index = random.nextInt(200000);
+            if (random.nextBoolean()) {
+                expected.set(index);
+                actual = actual.set(index);
+            } else {
+                expected.clear(index);
+                actual = actual.clear(index);
+            }
+        }
+
+        assertEquals(expected.cardinality(), actual.cardinality());
+        int expectedBit = expected.nextSetBit(0);
+        int actualBit = actual.nextSetBit(0);
+        while (expectedBit >= 0) {
+            assertEquals(expectedBit, actualBit, "Обход установленных битов должен совпадать");
+            expectedBit = expected.nextSetBit(expectedBit + 1);
+            actualBit = actual.nextSetBit(actualBit + 1);
+        }
+        assertEquals(-1, actualBit);
+    }
+
+    @Test
+    void testNextSetBitSkipsEmptyRanges() {
+        var bits = PersistentBitSet.empty().set(5).set(1_000_000);
+
+        assertEquals(5, bits.nextSetBit(0));
+        assertEquals(1_000_000, bits.nextSetBit(6));
+        assertEquals(-1, bits.nextSetBit(1_000_001));
+        assertFalse(bits.get(Integer.MAX_VALUE));
+    }
+}
@@ -80,4 +80,20 @@ class PersistentContentTest {
         assertEquals(7, persistentContent.getMaxModification().getValue(),
                 "Счётчик модификаций всё равно должен увеличиться (5 + 2 = 7)");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEpochs() {
+        PersistentContent<String> persistentContent = new PersistentContent<>("data", new ModificationCount(0));
+        persistentContent.markEpoch(3, 10);
+        persistentContent.markEpoch(7, 25);
+
+        assertEquals(0, persistentContent.epochBase(2), "До первой очистки эпох нет");
+        assertEquals(10, persistentContent.epochBase(3));
+        assertEquals(10, persistentContent.epochBase(6));
+        assertEquals(25, persistentContent.epochBase(100));
+
+        // Ветвь от шага 5 не видит более поздних очисток
+        var branch = persistentContent.fork("branch", 5);
+        assertEquals(10, branch.epochBase(100));
+    }
+}
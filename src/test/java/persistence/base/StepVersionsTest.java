@@ -0,0 +1,45 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StepVersionsTest {
+
+    @Test
+    void testGapsInheritLastState() {
+        var versions = new StepVersions<>(0);
+        versions.apply(3, value -> value + 5);
+
+        assertEquals(0, versions.get(1), "Шаг без изменений наследует предыдущее состояние");
+        assertEquals(0, versions.get(2));
+        assertEquals(5, versions.get(3));
+
+        versions.extendTo(5);
+        assertEquals(5, versions.get(5));
+    }
+
+    @Test
+    void testSameStepAccumulates() {
+        var versions = new StepVersions<>(1);
+        versions.apply(1, value -> value * 10);
+        versions.apply(1, value -> value + 2);
+
+        assertEquals(1, versions.get(0));
+        assertEquals(12, versions.get(1), "Второе изменение шага применяется к результату первого");
+    }
+
+    @Test
+    void testForkSharesPrefixOnly() {
+        var versions = new StepVersions<>("a");
+        versions.apply(1, value -> value + "b");
+        versions.apply(2, value -> value + "c");
+
+        var branch = versions.fork(1);
+        branch.apply(2, value -> value + "x");
+
+        assertEquals("abx", branch.get(2));
+        assertEquals("abc", versions.get(2), "Ветвь не должна менять исходные состояния");
+        assertThrows(IndexOutOfBoundsException.class, () -> branch.get(3));
+    }
+}
@@ -0,0 +1,59 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionCacheTest {
+
+    @Test
+    void testHitsAndMisses() {
+        VersionCache cache = new VersionCache(4);
+        Object owner = new Object();
+
+        List<String> first = cache.get(owner, 1, () -> List.of("A"));
+        List<String> second = cache.get(owner, 1, () -> List.of("B"));
+
+        assertSame(first, second, "Повторное обращение должно вернуть закэшированный снимок");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testKeyUsesOwnerIdentityAndStep() {
+        VersionCache cache = new VersionCache(4);
+        Object owner = new Object();
+        Object other = new Object();
+
+        cache.get(owner, 1, () -> "owner-1");
+        assertEquals("owner-2", cache.get(owner, 2, () -> "owner-2"));
+        assertEquals("other-1", cache.get(other, 1, () -> "other-1"));
+        assertEquals(3, cache.getMisses());
+        assertEquals("owner-1", cache.peek(owner, 1));
+        assertNull(cache.peek(other, 2));
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        VersionCache cache = new VersionCache(2);
+        Object owner = new Object();
+
+        cache.get(owner, 1, () -> "v1");
+        cache.get(owner, 2, () -> "v2");
+        // Обращение к шагу 1 делает шаг 2 самым старым
+        cache.get(owner, 1, () -> "v1");
+        cache.get(owner, 3, () -> "v3");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.peek(owner, 1));
+        assertNull(cache.peek(owner, 2), "Шаг 2 должен быть вытеснен");
+        assertNotNull(cache.peek(owner, 3));
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new VersionCache(0));
+    }
+}
@@ -0,0 +1,55 @@
+package persistence.base;
+
+import org.junit.jupiter.api.Test;
+import persistence.structure.array.PersistentArray;
+import persistence.structure.map.PersistentMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionClockTest {
+
+    @Test
+    void testSnapshotIsConsistentCut() {
+        var clock = new VersionClock();
+        var map = new PersistentMap<String, Integer>().add("a", 1);
+        var array = new PersistentArray<String>();
+        clock.attach(map).attach(array);
+
+        array = array.add("x");
+        map = map.add("b", 2);
+        var snapshot = clock.snapshot();
+        long time = clock.now();
+
+        array = array.add("y").replace(0, "z");
+        map = map.remove("a");
+
+        assertEquals(2, snapshot.view(map).getCount());
+        assertEquals(1, snapshot.view(map).get("a"));
+        assertEquals(1, snapshot.view(array).getCount());
+        assertEquals("x", snapshot.view(array).get(0));
+        assertEquals(5, clock.now(), "Каждый шаг любой коллекции продвигает общие часы");
+
+        // Срез в прошлом: до добавления "b", но после добавления "x"
+        var earlier = clock.snapshotAt(time - 1);
+        assertNull(earlier.view(map).get("b"));
+        assertEquals(1, earlier.view(array).getCount());
+        assertEquals(0, clock.snapshotAt(0).view(array).getCount());
+    }
+
+    @Test
+    void testBranchesStayOnClock() {
+        var clock = new VersionClock();
+        var map = new PersistentMap<String, Integer>().add("a", 1).add("b", 2);
+        clock.attach(map);
+
+        var branch = map.undo().add("c", 3);
+        var snapshot = clock.snapshot();
+        map = map.add("d", 4);
+
+        assertTrue(snapshot.contains(branch));
+        assertEquals(3, snapshot.view(branch).get("c"));
+        assertEquals(2, snapshot.view(map).getCount(), "Срез исходной ветви не видит позднее добавление");
+        assertThrows(IllegalArgumentException.class, () -> snapshot.view(new PersistentMap<String, Integer>()));
+        assertThrows(IllegalStateException.class, () -> new VersionClock().attach(branch));
+    }
+}
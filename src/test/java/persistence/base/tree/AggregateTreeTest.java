@@ -0,0 +1,76 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.Monoid;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateTreeTest {
+
+    private static final Monoid<Long> SUM = Monoid.of(0L, Long::sum);
+    private static final Monoid<Long> MAX = Monoid.of(Long.MIN_VALUE, Math::max);
+
+    @Test
+    void testOldVersionsKeepAggregates() {
+        var empty = new AggregateTree<>(SUM);
+        var first = empty.insert(0, 1L).insert(1, 2L).insert(2, 3L);
+        var second = first.set(1, 20L).remove(0);
+
+        assertEquals(0L, empty.aggregate(0, 0));
+        assertEquals(6L, first.aggregate(0, 3));
+        assertEquals(23L, second.aggregate(0, 2));
+        assertEquals(20L, second.get(0));
+        assertEquals(2L, first.get(1), "Старая версия не должна меняться");
+    }
+
+    @Test
+    void testMatchesNaiveAggregation() {
+        var random = new Random(11);
+        var expected = new ArrayList<Long>();
+        var sums = new AggregateTree<>(SUM);
+        var maxes = new AggregateTree<>(MAX);
+        for (var i = 0; i < 2000; i++) {
+            int operation = random.nextInt(3);
+            if (operation == 0 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                long value = random.nextInt(1000) - 500;
+                expected.add(index, value);
+                sums = sums.insert(index, value);
+                maxes = maxes.insert(index, value);
+            } else if (operation == 1) {
+                int index = random.nextInt(expected.size());
+                long value = random.nextInt(1000) - 500;
+                expected.set(index, value);
+                sums = sums.set(index, value);
+                maxes = maxes.set(index, value);
+            } else {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                sums = sums.remove(index);
+                maxes = maxes.remove(index);
+            }
+        }
+
+        assertEquals(expected.size(), sums.size());
+        for (var probe = 0; probe < 200; probe++) {
+            int from = random.nextInt(expected.size() + 1);
+            int to = from + random.nextInt(expected.size() - from + 1);
+            var range = expected.subList(from, to);
+            assertEquals(range.stream().mapToLong(Long::longValue).sum(), sums.aggregate(from, to),
+                    "Сумма диапазона [" + from + ", " + to + ") не совпадает");
+            assertEquals(range.stream().mapToLong(Long::longValue).max().orElse(Long.MIN_VALUE), maxes.aggregate(from, to));
+        }
+    }
+
+    @Test
+    void testBounds() {
+        var tree = new AggregateTree<>(SUM).insert(0, 1L);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.aggregate(0, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.insert(3, 1L));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.remove(1));
+    }
+}
@@ -0,0 +1,100 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.base.PersistentNode;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayBinaryTreeTest {
+
+    private ArrayBinaryTree<Integer, String> tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new ArrayBinaryTree<>();
+    }
+
+    @Test
+    void testInsertAndGet() {
+        tree.insert(10, "value10");
+        tree.insert(5, "value5");
+        tree.insert(15, "value15");
+        tree.insert(10, "newValue10");
+
+        assertEquals("newValue10", tree.get(10), "Повторная вставка должна обновить значение");
+        assertEquals("value5", tree.get(5));
+        assertNull(tree.get(7));
+        assertTrue(tree.contains(15));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void testBalancedAfterAscendingInsertion() {
+        for (var i = 0; i < 1000; i++) {
+            tree.insert(i, "value" + i);
+        }
+
+        // Для 1000 узлов черная высота красно-чёрного дерева не превышает log2(1001) + 1
+        assertTrue(tree.blackHeight() <= 11, "Дерево должно оставаться сбалансированным");
+        assertEquals(1000, tree.size());
+    }
+
+    @Test
+    void testMatchesTreeMapOnRandomKeys() {
+        var random = new Random(7);
+        var expected = new TreeMap<Integer, String>();
+        for (var i = 0; i < 3000; i++) {
+            int key = random.nextInt(10000) - 5000;
+            tree.insert(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+
+        tree.blackHeight();
+        assertEquals(new ArrayList<>(expected.entrySet()), tree.toList(), "Обход должен идти в порядке ключей");
+
+        for (var probe = -5003; probe <= 5003; probe += 5) {
+            var floor = expected.floorEntry(probe);
+            assertEquals(floor == null ? null : floor.getValue(), tree.findNearestLess(probe),
+                    "Ближайший меньший ключ для " + probe + " не совпадает");
+        }
+    }
+
+    @Test
+    void testAsPersistentNodeHistory() {
+        PersistentNode<String> node = new PersistentNode<>(new ArrayBinaryTree<>(), 0, "v0");
+        node.update(3, "v3").update(7, "v7");
+
+        assertEquals("v0", node.value(2));
+        assertEquals("v3", node.value(6));
+        assertEquals("v7", node.value(100));
+        assertNull(node.value(-1), "До создания узла значения нет");
+    }
+
+    @Test
+    void testOrderStatisticsMatchTreeMap() {
+        var random = new Random(11);
+        var expected = new TreeMap<Integer, String>();
+        for (var i = 0; i < 2000; i++) {
+            int key = random.nextInt(4000) - 2000;
+            tree.insert(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+
+        var entries = new ArrayList<>(expected.entrySet());
+        for (var i = 0; i < entries.size(); i += 7) {
+            assertEquals(entries.get(i), tree.select(i), "Пара с номером " + i + " не совпадает");
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(entries.size()));
+
+        for (var probe = -2003; probe <= 2003; probe += 13) {
+            assertEquals(expected.headMap(probe).size(), tree.rank(probe), "Ранг " + probe + " не совпадает");
+            assertEquals(expected.subMap(probe, true, probe + 100, true).size(), tree.countInRange(probe, probe + 100));
+        }
+        assertEquals(0, tree.countInRange(10, -10));
+    }
+}
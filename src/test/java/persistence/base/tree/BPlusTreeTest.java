@@ -0,0 +1,90 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BPlusTreeTest {
+
+    private BPlusTree<Integer, String> tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new BPlusTree<>(4); // Малый порядок, чтобы расщепления происходили часто
+    }
+
+    @Test
+    void testInsertAndGet() {
+        tree.insert(10, "value10");
+        tree.insert(5, "value5");
+
+        assertEquals("value10", tree.get(10));
+        assertEquals("value5", tree.get(5));
+        assertNull(tree.get(7), "Отсутствующий ключ должен возвращать null");
+        assertTrue(tree.contains(5));
+        assertFalse(tree.contains(7));
+    }
+
+    @Test
+    void testInsertDuplicateKey() {
+        tree.insert(10, "value10");
+        tree.insert(10, "newValue10");
+
+        assertEquals("newValue10", tree.get(10), "Повторная вставка должна обновить значение");
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    void testFindNearestLess() {
+        for (var i = 0; i < 100; i++) {
+            tree.insert(i * 10, "value" + i * 10);
+        }
+
+        assertNull(tree.findNearestLess(-1), "Меньших ключей нет");
+        assertEquals("value0", tree.findNearestLess(5));
+        assertEquals("value500", tree.findNearestLess(500));
+        assertEquals("value500", tree.findNearestLess(509));
+        assertEquals("value990", tree.findNearestLess(100000));
+    }
+
+    @Test
+    void testMatchesTreeMapOnRandomKeys() {
+        var random = new Random(42);
+        var expected = new TreeMap<Integer, String>();
+        for (var i = 0; i < 5000; i++) {
+            int key = random.nextInt(20000) - 10000;
+            tree.insert(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertTrue(tree.height() > 3, "Дерево должно вырасти в высоту");
+
+        var actual = new ArrayList<Map.Entry<Integer, String>>();
+        tree.forEach(actual::add);
+        assertEquals(new ArrayList<>(expected.entrySet()), actual, "Обход листьев должен идти в порядке ключей");
+        assertEquals(actual, tree.toList());
+
+        for (var probe = -10005; probe <= 10005; probe += 7) {
+            var floor = expected.floorEntry(probe);
+            assertEquals(floor == null ? null : floor.getValue(), tree.findNearestLess(probe),
+                    "Ближайший меньший ключ для " + probe + " не совпадает");
+            assertEquals(expected.get(probe), tree.get(probe));
+        }
+    }
+
+    @Test
+    void testCreateEmptyKeepsOrder() {
+        tree.insert(1, "one");
+        var empty = tree.createEmpty();
+
+        assertEquals(0, empty.size());
+        assertEquals(4, empty.getOrder());
+    }
+}
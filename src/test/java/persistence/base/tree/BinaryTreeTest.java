@@ -155,4 +155,54 @@ class BinaryTreeTest {
         }
         assertEquals(3, count, " / тератор должен был вернуть ровно 3 элемента");
     }
-}
\ No newline at end of file
+
+    /**
+     * Тест порядковых статистик: размер, ранг, выбор по номеру и подсчёт в диапазоне.
+     */
+    @Test
+    void testOrderStatistics() {
+        for (var i = 0; i < 100; i++) {
+            tree.insert(i * 2, "value" + i); // Чётные ключи 0..198
+        }
+        tree.insert(10, "updated"); // Повторная вставка не меняет размер
+
+        assertEquals(100, tree.size(), "Размер дерева должен быть 100");
+        assertEquals(0, tree.rank(0));
+        assertEquals(5, tree.rank(10), "Меньше 10 ровно пять чётных ключей");
+        assertEquals(6, tree.rank(11));
+        assertEquals(100, tree.rank(1000));
+
+        for (var i = 0; i < 100; i++) {
+            assertEquals(i * 2, tree.select(i).getKey(), "Ключ с номером " + i + " должен быть " + i * 2);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(100));
+
+        assertEquals(6, tree.countInRange(10, 20), "В диапазоне [10, 20] шесть чётных ключей");
+        assertEquals(5, tree.countInRange(11, 20));
+        assertEquals(0, tree.countInRange(20, 10));
+        assertEquals(100, tree.countInRange(-5, 500));
+    }
+
+    /**
+     * Тест согласованности размеров поддеревьев после поворотов.
+     */
+    @Test
+    void testSubtreeSizesAfterRotations() {
+        for (var i = 100; i > 0; i--) {
+            tree.insert(i, "value" + i); // Убывающая вставка вызывает много поворотов
+        }
+
+        assertEquals(checkSizes(tree.getRoot()), tree.size());
+        assertEquals(100, tree.size());
+    }
+
+    private int checkSizes(Node<Integer, String> node) {
+        if (node == null) {
+            return 0;
+        }
+
+        int size = 1 + checkSizes(node.getLeft()) + checkSizes(node.getRight());
+        assertEquals(size, node.getSize(), "Размер поддерева узла " + node.getKey() + " не совпадает");
+        return size;
+    }
+}
@@ -0,0 +1,63 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeftistHeapTest {
+
+    private static <T> List<T> drain(LeftistHeap<T> heap) {
+        var result = new ArrayList<T>();
+        while (!heap.isEmpty()) {
+            result.add(heap.peek());
+            heap = heap.poll();
+        }
+        return result;
+    }
+
+    @Test
+    void testPollInOrder() {
+        var random = new Random(42);
+        var heap = new LeftistHeap<Integer>(Comparator.naturalOrder());
+        var expected = new ArrayList<Integer>();
+        for (var i = 0; i < 1000; i++) {
+            int value = random.nextInt(500);
+            heap = heap.insert(value);
+            expected.add(value);
+        }
+        Collections.sort(expected);
+
+        assertEquals(1000, heap.size());
+        assertEquals(expected, drain(heap));
+
+        var iterated = new ArrayList<Integer>();
+        heap.forEach(iterated::add);
+        assertEquals(expected, iterated, "Обход должен идти в порядке приоритета");
+    }
+
+    @Test
+    void testOldVersionsAreUnchanged() {
+        var heap = new LeftistHeap<Integer>(Comparator.naturalOrder()).insert(5).insert(1).insert(3);
+        var polled = heap.poll();
+        var inserted = polled.insert(0);
+
+        assertEquals(1, heap.peek());
+        assertEquals(3, polled.peek());
+        assertEquals(0, inserted.peek());
+        assertEquals(List.of(1, 3, 5), drain(heap));
+        assertThrows(NoSuchElementException.class, () -> heap.clear().peek());
+    }
+
+    @Test
+    void testMeld() {
+        var a = new LeftistHeap<Integer>(Comparator.naturalOrder()).insert(4).insert(1).insert(7);
+        var b = new LeftistHeap<Integer>(Comparator.naturalOrder()).insert(2).insert(9);
+
+        assertEquals(List.of(1, 2, 4, 7, 9), drain(a.meld(b)));
+        assertEquals(List.of(1, 2, 4, 7, 9), drain(b.meld(a)));
+        assertSame(a, a.meld(b.clear()));
+        assertEquals(3, a.size());
+    }
+}
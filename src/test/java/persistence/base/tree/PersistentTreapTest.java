@@ -0,0 +1,74 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentTreapTest {
+
+    private static List<Integer> keys(Iterator<Map.Entry<Integer, String>> iterator) {
+        var result = new ArrayList<Integer>();
+        iterator.forEachRemaining(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    @Test
+    void testOldVersionsAreUnchanged() {
+        PersistentTreap<Integer, String> empty = new PersistentTreap<>(Comparator.naturalOrder());
+        var first = empty.put(1, "one").put(2, "two");
+        var second = first.put(2, "TWO").remove(1);
+
+        assertEquals(0, empty.size());
+        assertEquals("two", first.get(2));
+        assertEquals("one", first.get(1));
+        assertEquals("TWO", second.get(2));
+        assertFalse(second.containsKey(1));
+        assertSame(second, second.remove(42), "Удаление отсутствующего ключа не должно копировать дерево");
+    }
+
+    @Test
+    void testNavigationMatchesTreeMap() {
+        var random = new Random(1);
+        var expected = new TreeMap<Integer, String>();
+        PersistentTreap<Integer, String> treap = new PersistentTreap<>(Comparator.naturalOrder());
+        for (var i = 0; i < 2000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(4) == 0) {
+                treap = treap.remove(key);
+                expected.remove(key);
+            } else {
+                treap = treap.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+
+        assertEquals(expected.size(), treap.size());
+        assertEquals(expected.firstKey(), treap.firstKey());
+        assertEquals(expected.lastKey(), treap.lastKey());
+        assertEquals(new ArrayList<>(expected.keySet()), keys(treap.iterator()));
+
+        for (var probe = -3; probe < 5003; probe += 11) {
+            assertEquals(expected.floorKey(probe), treap.floorKey(probe, true));
+            assertEquals(expected.lowerKey(probe), treap.floorKey(probe, false));
+            assertEquals(expected.ceilingKey(probe), treap.ceilingKey(probe, true));
+            assertEquals(expected.higherKey(probe), treap.ceilingKey(probe, false));
+            assertEquals(expected.headMap(probe).size(), treap.rank(probe));
+        }
+
+        assertEquals(new ArrayList<>(expected.subMap(1000, true, 2000, false).keySet()),
+                keys(treap.iterator(1000, true, 2000, false)));
+        assertEquals(new ArrayList<>(expected.subMap(1000, false, 2000, true).keySet()),
+                keys(treap.iterator(1000, false, 2000, true)));
+    }
+
+    @Test
+    void testEmptyTreapBounds() {
+        PersistentTreap<Integer, String> treap = new PersistentTreap<>(Comparator.naturalOrder());
+
+        assertThrows(NoSuchElementException.class, treap::firstKey);
+        assertNull(treap.floorKey(1, true));
+        assertFalse(treap.iterator().hasNext());
+    }
+}
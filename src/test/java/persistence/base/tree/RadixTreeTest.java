@@ -0,0 +1,58 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RadixTreeTest {
+
+    private static List<String> keys(Iterator<Map.Entry<String, Integer>> entries) {
+        var result = new ArrayList<String>();
+        entries.forEachRemaining(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    @Test
+    void testRandomOperationsMatchTreeMap() {
+        var random = new Random(11);
+        var tree = RadixTree.<Integer>empty();
+        var expected = new TreeMap<String, Integer>();
+
+        for (var i = 0; i < 5000; i++) {
+            var key = Integer.toString(random.nextInt(2000), 3);
+            if (random.nextInt(3) == 0) {
+                tree = tree.remove(key);
+                expected.remove(key);
+            } else {
+                tree = tree.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertEquals(new ArrayList<>(expected.keySet()), keys(tree.iterator()), "Обход должен идти в лексикографическом порядке");
+        for (var key : expected.keySet()) {
+            assertEquals(expected.get(key), tree.get(key));
+        }
+        assertEquals(new ArrayList<>(expected.subMap("12", "13").keySet()), keys(tree.prefixScan("12")));
+        assertEquals(expected.subMap("12", "13").size(), tree.countWithPrefix("12"));
+    }
+
+    @Test
+    void testPrefixInsideEdgeAndSharing() {
+        var tree = RadixTree.<Integer>empty().put("/tenant/app/a", 1).put("/tenant/app/b", 2).put("/tenant/web", 3);
+        var removed = tree.remove("/tenant/web");
+
+        assertEquals(List.of("/tenant/app/a", "/tenant/app/b"), keys(tree.prefixScan("/tenant/a")));
+        assertEquals(List.of("/tenant/app/a", "/tenant/app/b", "/tenant/web"), keys(tree.prefixScan("/ten")));
+        assertEquals(List.of(), keys(tree.prefixScan("/tenant/x")));
+        assertEquals(List.of("/tenant/app/a", "/tenant/app/b"), keys(removed.prefixScan("")));
+        assertTrue(tree.containsKey("/tenant/web"), "Исходная версия не должна меняться");
+        assertFalse(tree.containsKey("/tenant"));
+        assertSame(tree, tree.remove("/tenant"));
+        assertNull(tree.put("", null).get(""));
+        assertTrue(tree.put("", null).containsKey(""));
+    }
+}
@@ -0,0 +1,52 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RopeTest {
+
+    @Test
+    void testRandomEditsMatchStringBuilder() {
+        var random = new Random(7);
+        var rope = Rope.empty();
+        var expected = new StringBuilder();
+
+        for (var i = 0; i < 3000; i++) {
+            if (expected.length() > 0 && random.nextInt(3) == 0) {
+                int from = random.nextInt(expected.length());
+                int to = Math.min(expected.length(), from + random.nextInt(700));
+                rope = rope.delete(from, to);
+                expected.delete(from, to);
+            } else {
+                int index = random.nextInt(expected.length() + 1);
+                var text = "x".repeat(random.nextInt(3) == 0 ? 600 : 1) + (char) ('a' + random.nextInt(26));
+                rope = rope.insert(index, text);
+                expected.insert(index, text);
+            }
+        }
+
+        assertEquals(expected.length(), rope.length());
+        assertEquals(expected.toString(), rope.toString());
+        int middle = expected.length() / 2;
+        assertEquals(expected.charAt(middle), rope.charAt(middle));
+        assertEquals(expected.substring(middle / 2, middle), rope.substring(middle / 2, middle));
+        assertEquals(expected.substring(10, 1500), rope.subSequence(10, 1500).toString());
+    }
+
+    @Test
+    void testOldVersionsAreUnchanged() {
+        var text = "abcdefghij".repeat(200);
+        var rope = Rope.of(text);
+        var edited = rope.insert(1000, "XYZ").delete(0, 10);
+
+        assertEquals(text, rope.toString());
+        assertEquals(text.substring(10, 1000) + "XYZ" + text.substring(1000), edited.toString());
+        assertEquals(text + text, rope.concat(rope).toString());
+        assertSame(rope, rope.insert(5, ""));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.charAt(text.length()));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.delete(5, 3));
+    }
+}
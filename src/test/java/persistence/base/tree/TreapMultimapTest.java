@@ -0,0 +1,53 @@
+package persistence.base.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreapMultimapTest {
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        var result = new ArrayList<T>();
+        iterator.forEachRemaining(result::add);
+        return result;
+    }
+
+    @Test
+    void testPutRemoveAndRange() {
+        var multimap = new TreapMultimap<Integer, String>(Comparator.naturalOrder(), Comparator.naturalOrder())
+                .put(2, "b").put(1, "a").put(2, "c").put(3, "d");
+        var removed = multimap.remove(2, "b").remove(3, "d");
+
+        assertEquals(4, multimap.size());
+        assertEquals(List.of("b", "c"), toList(multimap.get(2)));
+        assertSame(multimap, multimap.put(2, "b"), "Повторная пара не меняет мультисловарь");
+        assertSame(multimap, multimap.remove(5, "x"));
+
+        var range = toList(multimap.range(2, true, null, true));
+        assertEquals(List.of(Map.entry(2, "b"), Map.entry(2, "c"), Map.entry(3, "d")), range);
+
+        assertEquals(2, removed.size());
+        assertEquals(0, removed.count(3));
+        assertEquals(List.of("c"), toList(removed.get(2)));
+        assertEquals(2, multimap.count(2), "Исходная версия не должна меняться");
+        assertEquals(0, multimap.clear().size());
+    }
+
+    @Test
+    void testValuesEqualByOrderShareNode() {
+        var multimap = new TreapMultimap<Integer, String>(Comparator.naturalOrder(), Comparator.comparingInt(String::hashCode))
+                .put(1, "Aa").put(1, "BB").put(1, "C");
+
+        assertEquals(3, multimap.count(1), "Значения с равным хешем не должны сливаться");
+        assertEquals(List.of("C", "Aa", "BB"), toList(multimap.get(1)), "Равные по порядку значения идут в порядке добавления");
+        assertSame(multimap, multimap.put(1, "BB"));
+
+        var removed = multimap.remove(1, "Aa");
+        assertEquals(List.of("C", "BB"), toList(removed.get(1)));
+        assertEquals(2, removed.size());
+        assertSame(removed, removed.remove(1, "Aa"));
+        assertEquals(0, removed.remove(1, "BB").remove(1, "C").count(1));
+    }
+}
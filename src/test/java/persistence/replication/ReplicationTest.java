@@ -0,0 +1,208 @@
+package persistence.replication;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
+import persistence.structure.array.PersistentArray;
+import persistence.structure.list.PersistentLinkedList;
+import persistence.structure.map.PersistentMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    // Доставка всех отправленных пачек ведомому
+    private static <K, V> void drain(ReplicationLeader<K, V> leader, ReplicationFollower<K, V, ?> follower) throws InterruptedException {
+        do {
+            leader.ship();
+            while (follower.poll(0, TimeUnit.MILLISECONDS) > 0) {
+                // применяем всё полученное
+            }
+            leader.ship();
+        } while (leader.getAcknowledged() < leader.getLastSequence());
+    }
+
+    private static <T> List<T> toList(PersistentArray<T> array) {
+        var result = new ArrayList<T>();
+        array.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    void testMapReplicaReproducesSteps() throws InterruptedException {
+        var transport = new LocalTransport<String, Integer>();
+        var map = new PersistentMap<String, Integer>().add("A", 1);
+        var leader = new ReplicationLeader<>(map, transport, 2, 4);
+        var follower = new ReplicationFollower<>(new PersistentMap<String, Integer>(), transport);
+
+        map = map.add("B", 2).replace("A", 10).remove("B").add("C", 3);
+        drain(leader, follower);
+
+        var replica = follower.current();
+        assertEquals(map.getModificationCount(), replica.getModificationCount(), "Шаги ведомого должны совпадать с ведущим");
+        assertEquals(10, replica.get("A"));
+        assertNull(replica.get("B"));
+        assertEquals(3, replica.get("C"));
+        assertEquals(2, replica.version(2).get("B"), "Старые версии копии должны совпадать с ведущим");
+        assertEquals(leader.getLastSequence(), follower.getApplied());
+    }
+
+    @Test
+    void testArrayReplicaFollowsBranches() throws InterruptedException {
+        var transport = new LocalTransport<Integer, String>();
+        var array = new PersistentArray<String>();
+        var leader = new ReplicationLeader<>(array, transport, 16, 1);
+        var follower = new ReplicationFollower<>(new PersistentArray<String>(), transport);
+
+        array = array.add("A").add("B").add("C");
+        // Ветвь из версии [A, B]
+        var branch = array.undo().insert(0, "X");
+        drain(leader, follower);
+
+        var replica = follower.branch(1);
+        assertEquals(branch.getModificationCount(), replica.getModificationCount());
+        assertEquals(toList(branch), toList(replica));
+        assertEquals(List.of("A", "B"), toList(replica.version(2)));
+        assertEquals(List.of("A", "B", "C"), toList(follower.current()), "Основная ветвь не должна меняться записью в ветвь");
+    }
+
+    @Test
+    void testMainWrittenAfterBranch() throws InterruptedException {
+        var transport = new LocalTransport<Integer, String>();
+        var array = new PersistentArray<String>();
+        var leader = new ReplicationLeader<>(array, transport, 2, 2);
+        var follower = new ReplicationFollower<>(new PersistentArray<String>(), transport);
+
+        array = array.add("A").add("B").add("C");
+        var branch = array.undo().insert(0, "X");
+        array = array.add("D");
+        // Ветвь ветви, созданная после записи в основную
+        var nested = branch.undo().add("Y");
+        drain(leader, follower);
+
+        var replica = follower.current();
+        assertEquals(4, replica.getModificationCount());
+        assertEquals(List.of("A", "B", "C", "D"), toList(replica), "Запись в основную ветвь после ответвления");
+        assertEquals(List.of("X", "A", "B"), toList(follower.branch(1)));
+        assertEquals(List.of("A", "B", "Y"), toList(follower.branch(2)));
+        assertEquals(toList(nested), toList(follower.branch(2)));
+    }
+
+    @Test
+    void testLinkedListReplica() throws InterruptedException {
+        var transport = new LocalTransport<Integer, String>();
+        var list = new PersistentLinkedList<String>();
+        var leader = new ReplicationLeader<>(list, transport, 3, 2);
+        var follower = new ReplicationFollower<>(new PersistentLinkedList<String>(), transport);
+
+        list = list.addLast("B").addFirst("A").addLast("C").removeFirst().replace(0, "B2");
+        drain(leader, follower);
+
+        var replica = follower.current();
+        assertEquals(2, replica.size());
+        assertEquals("B2", replica.get(0));
+        assertEquals("C", replica.get(1));
+        assertEquals(list.getModificationCount(), replica.getModificationCount());
+    }
+
+    @Test
+    void testWindowLimitsBatchesInFlight() {
+        var transport = new LocalTransport<Integer, String>();
+        var array = new PersistentArray<String>();
+        var leader = new ReplicationLeader<>(array, transport, 1, 2);
+
+        array.add("A").add("B").add("C");
+
+        assertEquals(2, leader.ship(), "Окно должно ограничивать число пачек в пути");
+        assertEquals(0, leader.ship());
+        assertEquals(2, leader.getInFlight());
+    }
+
+    @Test
+    void testLostBatchTriggersCatchUp() throws InterruptedException {
+        var transport = new LocalTransport<String, Integer>();
+        var lossy = new ReplicationTransport<String, Integer>() {
+            private boolean dropped;
+
+            @Override
+            public void send(ReplicationBatch<String, Integer> batch) {
+                if (!dropped) {
+                    dropped = true;
+                    return;
+                }
+                transport.send(batch);
+            }
+
+            @Override
+            public ReplicationBatch<String, Integer> receive(long timeout, TimeUnit unit) throws InterruptedException {
+                return transport.receive(timeout, unit);
+            }
+
+            @Override
+            public void acknowledge(ReplicationAck ack) {
+                transport.acknowledge(ack);
+            }
+
+            @Override
+            public ReplicationAck pollAcknowledgement() {
+                return transport.pollAcknowledgement();
+            }
+        };
+
+        var map = new PersistentMap<String, Integer>();
+        var leader = new ReplicationLeader<>(map, lossy, 1, 4);
+        var follower = new ReplicationFollower<>(new PersistentMap<String, Integer>(), lossy);
+
+        map = map.add("A", 1).add("B", 2).add("C", 3);
+        drain(leader, follower);
+
+        assertEquals(3, follower.getApplied());
+        assertEquals(1, follower.current().get("A"), "Потерянное изменение должно быть передано повторно");
+        assertEquals(map.getModificationCount(), follower.current().getModificationCount());
+    }
+
+    @Test
+    void testFollowerResumesFromCheckpoint() throws InterruptedException {
+        var transport = new LocalTransport<String, Integer>();
+        var map = new PersistentMap<String, Integer>().add("A", 1).add("B", 2);
+        var leader = new ReplicationLeader<>(map, transport, 8, 1);
+
+        // Копия уже содержит первое изменение
+        var checkpoint = new PersistentMap<String, Integer>().add("A", 1);
+        var follower = new ReplicationFollower<>(checkpoint, 1, transport);
+        follower.requestCatchUp();
+        drain(leader, follower);
+
+        assertEquals(2, follower.current().get("B"));
+        assertEquals(2, follower.current().getModificationCount());
+    }
+
+    @Test
+    void testMultiChangeStepsReplicateAsOneVersion() throws InterruptedException {
+        var transport = new LocalTransport<String, Integer>();
+        var map = new PersistentMap<String, Integer>().applyStep(List.of(
+                new Change<>(0, ChangeType.Insert, "A", null, 1),
+                new Change<>(0, ChangeType.Insert, "B", null, 2)));
+        var leader = new ReplicationLeader<>(map, transport, 1, 4);
+        var follower = new ReplicationFollower<>(new PersistentMap<String, Integer>(), transport);
+
+        map = map.applyStep(List.of(
+                new Change<>(0, ChangeType.Remove, "A", null, null),
+                new Change<>(0, ChangeType.Update, "B", null, 20),
+                new Change<>(0, ChangeType.Insert, "C", null, 3))).add("D", 4);
+        drain(leader, follower);
+
+        var replica = follower.current();
+        assertEquals(3, follower.getApplied(), "Шаг из нескольких изменений подтверждается целиком");
+        assertEquals(map.getModificationCount(), replica.getModificationCount());
+        assertEquals(Set.of("B", "C", "D"), replica.keySet());
+        assertEquals(20, replica.get("B"));
+        assertEquals(Set.of("A", "B"), replica.version(1).keySet(), "Изменения первого шага не должны затираться");
+        assertEquals(Set.of("B", "C"), replica.version(2).keySet());
+    }
+}
@@ -1,12 +1,18 @@
 package persistence.structure.array;
 
 import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
 import persistence.base.ModificationCount;
+import persistence.base.Monoid;
 import persistence.base.PersistentContent;
 import persistence.base.PersistentNode;
+import persistence.base.VersionCache;
+import persistence.base.tree.ArrayBinaryTree;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,8 +205,8 @@ class PersistentArrayTest {
             undoneValues.add(s);
         }
 
-        assertEquals(List.of("A", "B"), undoneValues,
-                "После undo остаёмся в [A, B], т.к. C не восстанавливаем");
+        assertEquals(List.of("A", "B", "C"), undoneValues,
+                "После undo возвращаемся к [A, B, C]: узел C не удаляется из истории");
 
         PersistentArray<String> redone = undone.redo();
         List<String> redoneValues = new ArrayList<>();
@@ -263,4 +269,386 @@ class PersistentArrayTest {
         assertEquals("W", array.get(2));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testHeadMirror() {
+        PersistentArray<String> array = new PersistentArray<String>().withHeadMirror();
+        var v1 = array.add("A").add("B").add("C");
+        var v2 = v1.insert(1, "X").replace(0, "Y").remove(3);
+
+        // Последняя версия читается из зеркала
+        assertEquals(List.of("Y", "X", "B"), toList(v2));
+        assertEquals("X", v2.get(1));
+
+        // Старые версии продолжают читаться из истории узлов
+        assertEquals("A", v1.get(0));
+        assertEquals("B", v1.get(1));
+
+        // Изменение старой версии создаёт ветвь со своим зеркалом
+        var branch = v1.replace(2, "Z");
+        assertEquals(List.of("A", "B", "Z"), toList(branch));
+        assertEquals(List.of("Y", "X", "B"), toList(v2));
+    }
+
+    private static <T> List<T> toList(PersistentArray<T> array) {
+        List<T> values = new ArrayList<>();
+        array.forEach(values::add);
+        return values;
+    }
+
+    @Test
+    void testVersionCache() {
+        VersionCache cache = new VersionCache(8);
+        PersistentArray<String> array = new PersistentArray<String>().withVersionCache(cache);
+        var v1 = array.add("A").add("B");
+        var v2 = v1.replace(0, "X");
+
+        assertEquals(List.of("A", "B"), toList(v1));
+        assertEquals(List.of("A", "B"), toList(v1));
+        assertEquals("A", v1.get(0));
+        assertEquals(List.of("X", "B"), toList(v2));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testDiff() {
+        PersistentArray<String> array = new PersistentArray<>();
+        array = array.add("A").add("B").insert(1, "X").replace(0, "Y").remove(2); // [Y, X]
+
+        List<Change<Integer, String>> forward = array.diff(2, 5).toList();
+        assertEquals(3, forward.size());
+        assertEquals(ChangeType.Insert, forward.get(0).getType());
+        assertEquals(1, forward.get(0).getKey());
+        assertEquals(ChangeType.Update, forward.get(1).getType());
+        assertEquals("A", forward.get(1).getOldValue());
+        assertEquals(ChangeType.Remove, forward.get(2).getType());
+        assertEquals("B", forward.get(2).getOldValue());
+
+        List<Change<Integer, String>> backward = array.diff(5, 4).toList();
+        assertEquals(1, backward.size());
+        assertEquals(ChangeType.Insert, backward.get(0).getType());
+        assertEquals("B", backward.get(0).getNewValue());
+
+        PersistentArray<String> finalArray = array;
+        assertThrows(IllegalArgumentException.class, () -> finalArray.diff(0, 99));
+    }
+
+    @Test
+    void testAsList() {
+        PersistentArray<String> array = new PersistentArray<String>().add("A").add("B").add("C");
+        List<String> view = array.asList();
+        array.replace(1, "X"); // Новая версия не влияет на представление старой
+
+        assertEquals(List.of("A", "B", "C"), view);
+        assertTrue(view instanceof java.util.RandomAccess);
+        assertEquals(1, view.indexOf("B"));
+        assertEquals(List.of("B", "C"), view.subList(1, 3));
+        assertThrows(UnsupportedOperationException.class, () -> view.add("D"));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(3));
+    }
+
+    @Test
+    void testClearKeepsOldVersions() {
+        PersistentArray<String> array = new PersistentArray<String>().add("A").add("B");
+        var cleared = array.clearAll();
+        var refilled = cleared.add("C").insert(0, "D");
+
+        assertEquals(0, cleared.getCount());
+        assertThrows(IndexOutOfBoundsException.class, () -> cleared.get(0));
+        assertEquals(List.of("A", "B"), toList(cleared.undo()), "Очистка не должна терять предыдущую версию");
+        assertEquals(List.of("D", "C"), toList(refilled));
+        assertEquals("C", refilled.get(1));
+        assertEquals(List.of("C"), toList(refilled.undo()));
+        assertEquals(1, refilled.undo().getCount());
+
+        // Ветвь от версии до очистки
+        var branch = cleared.undo().add("E");
+        assertEquals(List.of("A", "B", "E"), toList(branch));
+        assertEquals(List.of("D", "C"), toList(refilled), "Исходная ветвь не должна меняться");
+    }
+
+    @Test
+    void testRepeatedClearsAreCheap() {
+        PersistentArray<Integer> array = new PersistentArray<>();
+        for (var i = 0; i < 100; i++) {
+            array = array.add(i).clearAll();
+        }
+
+        assertEquals(0, array.getCount());
+        assertEquals(List.of(99), toList(array.undo()));
+        assertEquals(List.of(42), toList(array.version(42 * 2 + 1)));
+    }
+
+    @Test
+    void testRangeAggregates() {
+        Monoid<Long> sum = Monoid.of(0L, Long::sum);
+        Monoid<Long> min = Monoid.of(Long.MAX_VALUE, Math::min);
+
+        // Индекс подключается после первых записей и всё равно видит их версии
+        PersistentArray<Long> array = new PersistentArray<Long>().add(5L).add(3L);
+        array.withAggregate(sum).withAggregate(min);
+        var v3 = array.add(10L);
+        var v4 = v3.replace(0, 1L);
+        var v5 = v4.insert(1, 7L);
+        var v6 = v5.remove(3);
+
+        assertEquals(8L, array.aggregate(sum, 0, 2));
+        assertEquals(18L, v3.aggregate(sum, 0, 3));
+        assertEquals(14L, v4.aggregate(sum, 0, 3));
+        assertEquals(10L, v5.aggregate(sum, 1, 3), "[1, 7, 3, 10]: сумма [1, 3) равна 10");
+        assertEquals(11L, v6.aggregate(sum, 0, 3));
+        assertEquals(1L, v6.aggregate(min, 0, 3));
+        assertEquals(3L, v3.aggregate(min, 0, 3));
+        assertEquals(0L, v6.clearAll().aggregate(sum, 0, 0));
+
+        // Ветвь от старой версии получает собственный индекс
+        var branch = v3.add(100L);
+        assertEquals(118L, branch.aggregate(sum, 0, 4));
+        assertEquals(11L, v6.aggregate(sum, 0, 3), "Исходная ветвь не должна меняться");
+
+        assertThrows(IllegalStateException.class, () -> v3.aggregate(Monoid.of(0L, Long::sum), 0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> v3.aggregate(sum, 0, 4));
+    }
+
+    @Test
+    public void testSliceAndConcat() {
+        var array = new PersistentArray<String>();
+        for (var i = 0; i < 10; i++) {
+            array = array.add("a" + i);
+        }
+        var changed = array.replace(2, "X");
+
+        var slice = array.slice(2, 6);
+        assertEquals(List.of("a2", "a3", "a4", "a5"), slice);
+        assertEquals(1, slice.segmentCount());
+        assertEquals(List.of("a3", "a4"), slice.slice(1, 3));
+        assertEquals("X", changed.subList(2, 3).get(0));
+        assertEquals("a2", slice.get(0), "Срез читает свою версию, а не последнюю");
+
+        var parts = array.splitAt(4);
+        assertEquals(4, parts.get(0).size());
+        assertEquals(6, parts.get(1).size());
+        var joined = parts.get(0).concat(parts.get(1));
+        assertEquals(toList(array), joined);
+        assertEquals(1, joined.segmentCount(), "Смежные отрезки одной версии должны слиться");
+
+        var mixed = array.slice(8, 10).concat(changed.slice(1, 3)).concat(array);
+        assertEquals(3, mixed.segmentCount());
+        assertEquals(14, mixed.size());
+        assertEquals(List.of("a8", "a9", "a1", "X", "a0"), mixed.slice(0, 5));
+        assertEquals(List.of("X", "a0", "a1"), mixed.slice(3, 6));
+        assertEquals("X", array.concat(changed).get(12));
+
+        assertTrue(array.slice(3, 3).isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> mixed.get(14));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.slice(2, 5));
+
+        // Копия среза — обычный массив с собственной историей
+        var copy = mixed.slice(0, 5).toPersistentArray().replace(0, "Z");
+        assertEquals(List.of("Z", "a9", "a1", "X", "a0"), copy.asList());
+        assertEquals("a8", copy.undo().get(0));
+        assertEquals("a8", mixed.get(0), "Копия не должна менять исходные версии");
+    }
+
+    @Test
+    void testRepeatedConcatAndSingleStepCopy() {
+        var array = new PersistentArray<Integer>().add(0).add(1).add(2);
+        var other = array.replace(1, -1);
+
+        var joined = array.slice(0, 0);
+        var expected = new ArrayList<Integer>();
+        for (var i = 0; i < 2000; i++) {
+            joined = joined.concat(i % 2 == 0 ? array : other);
+            expected.addAll(i % 2 == 0 ? List.of(0, 1, 2) : List.of(0, -1, 2));
+        }
+
+        assertEquals(2000, joined.segmentCount());
+        assertEquals(expected, joined);
+        assertEquals(expected.subList(2999, 3004), joined.slice(2999, 3004));
+        assertEquals(-1, joined.get(3004));
+
+        var copy = joined.toPersistentArray();
+        assertEquals(1, copy.getModificationCount(), "Копия записывается одним шагом");
+        assertEquals(expected, copy.asList());
+        assertEquals(0, copy.undo().getCount());
+    }
+
+    @Test
+    public void testNestedUpdates() {
+        var outer = new PersistentArray<PersistentArray<String>>()
+                .add(new PersistentArray<String>().add("a"))
+                .add(new PersistentArray<>());
+        var edited = outer.updateNested(1, inner -> inner.add("b")).updateNested(0, inner -> inner.replace(0, "c"));
+
+        assertEquals(4, edited.getModificationCount());
+        assertEquals("c", edited.get(0).get(0));
+        assertEquals("b", edited.get(1).get(0));
+        assertEquals("a", edited.undo().get(0).get(0), "Отмена массива отменяет и вложенное изменение");
+        assertEquals(0, edited.version(2).get(1).getCount());
+        assertSame(edited, edited.updateNested(0, inner -> inner));
+    }
+
+    @Test
+    void testBranchesAndMerge() {
+        var base = new PersistentArray<Integer>().add(1).add(2).add(3).add(4);
+        var feature = base.fork("feature").replace(0, 10).add(5);
+        var main = base.replace(3, 40);
+
+        assertEquals(Set.of("main", "feature"), main.branches());
+        assertEquals(5, main.checkout("feature").getCount());
+
+        var merged = main.merge(feature, (i, b, o, t) -> fail("Конфликтов быть не должно"));
+        assertEquals(List.of(10, 2, 3, 40, 5), merged.asList());
+        assertEquals(main.getModificationCount() + 1, merged.getModificationCount(), "Слияние записывается одним шагом");
+        assertEquals(main.asList(), merged.undo().asList());
+
+        var conflicting = feature.replace(1, 30);
+        assertEquals(List.of(10, 30, 3, 40, 5),
+                main.replace(1, 20).merge(conflicting, (i, b, o, t) -> Math.max(o, t)).asList());
+
+        var shrunk = base.fork("shrunk").remove(0);
+        assertEquals(List.of(2, 3, 40), main.merge(shrunk, (i, b, o, t) -> fail("Конфликтов быть не должно")).asList(),
+                "Замена переносится через удаление другой стороны");
+    }
+
+    @Test
+    void testMergeRebasesIndexesThroughShifts() {
+        var base = new PersistentArray<String>();
+        for (var i = 0; i < 6; i++) {
+            base = base.add("a" + i);
+        }
+        var ours = base.insert(0, "x");
+        var theirs = base.fork("theirs").replace(5, "T5");
+
+        assertEquals(List.of("x", "a0", "a1", "a2", "a3", "a4", "T5"), ours.merge(theirs, (i, b, o, t) -> t).asList());
+        assertEquals(List.of("x", "a0", "a1", "a2", "a3", "a4", "T5"), theirs.merge(ours, (i, b, o, t) -> o).asList());
+        assertEquals(theirs.asList(), theirs.merge(ours, (i, b, o, t) -> o).undo().asList(), "Слияние со сдвигом отменяется одним шагом");
+
+        // Изменение элемента, удалённого другой стороной, — конфликт с отсутствующим элементом
+        var removed = base.fork("removed").remove(2).insert(4, "y");
+        var replaced = base.replace(2, "T2").replace(4, "T4");
+        assertEquals(List.of("a0", "a1", "T2", "a3", "T4", "y", "a5"), replaced.merge(removed, (i, b, o, t) -> {
+            assertEquals("a2", b);
+            assertEquals("T2", o);
+            assertNull(t);
+            return o;
+        }).asList());
+        assertEquals(List.of("a0", "a1", "a3", "T4", "y", "a5"), replaced.merge(removed, (i, b, o, t) -> t).asList());
+    }
+
+    @Test
+    void testContentHash() {
+        var array = new PersistentArray<String>();
+        for (var i = 0; i < 1000; i++) {
+            array = array.add("v" + i);
+        }
+        var copy = new PersistentArray<String>();
+        for (var i = 0; i < 1000; i++) {
+            copy = copy.add("v" + i);
+        }
+
+        assertTrue(array.contentEquals(copy), "Одинаковое содержимое с разной историей должно совпадать");
+        assertEquals(-1, array.mismatch(copy));
+
+        var edited = copy.replace(500, "x").insert(700, "y");
+        assertFalse(array.contentEquals(edited));
+        assertEquals(500, array.mismatch(edited));
+        assertEquals(300, array.commonSuffix(edited), "Окончания совпадают после вставки");
+        assertEquals(array.contentHash(), edited.replace(500, "v500").remove(700).contentHash(),
+                "Возврат содержимого возвращает и хеш");
+        assertEquals(array.contentHash(), edited.undo().undo().contentHash());
+        assertEquals(array.contentHash(0, 500), edited.contentHash(0, 500));
+
+        var prefix = array.version(10);
+        assertEquals(10, array.mismatch(prefix), "Расхождение с префиксом находится в его длине");
+        assertNotEquals(array.contentHash(), array.clearAll().contentHash());
+        assertEquals(new PersistentArray<String>().contentHash(), array.clearAll().contentHash());
+        assertThrows(IndexOutOfBoundsException.class, () -> prefix.contentHash(0, 11));
+    }
+
+    @Test
+    void testEqualHashesAreConfirmedByElements() {
+        var array = new PersistentArray<String>().add("a").add("Aa").add("b").add("Aa").add("c");
+        var other = new PersistentArray<String>().add("a").add("BB").add("b").add("BB").add("c");
+        assertEquals(array.contentHash(), other.contentHash(), "\"Aa\" и \"BB\" имеют равные hashCode");
+
+        assertFalse(array.contentEquals(other));
+        assertEquals(1, array.mismatch(other));
+        assertEquals(1, array.commonSuffix(other));
+        assertFalse(new PersistentArray<String>().add("Aa").contentEquals(new PersistentArray<String>().add("BB")));
+        assertEquals(0, new PersistentArray<String>().add("Aa").mismatch(new PersistentArray<String>().add("BB")));
+    }
+
+    @Test
+    void testVersionsBeforeRemoveStayReadable() {
+        var array = new PersistentArray<String>().add("a").add("b").add("c");
+        var removed = array.remove(0);
+
+        assertEquals(List.of("b", "c"), removed.asList());
+        assertEquals(List.of("a", "b", "c"), toList(removed.version(3)), "Версия до удаления не должна терять элементы");
+        assertEquals(List.of("a"), toList(removed.version(1)));
+        assertEquals("c", removed.undo().get(2));
+        assertEquals(3, removed.undo().getCount());
+
+        // Узел последнего элемента переиспользуется добавлением, старые версии его не видят
+        var appended = removed.add("d");
+        assertEquals(List.of("b", "c", "d"), toList(appended));
+        assertEquals(List.of("a", "b", "c"), toList(appended.version(3)));
+        assertEquals(2, appended.version(4).getCount());
+    }
+
+    @Test
+    void testReplaceAfterRemoveChecksLength() {
+        var removed = new PersistentArray<String>().add("A").add("B").add("C").remove(2);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> removed.replace(2, "Z"),
+                "Узел за концом массива после удаления не должен быть доступен для замены");
+        assertSame(removed, removed.redo(), "Неудачная замена не должна создавать шаг");
+
+        var mirrored = new PersistentArray<String>().add("A").add("B").add("C").withHeadMirror().remove(2);
+        assertThrows(IndexOutOfBoundsException.class, () -> mirrored.replace(2, "Z"));
+        assertEquals(List.of("A", "B"), mirrored.asList());
+        assertSame(mirrored, mirrored.redo(), "Неудачная замена не должна публиковать шаг");
+    }
+
+    @Test
+    void testApplyStepWritesOneVersion() {
+        var array = new PersistentArray<String>().add("a").add("b").add("c");
+        var step = array.applyStep(List.of(
+                new Change<>(0, ChangeType.Insert, 0, null, "x"),
+                new Change<>(0, ChangeType.Remove, 2, null, null),
+                new Change<>(0, ChangeType.Update, 2, null, "C")));
+
+        assertEquals(List.of("x", "a", "C"), toList(step));
+        assertEquals(array.getModificationCount() + 1, step.getModificationCount());
+        assertEquals(List.of("a", "b", "c"), toList(step.undo()));
+        assertEquals("b", step.diff(3, 4).filter(c -> c.getType() == ChangeType.Remove).findFirst().orElseThrow().getOldValue());
+
+        var cleared = step.applyStep(List.of(
+                new Change<>(0, ChangeType.Insert, 3, null, "y"),
+                new Change<Integer, String>(0, ChangeType.Clear, null, null, null),
+                new Change<>(0, ChangeType.Insert, 0, null, "z")));
+        assertEquals(List.of("z"), toList(cleared), "Очистка внутри шага скрывает предыдущие изменения шага");
+        assertEquals(List.of("x", "a", "C"), toList(cleared.undo()));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> array.prepare(List.of(
+                new Change<>(0, ChangeType.Remove, 0, null, null),
+                new Change<>(0, ChangeType.Update, 2, null, "z"))));
+        assertEquals(List.of("x", "a", "C"), toList(step), "Ошибка проверки не оставляет записей");
+    }
+
+    @Test
+    void testArrayBinaryTreeNodeHistory() {
+        var array = new PersistentArray<String>(new ArrayBinaryTree<>()).add("A").add("B");
+        for (var i = 0; i < 10; i++) {
+            array = array.replace(i % 2, "V" + i);
+        }
+
+        assertEquals(List.of("V8", "V9"), List.of(array.get(0), array.get(1)));
+        assertEquals("A", array.version(2).get(0));
+        var branch = array.version(4).insert(0, "X");
+        assertEquals(List.of("X", "V0", "V1"), List.of(branch.get(0), branch.get(1), branch.get(2)));
+        assertEquals("V8", array.get(0), "Ветвь не должна менять исходную версию");
+    }
+}
@@ -0,0 +1,120 @@
+package persistence.structure.list;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistence.structure.list.LinkedNodePool.*;
+
+class LinkedNodePoolTest {
+
+    @Test
+    void testEmptyPoolLinksPseudoNodes() {
+        LinkedNodePool<String> pool = new LinkedNodePool<>(0);
+
+        assertEquals(TAIL, pool.next(HEAD, 0), "Голова должна ссылаться на хвост");
+        assertEquals(HEAD, pool.prev(TAIL, 0), "Хвост должен ссылаться на голову");
+        assertEquals(NONE, pool.next(HEAD, -1), "До шага создания связей нет");
+        assertEquals(2, pool.nodeCount());
+    }
+
+    @Test
+    void testLinksAndValuesAreVersioned() {
+        LinkedNodePool<String> pool = new LinkedNodePool<>(0);
+
+        // Шаг 1: [A]
+        int a = pool.allocate(1, "A");
+        pool.link(a, 1, HEAD, TAIL);
+        pool.linkNext(HEAD, 1, a);
+        pool.linkPrev(TAIL, 1, a);
+
+        // Шаг 2: меняем значение A
+        pool.setValue(a, 2, "A2");
+
+        assertEquals(TAIL, pool.next(HEAD, 0));
+        assertEquals(a, pool.next(HEAD, 1));
+        assertEquals("A", pool.value(a, 1));
+        assertEquals("A2", pool.value(a, 2));
+        assertNull(pool.value(a, 0), "До создания узла значения нет");
+    }
+
+    @Test
+    void testSameStepOverwritesRecord() {
+        LinkedNodePool<String> pool = new LinkedNodePool<>(0);
+        int a = pool.allocate(1, "first");
+        pool.setValue(a, 1, "second");
+        pool.link(a, 1, HEAD, TAIL);
+        pool.link(a, 1, HEAD, HEAD);
+
+        assertEquals("second", pool.value(a, 1));
+        assertEquals(HEAD, pool.next(a, 1));
+        // Две записи псевдоузлов + одна запись связей узла + одна запись значения
+        assertEquals(4, pool.recordCount());
+    }
+
+    @Test
+    void testTruncateDropsLaterSteps() {
+        LinkedNodePool<String> pool = new LinkedNodePool<>(0);
+        int a = pool.allocate(1, "A");
+        pool.link(a, 1, HEAD, TAIL);
+        pool.linkNext(HEAD, 1, a);
+        pool.linkPrev(TAIL, 1, a);
+        pool.setValue(a, 2, "B");
+
+        LinkedNodePool<String> copy = pool.truncate(1);
+
+        assertEquals(a, copy.next(HEAD, 5));
+        assertEquals("A", copy.value(a, 5), "Изменение на шаге 2 не должно попасть в копию");
+        assertEquals("B", pool.value(a, 5), "Исходный пул не должен меняться");
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        LinkedNodePool<Integer> pool = new LinkedNodePool<>(0);
+        int previous = HEAD;
+        for (var i = 1; i <= 100; i++) {
+            int id = pool.allocate(i, i);
+            pool.link(id, i, previous, TAIL);
+            pool.linkNext(previous, i, id);
+            pool.linkPrev(TAIL, i, id);
+            previous = id;
+        }
+
+        var count = 0;
+        for (int current = pool.next(HEAD, 100); current != TAIL; current = pool.next(current, 100)) {
+            count++;
+            assertEquals(count, pool.value(current, 100));
+        }
+        assertEquals(100, count);
+
+        count = 0;
+        for (int current = pool.next(HEAD, 40); current != TAIL; current = pool.next(current, 40)) {
+            count++;
+        }
+        assertEquals(40, count, "На шаге 40 в списке должно быть 40 узлов");
+    }
+
+    @Test
+    void testLongHeadHistoryAtEveryStep() {
+        LinkedNodePool<Integer> pool = new LinkedNodePool<>(0);
+        int[] ids = new int[1001];
+        ids[0] = TAIL;
+        // Каждый шаг добавляет узел в начало, поэтому история головы растёт с каждым шагом
+        for (var step = 1; step <= 1000; step++) {
+            int first = pool.next(HEAD, step - 1);
+            ids[step] = pool.allocate(step, step);
+            pool.link(ids[step], step, HEAD, first);
+            pool.linkNext(HEAD, step, ids[step]);
+            pool.linkPrev(first, step, ids[step]);
+        }
+
+        for (var step = 0; step <= 1000; step++) {
+            assertEquals(ids[step], pool.next(HEAD, step), "Первый узел на шаге " + step);
+        }
+        assertEquals(TAIL, pool.next(ids[1], 1000));
+        assertEquals(ids[1000], pool.prev(ids[999], 1000));
+
+        var copy = pool.truncate(500);
+        assertEquals(ids[500], copy.next(HEAD, 1000));
+        assertEquals(250, copy.value(ids[250], 1000));
+    }
+}
@@ -2,9 +2,13 @@ package persistence.structure.list;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
+import persistence.structure.array.PersistentArray;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,4 +203,129 @@ class PersistentLinkedListTest {
         assertEquals("W", list.get(1));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testOldVersionsStayReadable() {
+        var v1 = list.addLast("A");
+        var v2 = v1.addLast("B");
+        var v3 = v2.removeFirst();
+        var v4 = v3.replace(0, "C");
+
+        assertEquals("A", v1.get(0));
+        assertNull(v1.get(1));
+        assertEquals("A", v2.get(0));
+        assertEquals("B", v2.get(1));
+        assertEquals("B", v3.get(0));
+        assertEquals("C", v4.get(0));
+        assertTrue(v2.contains("A"));
+        assertFalse(v4.contains("A"));
+
+        // Изменение старой версии не затрагивает более новые
+        var branch = v2.addFirst("X");
+        assertEquals("X", branch.get(0));
+        assertEquals(3, branch.size());
+        assertEquals("C", v4.get(0));
+        assertEquals(1, v4.size());
+    }
+
+    @Test
+    void testVersionLengthsByStep() {
+        var full = list.addLast("A").addLast("B").addFirst("C").removeLast().clear().addLast("D");
+
+        assertEquals(List.of(0, 1, 2, 3, 2, 0, 1),
+                IntStream.rangeClosed(0, 6).mapToObj(step -> full.version(step).size()).toList());
+
+        // Ветвь продолжает длины от шага ответвления
+        var branch = full.version(3).removeFirst();
+        assertEquals(2, branch.size());
+        assertEquals(3, branch.undo().size());
+        assertEquals(1, full.size());
+    }
+
+    @Test
+    void testHeadMirror() {
+        list = list.addLast("A").withHeadMirror();
+        var v1 = list.addLast("B").addFirst("X");
+        var v2 = v1.removeLast().replace(1, "Y");
+
+        assertEquals("X", v2.get(0));
+        assertEquals("Y", v2.get(1));
+        assertNull(v2.get(2));
+        assertTrue(v2.contains("Y"));
+
+        assertEquals("X", v1.get(0));
+        assertEquals("A", v1.get(1));
+        assertEquals("B", v1.get(2));
+
+        var cleared = v2.clear();
+        assertEquals(0, cleared.size());
+        assertFalse(cleared.contains("X"));
+    }
+
+    @Test
+    void testDiff() {
+        list = list.addLast("A").addFirst("B").removeLast().replace(0, "C");
+
+        List<Change<Integer, String>> changes = list.diff(0, 4).toList();
+        assertEquals(4, changes.size());
+        assertEquals(ChangeType.Insert, changes.get(0).getType());
+        assertEquals(0, changes.get(1).getKey(), "addFirst вставляет по индексу 0");
+        assertEquals(ChangeType.Remove, changes.get(2).getType());
+        assertEquals(1, changes.get(2).getKey(), "removeLast удаляет последний индекс");
+        assertEquals("C", changes.get(3).getNewValue());
+
+        assertTrue(list.diff(4, 4).toList().isEmpty());
+    }
+
+    @Test
+    void testAsList() {
+        list = list.addLast("B").addLast("C").addFirst("A");
+        List<String> view = list.asList();
+        list.removeFirst(); // Новая версия не влияет на представление старой
+
+        assertEquals(List.of("A", "B", "C"), view);
+        assertEquals("C", view.get(2));
+        assertEquals("A", list.getFirst());
+        assertEquals("C", list.getLast());
+
+        var iterator = view.listIterator(3);
+        assertEquals("C", iterator.previous());
+        assertEquals("B", iterator.previous());
+        assertEquals("B", iterator.next());
+
+        var descending = new ArrayList<String>();
+        list.descendingIterator().forEachRemaining(descending::add);
+        assertEquals(List.of("C", "B", "A"), descending);
+
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+        assertThrows(java.util.NoSuchElementException.class, () -> new PersistentLinkedList<String>().getFirst());
+    }
+
+    @Test
+    void testContentHash() {
+        var list = new PersistentLinkedList<Integer>().addLast(2).addLast(3).addFirst(1);
+        var array = new PersistentArray<Integer>().add(1).add(2).add(3);
+
+        assertTrue(list.contentEquals(array), "Хеш не зависит от вида последовательности");
+        assertEquals(0, list.mismatch(array.replace(0, 5)));
+        assertFalse(list.contentEquals(list.removeLast()));
+        assertTrue(list.contentEquals(list.removeFirst().addFirst(1)));
+        assertEquals(list.contentHash(), list.removeLast().undo().contentHash());
+    }
+
+    @Test
+    void testApplyStepWritesOneVersion() {
+        list = list.addLast("A").addLast("B");
+        var step = list.applyStep(List.of(
+                new Change<>(0, ChangeType.Insert, 0, null, "X"),
+                new Change<>(0, ChangeType.Remove, 2, null, null),
+                new Change<>(0, ChangeType.Insert, 2, null, "Y"),
+                new Change<>(0, ChangeType.Update, 1, null, "a")));
+
+        assertEquals(List.of("X", "a", "Y"), List.of(step.get(0), step.get(1), step.get(2)));
+        assertEquals(3, step.size());
+        assertEquals(list.getModificationCount() + 1, step.getModificationCount());
+        assertEquals("B", step.undo().get(1));
+        assertThrows(IllegalArgumentException.class, () -> step.prepare(List.of(
+                new Change<>(0, ChangeType.Insert, 1, null, "Z"))));
+    }
+}
@@ -2,6 +2,13 @@ package persistence.structure.map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeLog;
+import persistence.base.ChangeType;
+import persistence.base.VersionCache;
+import persistence.structure.array.PersistentArray;
+import persistence.base.tree.ArrayBinaryTree;
+import persistence.base.tree.BPlusTree;
 
 import java.util.*;
 
@@ -148,4 +155,318 @@ class PersistentMapTest {
         assertEquals(4, map.get("D"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testHeadMirror() {
+        map = map.add("A", 1).withHeadMirror();
+        var v1 = map.add("B", 2);
+        var v2 = v1.replace("A", 10).remove("B").add("C", 3);
+
+        assertEquals(10, v2.get("A"));
+        assertNull(v2.get("B"));
+        assertEquals(3, v2.get("C"));
+        assertEquals(Set.of("A", "C"), v2.keySet());
+
+        // Старая версия разрешается через историю
+        assertEquals(1, v1.get("A"));
+        assertEquals(2, v1.get("B"));
+
+        var branch = v1.replace("B", 20);
+        assertEquals(20, branch.get("B"));
+        assertEquals(1, branch.get("A"));
+        assertNull(v2.get("B"));
+    }
+
+    @Test
+    void testVersionCache() {
+        VersionCache cache = new VersionCache(8);
+        map = map.withVersionCache(cache);
+        var v1 = map.add("A", 1).add("B", 2);
+        var v2 = v1.remove("A");
+
+        assertEquals(Set.of("A", "B"), v1.keySet());
+        assertEquals(Set.of("A", "B"), v1.keySet());
+        assertEquals(1, v1.get("A"));
+        assertEquals(Set.of("B"), v2.keySet());
+        assertNull(v2.get("A"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testDiff() {
+        map = map.add("A", 1).add("B", 2).replace("A", 10).remove("B");
+
+        List<Change<String, Integer>> changes = map.diff(2, 4).toList();
+        assertEquals(2, changes.size());
+        assertEquals(ChangeType.Update, changes.get(0).getType());
+        assertEquals("A", changes.get(0).getKey());
+        assertEquals(ChangeType.Remove, changes.get(1).getType());
+        assertEquals("B", changes.get(1).getKey());
+
+        // Откат очистки разворачивается во вставки содержимого до неё
+        var cleared = map.clear();
+        List<Change<String, Integer>> restore = cleared.diff(5, 4).toList();
+        assertEquals(1, restore.size());
+        assertEquals(ChangeType.Insert, restore.get(0).getType());
+        assertEquals("A", restore.get(0).getKey());
+        assertEquals(10, restore.get(0).getNewValue());
+    }
+
+    @Test
+    void testBPlusTreeKeyIndex() {
+        PersistentMap<String, Integer> large = new PersistentMap<>(new BPlusTree<>());
+        for (var i = 0; i < 200; i++) {
+            large = large.add("key" + i, i);
+        }
+        var removed = large.remove("key7").replace("key8", 80);
+
+        assertEquals(200, large.getCount());
+        assertEquals(7, large.get("key7"));
+        assertNull(removed.get("key7"));
+        assertEquals(80, removed.get("key8"));
+
+        // Ветвь из старой версии пересобирает индекс того же вида
+        var branch = large.undo().add("extra", -1);
+        assertEquals(-1, branch.get("extra"));
+        assertEquals(200, branch.getCount());
+        assertNull(branch.get("key199"));
+    }
+
+    @Test
+    void testArrayBinaryTreeKeyIndex() {
+        PersistentMap<String, Integer> compact = new PersistentMap<>(new ArrayBinaryTree<>());
+        compact = compact.add("A", 1).add("B", 2).remove("A");
+
+        assertNull(compact.get("A"));
+        assertEquals(2, compact.get("B"));
+        assertEquals(1, compact.undo().get("A"));
+        assertEquals(Set.of("A", "C"), compact.undo().undo().add("C", 3).keySet());
+    }
+
+    @Test
+    void testArrayBinaryTreeNodeHistory() {
+        PersistentMap<String, Integer> compact = new PersistentMap<String, Integer>(new ArrayBinaryTree<>(), new ArrayBinaryTree<>())
+                .add("A", 0);
+        for (var i = 1; i <= 20; i++) {
+            compact = compact.replace("A", i);
+        }
+        compact = compact.remove("A");
+
+        assertNull(compact.get("A"));
+        assertEquals(20, compact.undo().get("A"));
+        assertEquals(4, compact.version(5).get("A"));
+        // Ветвь из старой версии пересобирает узлы с тем же видом истории
+        var branch = compact.version(3).add("B", 0).replace("A", 30);
+        assertEquals(30, branch.get("A"));
+        assertEquals(2, branch.undo().undo().get("A"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            var history = new ArrayBinaryTree<Integer, Integer>();
+            history.insert(0, 0);
+            new PersistentMap<String, Integer>(new ArrayBinaryTree<>(), history);
+        });
+    }
+
+    @Test
+    void testAsMap() {
+        map = map.add("A", 1).add("B", 2).add("C", 1);
+        var removed = map.remove("B");
+        Map<String, Integer> view = removed.asMap();
+
+        assertEquals(2, view.size());
+        assertEquals(1, view.get("A"));
+        assertNull(view.get("B"), "Удалённый ключ не должен быть виден");
+        assertFalse(view.containsKey("B"));
+        assertEquals(Map.of("A", 1, "C", 1), new HashMap<>(view));
+        assertEquals(2, view.values().size(), "Одинаковые значения не должны схлопываться");
+        assertEquals(Set.of("A", "B", "C"), map.asMap().keySet());
+        assertThrows(UnsupportedOperationException.class, () -> view.put("D", 4));
+    }
+
+    @Test
+    void testLiveKeyIndex() {
+        map = map.add("A", 1).add("B", 2).remove("A");
+
+        assertFalse(map.contains("A"));
+        assertTrue(map.contains("B"));
+        assertEquals(1, map.getCount());
+
+        // Удалённый ключ можно добавить снова, старые версии сохраняют прежнее значение
+        var readded = map.add("A", 10);
+        assertEquals(10, readded.get("A"));
+        assertEquals(1, readded.undo().undo().get("A"));
+        assertEquals(2, readded.getCount());
+
+        // Количество после undo/redo берётся из индекса и учитывает удаления
+        assertEquals(1, readded.undo().getCount());
+        assertEquals(1, readded.undo().undo().redo().getCount());
+        assertEquals(Set.of("B"), readded.undo().keySet());
+        var withoutA = readded.undo();
+        assertSame(withoutA, withoutA.remove("A"), "Удаление отсутствующего ключа не создаёт версию");
+    }
+
+    @Test
+    void testNullValueIsDistinctFromRemoval() {
+        map = map.add("A", null).add("B", 2);
+
+        assertTrue(map.contains("A"), "Ключ со значением null должен существовать");
+        assertNull(map.get("A"));
+        assertEquals(2, map.getCount());
+        assertTrue(map.asMap().containsKey("A"));
+        assertFalse(map.remove("A").contains("A"));
+    }
+
+    @Test
+    void testClearIsConstantAndUndoable() {
+        map = map.add("A", 1).add("B", 2);
+        var cleared = map.clear();
+        var refilled = cleared.add("A", 10);
+
+        assertEquals(0, cleared.getCount());
+        assertNull(cleared.get("A"));
+        assertEquals(Set.of(), cleared.keySet());
+        assertEquals(Map.of("A", 1, "B", 2), new HashMap<>(cleared.undo().asMap()));
+        assertEquals(10, refilled.get("A"));
+        assertNull(refilled.get("B"));
+        assertEquals(1, refilled.getCount());
+    }
+
+    @Test
+    void testSecondaryIndex() {
+        java.util.function.Function<Integer, Boolean> even = v -> v % 2 == 0;
+        java.util.function.Function<Integer, Integer> tens = v -> v / 10;
+
+        map = map.add("A", 1).add("B", 2).add("C", 14);
+        // Индекс, подключённый к существующему словарю, покрывает и старые версии
+        map = map.withIndexes(List.of(even, tens));
+        var old = map;
+        map = map.replace("A", 4).remove("B").add("D", 25);
+
+        assertEquals(Set.of("B", "C"), toSet(old.keysWhere(even, true)));
+        assertEquals(Set.of("A", "C"), toSet(map.keysWhere(even, true)));
+        assertEquals(Set.of("D"), toSet(map.keysWhere(even, false)));
+        assertEquals(Set.of("B"), toSet(map.version(2).keysWhere(even, true)));
+        assertEquals(Set.of(), toSet(map.clear().keysWhere(even, true)));
+
+        var inRange = new ArrayList<Integer>();
+        map.keysInRange(tens, 1, 3).forEach(e -> inRange.add(e.getKey()));
+        assertEquals(List.of(1, 2), inRange);
+
+        // Ветвь от старой версии получает собственную копию индекса
+        var branch = old.add("E", 6);
+        assertEquals(Set.of("B", "C", "E"), toSet(branch.keysWhere(even, true)));
+        assertEquals(Set.of("A", "C"), toSet(map.keysWhere(even, true)), "Исходная ветвь не должна меняться");
+
+        assertThrows(IllegalStateException.class, () -> map.keysWhere(v -> v, 1));
+    }
+
+    @Test
+    void testSecondaryIndexKeepsKeysWithEqualHashes() {
+        // "Aa" и "BB" имеют одинаковый хеш, но это разные ключи
+        var index = new SecondaryIndex<String, Integer, Integer>(v -> v % 2, Comparator.naturalOrder(), new ChangeLog<>(), 0);
+        index.onChange(new Change<>(1, ChangeType.Insert, "Aa", null, 2));
+        index.onChange(new Change<>(2, ChangeType.Insert, "BB", null, 4));
+        index.onChange(new Change<>(3, ChangeType.Remove, "Aa", 2, null));
+
+        assertEquals(List.of("Aa", "BB"), toList(index.at(2).get(0)));
+        assertEquals(List.of("BB"), toList(index.at(3).get(0)), "Удаление одного ключа не должно удалять другой");
+    }
+
+    @Test
+    void testNestedUpdates() {
+        var outer = new PersistentMap<String, PersistentArray<Long>>()
+                .updateNested("a", new PersistentArray<>(), a -> a.add(1L));
+        var edited = outer.updateNested("a", a -> a.add(2L)).updateNested("a", a -> a.replace(0, 10L));
+
+        assertEquals(1, outer.getModificationCount(), "Создание и изменение вложенного массива занимают один шаг");
+        assertEquals(3, edited.getModificationCount());
+        assertEquals(10L, edited.get("a").get(0));
+        assertEquals(1L, edited.undo().get("a").get(0), "Отмена словаря отменяет и вложенное изменение");
+        assertEquals(1, edited.undo().undo().get("a").getCount());
+        assertEquals(2, edited.undo().undo().redo().get("a").getCount());
+        assertSame(edited, edited.updateNested("a", a -> a));
+        assertThrows(IllegalArgumentException.class, () -> edited.updateNested("b", a -> a));
+    }
+
+    @Test
+    void testNestedUpdateAfterUndoForksInnerOnce() {
+        var outer = new PersistentMap<String, PersistentArray<Long>>()
+                .updateNested("a", new PersistentArray<>(), a -> a.add(1L))
+                .updateNested("a", a -> a.add(2L))
+                .updateNested("a", a -> a.add(3L));
+        var undone = outer.undo();
+        assertNotSame(undone.get("a"), undone.get("a").redo(), "После отмены вложенная версия не последняя");
+
+        var branch = undone.updateNested("a", a -> a.replace(0, 10L));
+        var inner = branch.get("a");
+        assertSame(inner, inner.redo(), "Первое изменение ответвляет вложенное содержимое");
+        var next = branch.updateNested("a", a -> a.add(4L));
+        assertSame(next.get("a"), next.get("a").redo(), "Следующие изменения идут в новую ветвь");
+
+        assertEquals(List.of(10L, 2L, 4L), next.get("a").asList());
+        assertEquals(List.of(1L, 2L, 3L), outer.get("a").asList(), "Старая ветвь не меняется");
+        assertEquals(List.of(1L, 2L), undone.get("a").asList());
+    }
+
+    @Test
+    void testBranchesAndMerge() {
+        var base = new PersistentMap<String, Integer>().add("a", 1).add("b", 2).add("c", 3);
+        var feature = base.fork("feature").replace("a", 10).add("d", 4);
+        var main = base.replace("b", 20).remove("c");
+
+        assertEquals(List.of("main", "feature"), new ArrayList<>(main.branches()));
+        assertEquals(10, main.checkout("feature").get("a"));
+        assertEquals(2, main.checkout("main").getCount());
+        assertEquals(1, base.get("a"), "Исходная версия не должна меняться");
+        assertThrows(IllegalArgumentException.class, () -> base.fork("feature"));
+        assertThrows(IllegalArgumentException.class, () -> base.checkout("none"));
+
+        var merged = main.merge(feature, (k, b, o, t) -> fail("Конфликтов быть не должно"));
+        assertEquals(Map.of("a", 10, "b", 20, "d", 4), merged.asMap());
+        assertEquals(main.getModificationCount() + 1, merged.getModificationCount(), "Слияние записывается одним шагом");
+        assertEquals(main.asMap(), merged.undo().asMap());
+        assertSame(main, main.merge(base, (k, b, o, t) -> o), "Предок ничего не добавляет");
+
+        var conflicting = feature.replace("b", 30);
+        var resolved = main.merge(conflicting, (k, b, o, t) -> b + o + t);
+        assertEquals(52, resolved.get("b"), "Конфликт получает значение предка и обеих сторон");
+        assertFalse(main.merge(conflicting, (k, b, o, t) -> null).contains("b"));
+
+        var other = new PersistentMap<String, Integer>().add("a", 1);
+        assertThrows(IllegalArgumentException.class, () -> main.merge(other, (k, b, o, t) -> o));
+    }
+
+    private static <T> List<T> toList(Iterator<T> items) {
+        var result = new ArrayList<T>();
+        items.forEachRemaining(result::add);
+        return result;
+    }
+
+    private static <T> Set<T> toSet(Iterable<T> items) {
+        var result = new HashSet<T>();
+        items.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    void testContentHash() {
+        var map = new PersistentMap<String, Integer>().add("a", 1).add("b", 2).add("c", 3);
+        var other = new PersistentMap<String, Integer>().add("c", 3).add("a", 1).add("b", 2);
+
+        assertTrue(map.contentEquals(other), "Хеш не зависит от порядка добавления");
+        assertFalse(map.contentEquals(other.replace("b", 5)));
+        assertTrue(map.contentEquals(other.replace("b", 5).replace("b", 2)));
+        assertFalse(map.contentEquals(map.remove("a")));
+        assertTrue(map.contentEquals(map.remove("a").add("a", 1)));
+        assertEquals(new PersistentMap<String, Integer>().contentHash(), map.clear().contentHash());
+
+        var branch = map.version(1).add("d", 4);
+        assertEquals(map.version(1).add("d", 4).contentHash(), branch.contentHash(), "Ветви сохраняют хеши");
+        assertTrue(map.contentEquals(map.undo().redo()));
+
+        var colliding = new PersistentMap<String, String>().add("k", "Aa");
+        var confirmed = new PersistentMap<String, String>().add("k", "BB");
+        assertEquals(colliding.contentHash(), confirmed.contentHash());
+        assertFalse(colliding.contentEquals(confirmed), "Совпадение хешей подтверждается сравнением пар");
+    }
+}
@@ -0,0 +1,104 @@
+package persistence.structure.map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSortedMapTest {
+
+    private PersistentSortedMap<Integer, String> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new PersistentSortedMap<>();
+    }
+
+    private static List<Integer> keys(Iterable<Map.Entry<Integer, String>> entries) {
+        var result = new ArrayList<Integer>();
+        entries.forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    @Test
+    void testAddGetRemove() {
+        map = map.add(10, "A").add(5, "B").add(20, "C");
+
+        assertEquals("A", map.get(10));
+        assertEquals(3, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.add(10, "X"));
+        assertThrows(IllegalArgumentException.class, () -> map.replace(11, "X"));
+
+        var removed = map.remove(5);
+        assertNull(removed.get(5));
+        assertEquals(2, removed.size());
+        assertSame(removed, removed.remove(5), "Удаление отсутствующего ключа не создаёт версию");
+    }
+
+    @Test
+    void testNavigationPerVersion() {
+        map = map.add(10, "A").add(20, "B").add(30, "C");
+        var old = map;
+        map = map.remove(20).add(25, "D");
+
+        assertEquals(20, old.floorKey(24));
+        assertEquals(10, map.floorKey(24));
+        assertEquals(25, map.ceilingKey(21));
+        assertEquals(10, map.lowerKey(25));
+        assertEquals(30, map.higherKey(25));
+        assertEquals(10, map.firstKey());
+        assertEquals(30, map.lastKey());
+        assertNull(map.floorKey(5));
+
+        assertEquals(List.of(10, 20), keys(map.version(2).subMap(0, 30)), "Диапазон должен читаться из старой версии");
+        assertEquals(List.of(10, 25), keys(map.subMap(10, 30)));
+        assertEquals(List.of(10), keys(map.headMap(25)));
+        assertEquals(List.of(25, 30), keys(map.tailMap(25)));
+        assertEquals(2, map.countInRange(10, 30));
+    }
+
+    @Test
+    void testCustomComparator() {
+        PersistentSortedMap<String, Integer> reversed = new PersistentSortedMap<>(Comparator.reverseOrder());
+        reversed = reversed.add("a", 1).add("c", 3).add("b", 2);
+
+        assertEquals("c", reversed.firstKey());
+        assertEquals(List.of("c", "b", "a"), new ArrayList<>(reversed.keySet()));
+    }
+
+    @Test
+    void testUndoRedoAndBranch() {
+        map = map.add(1, "A").add(2, "B").add(3, "C");
+        var undone = map.undo();
+
+        assertNull(undone.get(3));
+        assertEquals("C", undone.redo().get(3));
+
+        var branch = undone.add(4, "D");
+        assertEquals(List.of(1, 2, 4), keys(branch));
+        assertEquals(List.of(1, 2, 3), keys(map), "Исходная ветвь не должна меняться");
+    }
+
+    @Test
+    void testClearAndDiff() {
+        map = map.add(1, "A").add(2, "B").clear();
+
+        assertEquals(0, map.size());
+        assertThrows(NoSuchElementException.class, map::firstKey);
+
+        var back = map.diff(3, 2).toList();
+        assertEquals(2, back.size(), "Отмена очистки должна развернуться во вставки");
+        assertTrue(back.stream().allMatch(c -> c.getType() == ChangeType.Insert));
+
+        var replayed = new PersistentSortedMap<Integer, String>();
+        for (var change : map.diff(0, 2).toList()) {
+            replayed = replayed.apply(change);
+        }
+        assertEquals(List.of(1, 2), keys(replayed));
+        assertEquals("BB", replayed.apply(new Change<>(3, ChangeType.Update, 2, "B", "BB")).get(2));
+    }
+}
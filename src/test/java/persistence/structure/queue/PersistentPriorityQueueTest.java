@@ -0,0 +1,110 @@
+package persistence.structure.queue;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentPriorityQueueTest {
+
+    private static <T> List<T> toList(Iterable<T> queue) {
+        var result = new ArrayList<T>();
+        queue.forEach(result::add);
+        return result;
+    }
+
+    private static <T> List<T> drain(PersistentPriorityQueue<T> queue) {
+        var result = new ArrayList<T>();
+        for (var current = queue; !current.isEmpty(); current = current.poll()) {
+            result.add(current.peek());
+        }
+        return result;
+    }
+
+    @Test
+    void testPeekAndPollPerVersion() {
+        var queue = new PersistentPriorityQueue<Integer>().insert(5).insert(2).insert(8);
+        var polled = queue.poll();
+
+        assertEquals(2, queue.peek());
+        assertEquals(5, polled.peek());
+        assertEquals(2, polled.size());
+        assertEquals(2, polled.undo().peek(), "Отмена возвращает извлечённый элемент");
+        assertEquals(5, polled.undo().redo().peek());
+        assertEquals(List.of(2, 5, 8), toList(queue));
+        assertEquals(8, queue.get(2));
+        assertEquals(List.of(5), toList(queue.version(1)));
+        assertThrows(NoSuchElementException.class, () -> queue.clear().peek());
+    }
+
+    @Test
+    void testReplaceByPriorityPosition() {
+        var queue = new PersistentPriorityQueue<Integer>().insert(5).insert(2).insert(8);
+
+        var replaced = queue.replace(1, 10);
+        assertEquals(List.of(2, 8, 10), toList(replaced), "Новый элемент занимает место по приоритету");
+        assertEquals(List.of(1, 2, 8), toList(replaced.replace(2, 1)));
+        assertEquals(List.of(2, 5, 8), toList(replaced.undo()));
+
+        var change = replaced.diff(queue.getModificationCount(), replaced.getModificationCount()).findFirst().orElseThrow();
+        assertEquals(ChangeType.Update, change.getType());
+        assertEquals(1, change.getKey());
+        assertEquals(5, change.getOldValue());
+        assertThrows(IndexOutOfBoundsException.class, () -> queue.replace(3, 1));
+    }
+
+    @Test
+    void testEqualPrioritiesKeepOneOrder() {
+        var random = new Random(42);
+        for (var trial = 0; trial < 200; trial++) {
+            var queue = new PersistentPriorityQueue<String>(Comparator.comparingInt(String::length));
+            for (var i = 0; i < 20; i++) {
+                queue = queue.insert("x".repeat(random.nextInt(3) + 1) + i);
+            }
+            assertEquals(toList(queue), drain(queue), "Обход и извлечение дают один порядок");
+
+            int index = random.nextInt(queue.size());
+            var replaced = queue.replace(index, "r");
+            var change = replaced.diff(queue.getModificationCount(), replaced.getModificationCount()).findFirst().orElseThrow();
+            assertEquals(queue.get(index), change.getOldValue(), "Заменяется элемент, возвращаемый get");
+
+            var expected = toList(queue);
+            expected.remove(index);
+            var rest = toList(replaced);
+            rest.remove("r");
+            assertEquals(expected, rest, "Порядок остальных элементов не меняется");
+        }
+    }
+
+    @Test
+    void testBranchFromOldVersion() {
+        var queue = new PersistentPriorityQueue<String>(Comparator.reverseOrder()).insert("a").insert("c").insert("b");
+        var branch = queue.undo().insert("z");
+
+        assertEquals("z", branch.peek());
+        assertEquals(List.of("z", "c", "a"), toList(branch));
+        assertEquals(List.of("c", "b", "a"), toList(queue), "Исходная ветвь не должна меняться");
+    }
+
+    @Test
+    void testMeld() {
+        var a = new PersistentPriorityQueue<Integer>().insert(3).insert(1);
+        var b = new PersistentPriorityQueue<Integer>().insert(2).insert(4);
+
+        var published = new ArrayList<Change<Integer, Integer>>();
+        a.addChangeListener(published::add);
+
+        var melded = a.meld(b);
+        assertEquals(1, published.size(), "Слияние публикует одно изменение на шаг");
+        assertEquals(List.of(1, 2, 3, 4), toList(melded));
+        assertEquals(a.getModificationCount() + 1, melded.getModificationCount());
+        assertEquals(2, melded.diff(a.getModificationCount(), melded.getModificationCount())
+                .filter(c -> c.getType() == ChangeType.Insert).count());
+        assertEquals(List.of(1, 3), toList(melded.undo()));
+        assertThrows(IllegalArgumentException.class,
+                () -> a.meld(new PersistentPriorityQueue<>(Comparator.reverseOrder())));
+    }
+}
@@ -0,0 +1,58 @@
+package persistence.structure.rope;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.ChangeType;
+
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentRopeTest {
+
+    @Test
+    void testEditsAndUndo() {
+        var rope = new PersistentRope().append("Hello").append(" world");
+        var edited = rope.insert(5, ",").delete(0, 1).replace(0, "Y");
+
+        assertEquals("Hello world", rope.toString());
+        assertEquals("Yllo, world", edited.toString());
+        assertEquals(11, edited.length());
+        assertEquals('Y', edited.charAt(0));
+        assertEquals("w", edited.get(6));
+        assertEquals("ello, world", edited.undo().toString());
+        assertEquals("Hello, world", edited.undo().undo().toString());
+        assertEquals("Yllo, world", edited.undo().redo().toString());
+        assertEquals("", edited.clear().toString());
+        assertEquals("Yllo, world", edited.clear().undo().toString());
+        assertEquals("world", edited.substring(6, 11));
+    }
+
+    @Test
+    void testTypingIntoLargeDocument() {
+        var rope = new PersistentRope().append("0123456789".repeat(100_000));
+        var original = rope;
+        for (var i = 0; i < 1000; i++) {
+            rope = rope.insert(500_000, "a");
+        }
+
+        assertEquals(1_001_000, rope.length());
+        assertEquals("9a", rope.substring(499_999, 500_001));
+        assertEquals("a0", rope.substring(500_999, 501_001));
+        assertEquals(1_000_000, original.length(), "Исходная версия не должна меняться");
+        assertEquals("9012", rope.version(1).substring(499_999, 500_003));
+    }
+
+    @Test
+    void testBranchAndDiff() {
+        var rope = new PersistentRope().append("abc").append("def");
+        var branch = rope.undo().append("xyz");
+
+        assertEquals("abcxyz", branch.toString());
+        assertEquals("abcdef", rope.toString(), "Исходная ветвь не должна меняться");
+
+        var changes = rope.delete(1, 4).diff(2, 3).collect(Collectors.toList());
+        assertEquals(1, changes.size());
+        assertEquals(ChangeType.Remove, changes.get(0).getType());
+        assertEquals("bcd", changes.get(0).getOldValue());
+    }
+}
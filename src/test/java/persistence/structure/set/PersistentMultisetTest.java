@@ -0,0 +1,68 @@
+package persistence.structure.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMultisetTest {
+
+    private static Map<String, Integer> counts(PersistentMultiset<String> multiset) {
+        var result = new HashMap<String, Integer>();
+        multiset.forEach(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    @Test
+    void testCounts() {
+        var multiset = new PersistentMultiset<String>().add("a").add("a").add("b", 3);
+
+        assertEquals(2, multiset.count("a"));
+        assertEquals(3, multiset.count("b"));
+        assertEquals(0, multiset.count("c"));
+        assertEquals(5, multiset.size());
+        assertEquals(2, multiset.distinctCount());
+
+        var removed = multiset.remove("a").removeAll("b");
+        assertEquals(Map.of("a", 1), counts(removed));
+        assertEquals(1, removed.size());
+        assertEquals(4, removed.undo().size(), "Отмена возвращает кратности предыдущей версии");
+        assertSame(removed, removed.remove("c"));
+        assertThrows(IllegalArgumentException.class, () -> multiset.add("a", 0));
+        assertThrows(IllegalArgumentException.class, () -> multiset.setCount("a", -1));
+    }
+
+    @Test
+    void testBulkOperations() {
+        var a = new PersistentMultiset<String>().add("x", 3).add("y", 1).add("z", 2);
+        var b = new PersistentMultiset<String>().add("x", 1).add("y", 4);
+
+        var union = a.union(b);
+        assertEquals(Map.of("x", 3, "y", 4, "z", 2), counts(union));
+        assertEquals(9, union.size());
+        assertEquals(counts(union), counts(b.union(a)));
+        assertEquals(a.getModificationCount() + 1, union.getModificationCount());
+
+        assertEquals(Map.of("x", 1, "y", 1), counts(a.intersect(b)));
+        assertEquals(2, b.intersect(a).size());
+
+        var difference = a.difference(b);
+        assertEquals(Map.of("x", 2, "z", 2), counts(difference));
+        assertEquals(4, difference.size());
+        assertEquals(Map.of("y", 3), counts(b.difference(a)));
+        assertEquals(3, b.difference(a).size());
+
+        assertEquals(2, difference.diff(a.getModificationCount(), difference.getModificationCount()).count(),
+                "Изменились кратности x и y");
+        assertEquals(6, difference.undo().size());
+    }
+
+    @Test
+    void testEqualHashesKeepSeparateCounts() {
+        var multiset = new PersistentMultiset<String>().add("Aa", 2).add("BB", 3);
+
+        assertEquals(Map.of("Aa", 2, "BB", 3), counts(multiset));
+        assertEquals(Map.of("Aa", 2), counts(multiset.difference(new PersistentMultiset<String>().add("BB", 5))));
+    }
+}
@@ -0,0 +1,125 @@
+package persistence.structure.set;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.ChangeType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSetTest {
+
+    private static <T> Set<T> toSet(Iterable<T> elements) {
+        var result = new HashSet<T>();
+        elements.forEach(result::add);
+        return result;
+    }
+
+    private static <T> List<T> toList(Iterable<T> elements) {
+        var result = new ArrayList<T>();
+        elements.forEach(result::add);
+        return result;
+    }
+
+    private static PersistentSet<Integer> setOf(Integer... elements) {
+        var set = new PersistentSet<Integer>();
+        for (var element : elements) {
+            set = set.add(element);
+        }
+        return set;
+    }
+
+    @Test
+    void testAddRemoveUndo() {
+        var set = setOf(1, 2, 3);
+
+        assertTrue(set.contains(2));
+        assertEquals(3, set.size());
+        assertSame(set, set.add(2), "Повторное добавление не создаёт версию");
+        assertSame(set, set.remove(4), "Удаление отсутствующего элемента не создаёт версию");
+
+        var removed = set.remove(2);
+        assertFalse(removed.contains(2));
+        assertTrue(removed.undo().contains(2));
+        assertEquals(2, removed.undo().undo().size());
+        assertEquals(0, removed.clear().size());
+        assertEquals(Set.of(1, 3), toSet(removed.clear().undo()));
+        assertEquals(Set.of(1, 2, 3), toSet(removed.undo().redo().undo()));
+    }
+
+    @Test
+    void testBranchFromOldVersion() {
+        var set = setOf(1, 2, 3);
+        var branch = set.undo().add(10);
+
+        assertEquals(Set.of(1, 2, 10), toSet(branch));
+        assertEquals(Set.of(1, 2, 3), toSet(set), "Исходная ветвь не должна меняться");
+    }
+
+    @Test
+    void testBulkOperationsAreSingleVersion() {
+        var a = setOf(1, 2, 3, 4, 5, 6);
+        var b = setOf(4, 5, 6, 7);
+
+        var union = a.union(b);
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6, 7), toSet(union));
+        assertEquals(a.getModificationCount() + 1, union.getModificationCount());
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6, 7), toSet(b.union(a)));
+
+        assertEquals(Set.of(4, 5, 6), toSet(a.intersect(b)));
+        assertEquals(Set.of(4, 5, 6), toSet(b.intersect(a)));
+        assertEquals(Set.of(1, 2, 3), toSet(a.difference(b)));
+        assertEquals(Set.of(7), toSet(b.difference(a)));
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6), toSet(union.undo()));
+
+        // Журнал шага содержит изменения относительно исходной версии
+        var inserted = b.union(a).diff(b.getModificationCount(), b.getModificationCount() + 1)
+                .filter(c -> c.getType() == ChangeType.Insert)
+                .map(c -> c.getKey())
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(1, 2, 3), inserted);
+        assertEquals(3, a.difference(b).diff(a.getModificationCount(), a.getModificationCount() + 1).count());
+    }
+
+    @Test
+    void testComparatorsMustMatch() {
+        var a = setOf(1, 2);
+        var b = new PersistentSet<Integer>(Comparator.reverseOrder()).add(1);
+
+        assertThrows(IllegalArgumentException.class, () -> a.union(b));
+        var ordered = new ArrayList<Integer>();
+        b.add(3).add(2).forEach(ordered::add);
+        assertEquals(List.of(3, 2, 1), ordered, "Обход идёт в порядке компаратора");
+    }
+
+    @Test
+    void testEqualHashesAreDistinctElements() {
+        var set = new PersistentSet<String>().add("Aa").add("BB");
+
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertEquals(2, set.size(), "Элементы с одинаковым хешем различаются естественным порядком");
+        assertTrue(set.remove("Aa").contains("BB"));
+        assertEquals(List.of(1, 2, 3), toList(setOf(3, 1, 2)), "По умолчанию обход идёт в естественном порядке");
+    }
+
+    @Test
+    void testBulkOperationPublishesSingleChange() {
+        var large = setOf(1, 2, 3, 4, 5, 6, 7, 8);
+        var small = setOf(8, 9);
+        var published = new ArrayList<Change<Integer, Boolean>>();
+        small.addChangeListener(published::add);
+
+        var union = small.union(large);
+        assertEquals(1, published.size(), "Массовая операция публикует одно изменение на шаг");
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6, 7), published.get(0).expand()
+                .map(Change::getKey)
+                .collect(Collectors.toSet()));
+
+        var back = union.diff(union.getModificationCount(), small.getModificationCount())
+                .filter(c -> c.getType() == ChangeType.Remove)
+                .count();
+        assertEquals(7, back, "Обратный diff разворачивает массовое изменение в удаления");
+    }
+}
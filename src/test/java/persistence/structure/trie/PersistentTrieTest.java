@@ -0,0 +1,51 @@
+package persistence.structure.trie;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.ChangeType;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentTrieTest {
+
+    private static List<String> keys(Iterable<Map.Entry<String, Integer>> entries) {
+        var result = new ArrayList<String>();
+        entries.forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    @Test
+    void testVersionedPrefixScan() {
+        var trie = new PersistentTrie<Integer>()
+                .put("/t1/app/x", 1)
+                .put("/t1/app/y", 2)
+                .put("/t2/app/x", 3);
+        var changed = trie.remove("/t1/app/x").put("/t1/db", 4);
+
+        assertEquals(List.of("/t1/app/x", "/t1/app/y"), keys(trie.prefixScan("/t1/")));
+        assertEquals(List.of("/t1/app/y", "/t1/db"), keys(changed.prefixScan("/t1/")));
+        assertEquals(List.of("/t1/app/x"), keys(changed.version(1).prefixScan("/t1")));
+        assertEquals(1, changed.countWithPrefix("/t2"));
+        assertEquals(3, changed.size());
+        assertEquals(List.of("/t1/app/x", "/t1/app/y"), keys(changed.undo().undo().prefixScan("/t1/")));
+    }
+
+    @Test
+    void testPutReplaceRemove() {
+        var trie = new PersistentTrie<Integer>().put("a", 1).put("ab", 2).put("a", 10);
+
+        assertEquals(10, trie.get("a"));
+        assertEquals(2, trie.size());
+        assertEquals(ChangeType.Update, trie.diff(2, 3).findFirst().orElseThrow().getType());
+        assertEquals(1, trie.undo().get("a"));
+        assertThrows(IllegalArgumentException.class, () -> trie.replace("b", 1));
+        assertSame(trie, trie.remove("b"));
+        assertEquals(0, trie.clear().size());
+        assertEquals(2, trie.clear().undo().size());
+
+        var branch = trie.undo().put("b", 5);
+        assertEquals(List.of("a", "ab", "b"), keys(branch));
+        assertEquals(List.of("a", "ab"), keys(trie), "Исходная ветвь не должна меняться");
+    }
+}
@@ -0,0 +1,144 @@
+package persistence.transaction;
+
+import org.junit.jupiter.api.Test;
+import persistence.base.Change;
+import persistence.base.VersionClock;
+import persistence.structure.array.PersistentArray;
+import persistence.structure.list.PersistentLinkedList;
+import persistence.structure.map.PersistentMap;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+
+    private static <T> List<T> toList(Iterable<T> elements) {
+        var result = new ArrayList<T>();
+        elements.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    void testCommitUndoRedo() {
+        var manager = new TransactionManager();
+        var map = manager.register(new PersistentMap<String, Integer>());
+        var list = manager.register(new PersistentLinkedList<String>());
+
+        var transaction = manager.begin()
+                .insert(map, "a", 1)
+                .insert(list, 0, "a")
+                .insert(map, "b", 2);
+        assertEquals(0, map.get().getCount(), "До фиксации операции не выполняются");
+
+        transaction.commit();
+        assertEquals(2, map.get().getCount());
+        assertEquals(1, list.get().getCount());
+        assertEquals(1, map.get().getModificationCount(), "Изменения коллекции записываются одним шагом");
+        assertEquals(1, list.get().getModificationCount());
+
+        transaction.undo();
+        assertEquals(0, map.get().getCount());
+        assertEquals(0, list.get().getCount());
+        assertTrue(transaction.isUndone());
+
+        transaction.redo();
+        assertEquals(2, map.get().get("b"));
+        assertEquals("a", list.get().get(0));
+        assertThrows(IllegalStateException.class, transaction::redo);
+        assertThrows(IllegalStateException.class, transaction::commit);
+    }
+
+    @Test
+    void testRollbackLeavesNoSteps() {
+        var manager = new TransactionManager();
+        var array = manager.register(new PersistentArray<Integer>().add(1));
+        int steps = array.get().getModificationCount();
+
+        var transaction = manager.begin().insert(array, 1, 2).insert(array, 2, 3);
+        transaction.rollback();
+
+        assertEquals(steps, array.get().getModificationCount());
+        assertThrows(IllegalStateException.class, () -> transaction.insert(array, 0, 0));
+    }
+
+    @Test
+    void testFailedCommitChangesNothing() {
+        var manager = new TransactionManager();
+        var map = manager.register(new PersistentMap<String, Integer>().add("a", 1));
+        var array = manager.register(new PersistentArray<Integer>());
+        var before = map.get();
+
+        var transaction = manager.begin()
+                .insert(array, 0, 1)
+                .insert(map, "a", 2);
+
+        assertThrows(IllegalArgumentException.class, transaction::commit);
+        assertSame(before, map.get());
+        assertEquals(0, array.get().getCount(), "Ни одна ссылка не должна измениться");
+        assertSame(array.get(), array.get().redo(), "Проверка идёт до записи, поэтому шагов не остаётся");
+    }
+
+    @Test
+    void testFailedStepLeavesNoPartialChanges() {
+        var manager = new TransactionManager();
+        var map = manager.register(new PersistentMap<String, Integer>());
+        var published = new ArrayList<Change<String, Integer>>();
+        map.get().addChangeListener(published::add);
+
+        var transaction = manager.begin()
+                .insert(map, "a", 1)
+                .remove(map, "a")
+                .replace(map, "a", 2);
+
+        assertThrows(IllegalArgumentException.class, transaction::commit);
+        assertEquals(0, map.get().getModificationCount());
+        assertSame(map.get(), map.get().redo(), "Прерванная вставка не должна попасть в историю");
+        assertTrue(published.isEmpty(), "Подписчики не получают изменений прерванной фиксации");
+    }
+
+    @Test
+    void testStepKeepsIndexesConsistent() {
+        Function<Integer, Integer> parity = v -> v % 2;
+        var manager = new TransactionManager();
+        var map = manager.register(new PersistentMap<String, Integer>().add("a", 1).withIndex(parity, Comparator.naturalOrder()));
+        var array = manager.register(new PersistentArray<Integer>().add(1).add(2).add(3));
+
+        manager.begin()
+                .insert(map, "b", 2)
+                .remove(map, "a")
+                .insert(map, "c", 3)
+                .remove(array, 0)
+                .insert(array, 0, 10)
+                .insert(array, 3, 4)
+                .commit();
+
+        assertEquals(Set.of("b", "c"), map.get().keySet());
+        assertEquals(List.of("c"), toList(map.get().keysWhere(parity, 1)));
+        assertEquals(3, map.get().diff(1, 2).count(), "Все изменения словаря записаны на одном шаге");
+        assertEquals(List.of(10, 2, 3, 4), toList(array.get()));
+        assertEquals(List.of(1, 2, 3), toList(array.get().undo()));
+    }
+
+    @Test
+    void testUndoRequiresLatestVersions() {
+        var clock = new VersionClock();
+        var manager = new TransactionManager(clock);
+        var map = manager.register(new PersistentMap<String, Integer>());
+        clock.attach(map.get());
+
+        var first = manager.begin().insert(map, "a", 1);
+        first.commit();
+        var second = manager.begin().insert(map, "b", 2);
+        second.commit();
+
+        assertThrows(IllegalStateException.class, first::undo, "Участник изменён более поздней транзакцией");
+        second.undo();
+        first.undo();
+        assertEquals(0, map.get().getCount());
+        assertEquals(2, clock.now(), "Каждая операция получает отметку общих часов");
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionManager().begin().clear(map));
+    }
+}